@@ -0,0 +1,179 @@
+package io.mazy.souqly_backend.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reconstruction des similarités utilisateur-utilisateur sur 100 000 utilisateurs synthétiques.
+ *
+ * Catalogue de 50 000 produits à popularité de Zipf (quelques produits très partagés), 5 à 60 produits
+ * par utilisateur. Les écritures JDBC sont neutralisées : seul le calcul (index inversé, LSH, top-k) est mesuré.
+ * {@link #pairwiseSetsSample} reproduit l'ancien calcul (intersection de deux ensembles par paire)
+ * sur un échantillon d'utilisateurs, à extrapoler au catalogue complet.
+ *
+ * ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" })
+public class UserSimilarityEngineBenchmark {
+
+    private static final int USERS = 100_000;
+    private static final int PRODUCTS = 50_000;
+    private static final int SAMPLE_USERS = 200;
+
+    @Param({ "true", "false" })
+    private boolean lsh;
+
+    private InteractionMatrix matrix;
+    private long[][] baskets;
+    private UserSimilarityEngine engine;
+    private final Timestamp calculatedAt = new Timestamp(0);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        double[] cumulative = zipf(PRODUCTS, 1.0);
+        long[] userIds = new long[USERS];
+        baskets = new long[USERS][];
+        for (int u = 0; u < USERS; u++) {
+            userIds[u] = u + 1;
+            int size = 5 + random.nextInt(56);
+            Set<Long> basket = new HashSet<>(size * 2);
+            while (basket.size() < size) {
+                basket.add(sample(cumulative, random.nextDouble()) + 1L);
+            }
+            baskets[u] = basket.stream().mapToLong(Long::longValue).toArray();
+        }
+        matrix = InteractionMatrix.of(userIds, baskets, 200);
+
+        engine = new UserSimilarityEngine(new NoOpJdbcTemplate(), new TransactionTemplate(new NoOpTransactionManager()));
+        ReflectionTestUtils.setField(engine, "minSimilarity", 0.1f);
+        ReflectionTestUtils.setField(engine, "maxNeighbors", 100);
+        ReflectionTestUtils.setField(engine, "maxItemsPerUser", 200);
+        ReflectionTestUtils.setField(engine, "lshEnabled", lsh);
+        ReflectionTestUtils.setField(engine, "bands", 32);
+        ReflectionTestUtils.setField(engine, "rows", 2);
+        ReflectionTestUtils.setField(engine, "maxBucketSize", 1000);
+        ReflectionTestUtils.setField(engine, "heavyItemPostings", 5000);
+    }
+
+    @Benchmark
+    public long rebuild() {
+        return engine.rebuild(matrix, calculatedAt);
+    }
+
+    /**
+     * Ancien calcul : pour chaque utilisateur de l'échantillon, intersection d'ensembles contre tous les autres
+     */
+    @Benchmark
+    public long pairwiseSetsSample() {
+        long pairs = 0;
+        for (int u = 0; u < SAMPLE_USERS; u++) {
+            Set<Long> mine = toSet(baskets[u]);
+            for (int v = 0; v < USERS; v++) {
+                if (v == u) {
+                    continue;
+                }
+                Set<Long> common = new HashSet<>(mine);
+                common.retainAll(toSet(baskets[v]));
+                if (!common.isEmpty()) {
+                    double jaccard = (double) common.size() / (mine.size() + baskets[v].length - common.size());
+                    if (jaccard >= 0.1) {
+                        pairs++;
+                    }
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static Set<Long> toSet(long[] basket) {
+        Set<Long> set = new HashSet<>(basket.length * 2);
+        for (long productId : basket) {
+            set.add(productId);
+        }
+        return set;
+    }
+
+    // Fonction de répartition de Zipf(s) sur n rangs
+    private static double[] zipf(int n, double s) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, s);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, double value) {
+        int index = Arrays.binarySearch(cumulative, value);
+        return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+    }
+
+    // Écritures user_similarities ignorées
+    private static final class NoOpJdbcTemplate extends JdbcTemplate {
+        @Override
+        public int update(PreparedStatementCreator psc) {
+            return 0;
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            return 0;
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+            return new int[pss.getBatchSize()];
+        }
+    }
+
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package io.mazy.souqly_backend.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Cache applicatif en mémoire (Caffeine, éviction W-TinyLFU bornée en taille).
+ *
+ * Les statistiques sont activées sur chaque cache : Actuator les publie sous
+ * cache.gets (hit/miss), cache.evictions et cache.size.
+ * Les évictions déclenchées depuis une transaction sont différées après le commit,
+ * pour qu'une lecture concurrente ne remette pas en cache l'état d'avant la modification.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PRODUCT_DETAIL = "productDetail";
+    public static final String PRODUCT_LISTING = "productListing";
+    public static final String SEARCH_SUGGESTIONS = "searchSuggestions";
+
+    // Nombre de premières pages du listing gardées en cache
+    public static final int LISTING_CACHED_PAGES = 5;
+
+    @Value("${souqly.cache.product-detail.max-size:10000}")
+    private long productDetailMaxSize;
+
+    @Value("${souqly.cache.product-detail.ttl:10m}")
+    private Duration productDetailTtl;
+
+    @Value("${souqly.cache.product-listing.max-size:2000}")
+    private long productListingMaxSize;
+
+    @Value("${souqly.cache.product-listing.ttl:30s}")
+    private Duration productListingTtl;
+
+    @Value("${souqly.cache.search-suggestions.max-size:10000}")
+    private long searchSuggestionsMaxSize;
+
+    @Value("${souqly.cache.search-suggestions.ttl:60s}")
+    private Duration searchSuggestionsTtl;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Spécification par défaut des caches créés à la volée (ex. "recommendations")
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .recordStats());
+
+        // Détail produit : DTO immuable sans contenu d'image, borné en nombre d'entrées
+        cacheManager.registerCustomCache(PRODUCT_DETAIL, Caffeine.newBuilder()
+            .maximumSize(productDetailMaxSize)
+            .expireAfterWrite(productDetailTtl)
+            .recordStats()
+            .build());
+
+        cacheManager.registerCustomCache(PRODUCT_LISTING, Caffeine.newBuilder()
+            .maximumSize(productListingMaxSize)
+            .expireAfterWrite(productListingTtl)
+            .recordStats()
+            .build());
+
+        // Préfixes d'autocomplétion les plus tapés : W-TinyLFU (plutôt qu'un LRU strict) garde les plus fréquents
+        cacheManager.registerCustomCache(SEARCH_SUGGESTIONS, Caffeine.newBuilder()
+            .maximumSize(searchSuggestionsMaxSize)
+            .expireAfterWrite(searchSuggestionsTtl)
+            .recordStats()
+            .build());
+
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
@@ -0,0 +1,12 @@
+package io.mazy.souqly_backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // Active les méthodes @Scheduled (flush des compteurs, relais de l'outbox, reconstructions nocturnes).
+    // Taille du pool : spring.task.scheduling.pool.size (1 thread par défaut, une reconstruction
+    // bloquerait sinon le relais et les flush)
+}
@@ -0,0 +1,26 @@
+package io.mazy.souqly_backend.config;
+
+import io.mazy.souqly_backend.service.SearchOutboxListener;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Branche {@link SearchOutboxListener} sur les événements Hibernate d'écriture (insertion, modification,
+ * suppression) : l'entité Product ne référence aucun bean, et les contextes qui ne chargent pas cette
+ * configuration (tests JPA) n'écrivent pas dans search_outbox.
+ */
+@Configuration
+public class SearchOutboxConfig {
+
+    public SearchOutboxConfig(EntityManagerFactory entityManagerFactory, SearchOutboxListener searchOutboxListener) {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry()
+            .requireService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, searchOutboxListener);
+        registry.appendListeners(EventType.POST_UPDATE, searchOutboxListener);
+        registry.appendListeners(EventType.POST_DELETE, searchOutboxListener);
+    }
+}
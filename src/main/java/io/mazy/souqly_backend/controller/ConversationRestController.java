@@ -2,6 +2,7 @@ package io.mazy.souqly_backend.controller;
 
 import io.mazy.souqly_backend.dto.ConversationDto;
 import io.mazy.souqly_backend.dto.CreateConversationRequest;
+import io.mazy.souqly_backend.dto.CursorPage;
 import io.mazy.souqly_backend.dto.MessageDto;
 import io.mazy.souqly_backend.service.ConversationService;
 import io.mazy.souqly_backend.service.UserService;
@@ -61,6 +62,23 @@ public class ConversationRestController {
         }
     }
 
+    // Récupérer les messages d'une conversation par tranches (curseur), des plus récents aux plus anciens
+    @GetMapping("/{conversationId}/messages/page")
+    public ResponseEntity<CursorPage<MessageDto>> getMessagesPage(
+            @PathVariable String conversationId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "30") int size) {
+        try {
+            Long userId = userService.getCurrentUserId();
+            CursorPage<MessageDto> messages = conversationService.getConversationMessages(conversationId, userId, cursor,
+                CursorPage.clampSize(size));
+            return ResponseEntity.ok(messages);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // Envoyer un message dans une conversation
     @PostMapping("/{conversationId}/messages")
     public ResponseEntity<MessageDto> sendMessage(
@@ -1,13 +1,12 @@
 package io.mazy.souqly_backend.controller;
 
 import io.mazy.souqly_backend.dto.FavoriteResponse;
+import io.mazy.souqly_backend.dto.ProductDetailDTO;
 import io.mazy.souqly_backend.dto.ProductListDTO;
 import io.mazy.souqly_backend.entity.Favorite;
-import io.mazy.souqly_backend.entity.Product;
 import io.mazy.souqly_backend.service.FavoriteService;
 import io.mazy.souqly_backend.service.ProductService;
 import io.mazy.souqly_backend.service.UserService;
-import io.mazy.souqly_backend.repository.ProductImageRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -30,9 +29,6 @@ public class FavoriteController {
     @Autowired
     private UserService userService;
     
-    @Autowired
-    private ProductImageRepository productImageRepository;
-    
     /**
      * Toggle favori pour un produit
      * POST /api/products/{productId}/favorite
@@ -76,9 +72,8 @@ public class FavoriteController {
         List<Favorite> userFavorites = favoriteService.getUserFavorites(userId);
         List<ProductListDTO> favoriteProducts = userFavorites.stream()
             .map(favorite -> {
-                Product product = productService.getProduct(favorite.getProductId()).orElse(null);
+                ProductDetailDTO product = productService.getProductDetail(favorite.getProductId()).orElse(null);
                 if (product != null) {
-                    product.setImages(productImageRepository.findByProductId(product.getId()));
                     return new ProductListDTO(product, favoriteService.getFavoriteCount(product.getId()));
                 }
                 return null;
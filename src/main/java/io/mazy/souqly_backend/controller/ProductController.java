@@ -1,22 +1,28 @@
 package io.mazy.souqly_backend.controller;
 
+import io.mazy.souqly_backend.dto.CursorPage;
 import io.mazy.souqly_backend.dto.ProductCreateRequest;
+import io.mazy.souqly_backend.dto.ProductDetailDTO;
+import io.mazy.souqly_backend.dto.ProductImportResult;
 import io.mazy.souqly_backend.entity.Product;
 import io.mazy.souqly_backend.entity.User;
 import io.mazy.souqly_backend.service.ProductService;
 import io.mazy.souqly_backend.dto.ProductListDTO;
 import io.mazy.souqly_backend.dto.ProductMyProductsDTO;
 import io.mazy.souqly_backend.service.FavoriteService;
-import io.mazy.souqly_backend.repository.ProductImageRepository;
+import io.mazy.souqly_backend.service.ProductImportService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,7 +38,7 @@ public class ProductController {
     private FavoriteService favoriteService;
 
     @Autowired
-    private ProductImageRepository productImageRepository;
+    private ProductImportService productImportService;
 
     @PostMapping
     @PreAuthorize("isAuthenticated()")
@@ -44,6 +50,22 @@ public class ProductController {
         return ResponseEntity.ok(product);
     }
 
+    /**
+     * Création en masse : corps NDJSON (un produit par ligne) ou tableau JSON, lu en flux
+     */
+    @PostMapping(value = "/bulk", consumes = { "application/x-ndjson", MediaType.APPLICATION_JSON_VALUE })
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<ProductImportResult> bulkCreateProducts(
+        HttpServletRequest request,
+        @AuthenticationPrincipal User user
+    ) {
+        try {
+            return ResponseEntity.ok(productImportService.importProducts(request.getInputStream(), user.getId()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping
     public ResponseEntity<Map<String, Object>> getProducts(
         @RequestParam(defaultValue = "0") int page,
@@ -56,21 +78,36 @@ public class ProductController {
         @RequestParam(required = false) String size,
         @RequestParam(required = false) String search,
         @RequestParam(required = false) String sortBy,
-        @RequestParam(required = false) String sortOrder
+        @RequestParam(required = false) String sortOrder,
+        @RequestParam(required = false) String cursor
     ) {
-        Pageable pageable = PageRequest.of(page, pageSize);
-        Page<Product> productPage = productService.getProductsForListing(pageable, categoryId, minPrice, 
+        pageSize = CursorPage.clampSize(pageSize);
+        // Mode curseur (défilement infini) : présent dès que le paramètre cursor est fourni, même vide
+        if (cursor != null && (search == null || search.trim().isEmpty())) {
+            // Le fil par curseur n'est ni filtré ni trié autrement : refusé plutôt que de renvoyer le fil complet
+            if (categoryId != null || minPrice != null || maxPrice != null || condition != null || brand != null
+                || size != null || sortBy != null || sortOrder != null) {
+                return ResponseEntity.badRequest().build();
+            }
+            try {
+                CursorPage<ProductListDTO> slice = productService.getProductsForListingSlice(cursor, pageSize);
+                Map<String, Object> response = new HashMap<>();
+                response.put("content", slice.getContent());
+                response.put("nextCursor", slice.getNextCursor());
+                response.put("hasNext", slice.isHasNext());
+                response.put("size", slice.getSize());
+                return ResponseEntity.ok(response);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        Pageable pageable = PageRequest.of(Math.max(page, 0), pageSize);
+        Page<ProductListDTO> productPage = productService.getProductsForListing(pageable, categoryId, minPrice, 
             maxPrice, condition, brand, size, search, sortBy, sortOrder);
         
-        List<ProductListDTO> productDTOs = productPage.getContent().stream()
-            .map(product -> {
-                product.setImages(productImageRepository.findByProductId(product.getId()));
-                return new ProductListDTO(product, favoriteService.getFavoriteCount(product.getId()));
-            })
-            .collect(java.util.stream.Collectors.toList());
-        
         Map<String, Object> response = new HashMap<>();
-        response.put("content", productDTOs);
+        response.put("content", productPage.getContent());
         response.put("totalElements", productPage.getTotalElements());
         response.put("totalPages", productPage.getTotalPages());
         response.put("currentPage", productPage.getNumber());
@@ -84,7 +121,7 @@ public class ProductController {
         @RequestParam(defaultValue = "0") int page,
         @RequestParam(defaultValue = "20") int pageSize
     ) {
-        Pageable pageable = PageRequest.of(page, pageSize);
+        Pageable pageable = PageRequest.of(Math.max(page, 0), CursorPage.clampSize(pageSize));
         var productPage = productService.getProductsForListingCacheable(pageable);
         Map<String, Object> response = new HashMap<>();
         response.put("content", productPage.getContent());
@@ -96,8 +133,8 @@ public class ProductController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProduct(@PathVariable Long id) {
-        return productService.getProduct(id)
+    public ResponseEntity<ProductDetailDTO> getProduct(@PathVariable Long id) {
+        return productService.getProductDetail(id)
             .map(ResponseEntity::ok)
             .orElse(ResponseEntity.notFound().build());
     }
@@ -158,6 +195,22 @@ public class ProductController {
         return ResponseEntity.ok(productDTOs);
     }
 
+    @GetMapping("/my-products/page")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<CursorPage<ProductMyProductsDTO>> getMyProductsPage(
+        @AuthenticationPrincipal User user,
+        @RequestParam(required = false) String status,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(defaultValue = "20") int size
+    ) {
+        try {
+            return ResponseEntity.ok(productService.getProductsBySellerAndStatusDTO(user.getId(), status, cursor,
+                CursorPage.clampSize(size)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @PostMapping("/{id}/toggle-status")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<Product> toggleProductStatus(
@@ -195,12 +248,12 @@ public class ProductController {
     @GetMapping("/{id}/location")
     public ResponseEntity<Map<String, Object>> getProductLocation(@PathVariable Long id) {
         try {
-            Optional<Product> productOpt = productService.getProduct(id);
+            Optional<ProductDetailDTO> productOpt = productService.getProductDetail(id);
             if (productOpt.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
             
-            Product product = productOpt.get();
+            ProductDetailDTO product = productOpt.get();
             Map<String, Object> locationData = new HashMap<>();
             locationData.put("city", product.getCity());
             locationData.put("country", product.getCountry());
@@ -246,14 +299,7 @@ public class ProductController {
     @GetMapping("/seller/{sellerId}")
     public ResponseEntity<List<ProductListDTO>> getProductsBySeller(@PathVariable Long sellerId) {
         try {
-            List<Product> products = productService.getProductsBySeller(sellerId);
-            
-            // Convertir en DTO pour éviter les problèmes de sérialisation
-            List<ProductListDTO> productDTOs = products.stream()
-                .map(product -> new ProductListDTO(product, product.getFavoriteCount()))
-                .collect(java.util.stream.Collectors.toList());
-            
-            return ResponseEntity.ok(productDTOs);
+            return ResponseEntity.ok(productService.getProductsBySeller(sellerId));
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
@@ -265,12 +311,12 @@ public class ProductController {
     @GetMapping("/test-boost/{id}")
     public ResponseEntity<Map<String, Object>> testProductBoost(@PathVariable Long id) {
         try {
-            Optional<Product> productOpt = productService.getProduct(id);
+            Optional<ProductDetailDTO> productOpt = productService.getProductDetail(id);
             if (productOpt.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
             
-            Product product = productOpt.get();
+            ProductDetailDTO product = productOpt.get();
             Map<String, Object> response = new HashMap<>();
             response.put("id", product.getId());
             response.put("title", product.getTitle());
@@ -1,48 +1,141 @@
 package io.mazy.souqly_backend.controller;
 
-import io.mazy.souqly_backend.entity.ProductImage;
 import io.mazy.souqly_backend.repository.ProductImageRepository;
+import io.mazy.souqly_backend.service.ImageStore;
+import io.mazy.souqly_backend.service.ImageVariant;
+import io.mazy.souqly_backend.service.ProductImageService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductImageController {
+    // Contenu adressé par clé SHA-256 : une fois servi, il ne change plus
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+    private static final CacheControl PROVISIONAL = CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic();
+
     @Autowired
     private ProductImageRepository productImageRepository;
 
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ProductImageService productImageService;
+
     @PostMapping("/upload-image")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<Long> uploadImage(@RequestParam("file") MultipartFile file) throws IOException {
-        ProductImage image = new ProductImage();
-        image.setImageData(file.getBytes());
-        image.setContentType(file.getContentType());
-        image.setFileName(file.getOriginalFilename());
-        productImageRepository.save(image);
-        return ResponseEntity.ok(image.getId());
+        return ResponseEntity.ok(productImageService.upload(file));
     }
 
+    /**
+     * Sert le fichier en flux depuis le store ; seules les métadonnées sont lues en base.
+     * Une ressource permet aussi à Spring de répondre aux requêtes Range (Accept-Ranges / 206).
+     */
     @GetMapping("/image/{id}")
-    public ResponseEntity<byte[]> getImage(@PathVariable Long id) {
-        ProductImage image = productImageRepository.findById(id)
+    public ResponseEntity<Resource> getImage(@PathVariable Long id, WebRequest request) {
+        ProductImageRepository.ImageFileMeta meta = productImageRepository.findFileMetaById(id)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return serveOriginal(id, meta, request, IMMUTABLE);
+    }
+
+    /**
+     * Déclinaison redimensionnée (thumb, card, full) ; l'original tant qu'elle n'est pas encore générée
+     */
+    @GetMapping("/image/{id}/{variant}")
+    public ResponseEntity<Resource> getImageVariant(@PathVariable Long id, @PathVariable String variant,
+                                                    WebRequest request) {
+        ImageVariant imageVariant;
+        try {
+            imageVariant = ImageVariant.fromPath(variant);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        ProductImageRepository.ImageFileMeta meta = productImageRepository.findFileMetaById(id)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        return ResponseEntity.ok()
-            .header(HttpHeaders.CONTENT_TYPE, image.getContentType())
-            .body(image.getImageData());
+
+        String variantKey = switch (imageVariant) {
+            case THUMB -> meta.getThumbKey();
+            case CARD -> meta.getCardKey();
+            case FULL -> meta.getFullKey();
+        };
+        if (variantKey == null) {
+            // L'URL changera de contenu une fois la déclinaison générée : pas de cache long
+            return serveOriginal(id, meta, request, PROVISIONAL);
+        }
+        return serve(request, variantKey, meta.getCreatedAt(), MediaType.IMAGE_JPEG_VALUE, IMMUTABLE,
+            () -> imageStore.load(variantKey));
+    }
+
+    private ResponseEntity<Resource> serveOriginal(Long id, ProductImageRepository.ImageFileMeta meta,
+                                                   WebRequest request, CacheControl cacheControl) {
+        if (meta.getStorageKey() != null) {
+            return serve(request, meta.getStorageKey(), meta.getCreatedAt(), meta.getContentType(), cacheControl,
+                () -> imageStore.load(meta.getStorageKey()));
+        }
+        // Image pas encore migrée par ImageBlobMigration : une image n'est jamais modifiée, l'id suffit comme ETag
+        return serve(request, "image-" + id, meta.getCreatedAt(), meta.getContentType(), cacheControl, () -> {
+            byte[] legacyData = productImageRepository.findLegacyDataById(id);
+            return legacyData != null ? new ByteArrayResource(legacyData) : null;
+        });
+    }
+
+    /**
+     * Requête conditionnelle évaluée avant tout accès au contenu : un 304 ne lit ni le fichier ni la colonne BYTEA.
+     * L'ETag est la clé de contenu (SHA-256), donc une URL donnée sert toujours les mêmes octets.
+     */
+    private ResponseEntity<Resource> serve(WebRequest request, String contentKey, LocalDateTime createdAt,
+                                           String contentType, CacheControl cacheControl,
+                                           Supplier<Resource> loader) {
+        String etag = "\"" + contentKey + "\"";
+        long lastModified = createdAt != null
+            ? createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+            : -1;
+        if (request.checkNotModified(etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .build();
+        }
+
+        Resource content = loader.get();
+        if (content == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .eTag(etag)
+            .cacheControl(cacheControl);
+        if (lastModified >= 0) {
+            response.lastModified(lastModified);
+        }
+        if (contentType != null) {
+            response.header(HttpHeaders.CONTENT_TYPE, contentType);
+        }
+        return response.body(content);
     }
 
     @DeleteMapping("/image/{id}")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<Void> deleteImage(@PathVariable Long id) {
-        productImageRepository.deleteById(id);
+    public ResponseEntity<Void> deleteImage(@PathVariable Long id) throws IOException {
+        productImageService.delete(id);
         return ResponseEntity.noContent().build();
     }
-} 
\ No newline at end of file
+}
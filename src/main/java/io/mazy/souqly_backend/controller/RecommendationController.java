@@ -4,10 +4,14 @@ import io.mazy.souqly_backend.entity.Product;
 import io.mazy.souqly_backend.dto.UserDto;
 import io.mazy.souqly_backend.service.ContentBasedRecommendationService;
 import io.mazy.souqly_backend.service.CollaborativeFilteringService;
+import io.mazy.souqly_backend.service.ItemSimilarityModel;
+import io.mazy.souqly_backend.service.PrecomputedRecommendationService;
 import io.mazy.souqly_backend.service.UserService;
+import io.mazy.souqly_backend.service.UserSimilarityEngine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -23,6 +27,9 @@ public class RecommendationController {
     
     private final ContentBasedRecommendationService contentBasedService;
     private final CollaborativeFilteringService collaborativeService;
+    private final ItemSimilarityModel itemSimilarityModel;
+    private final UserSimilarityEngine userSimilarityEngine;
+    private final PrecomputedRecommendationService precomputedRecommendationService;
     private final UserService userService;
     
     /**
@@ -52,7 +59,7 @@ public class RecommendationController {
                 return ResponseEntity.badRequest().build();
             }
             
-            List<Product> recommendations = contentBasedService.getContentBasedRecommendations(userId, limit);
+            List<Product> recommendations = precomputedRecommendationService.getRecommendations(userId, "content", limit);
             return ResponseEntity.ok(recommendations);
             
         } catch (Exception e) {
@@ -76,7 +83,7 @@ public class RecommendationController {
                 return ResponseEntity.badRequest().build();
             }
             
-            List<Product> recommendations = collaborativeService.getCollaborativeRecommendations(userId, limit);
+            List<Product> recommendations = precomputedRecommendationService.getRecommendations(userId, "collaborative", limit);
             return ResponseEntity.ok(recommendations);
             
         } catch (Exception e) {
@@ -100,7 +107,7 @@ public class RecommendationController {
                 return ResponseEntity.badRequest().build();
             }
             
-            List<Product> recommendations = collaborativeService.getHybridRecommendations(userId, limit);
+            List<Product> recommendations = precomputedRecommendationService.getRecommendations(userId, "hybrid", limit);
             return ResponseEntity.ok(recommendations);
             
         } catch (Exception e) {
@@ -125,19 +132,8 @@ public class RecommendationController {
                 return ResponseEntity.badRequest().build();
             }
             
-            List<Product> recommendations;
-            switch (type.toLowerCase()) {
-                case "content":
-                    recommendations = contentBasedService.getContentBasedRecommendations(userId, limit);
-                    break;
-                case "collaborative":
-                    recommendations = collaborativeService.getCollaborativeRecommendations(userId, limit);
-                    break;
-                case "hybrid":
-                default:
-                    recommendations = collaborativeService.getHybridRecommendations(userId, limit);
-                    break;
-            }
+            List<Product> recommendations =
+                precomputedRecommendationService.getRecommendations(userId, type, limit);
             
             // Calculer les métriques
             Map<String, Object> metrics = calculateRecommendationMetrics(recommendations);
@@ -170,6 +166,7 @@ public class RecommendationController {
             }
             
             contentBasedService.calculateUserProfile(userId);
+            precomputedRecommendationService.markDirty(userId);
             return ResponseEntity.ok("Profil utilisateur calculé avec succès");
             
         } catch (Exception e) {
@@ -191,6 +188,7 @@ public class RecommendationController {
             }
             
             collaborativeService.calculateAndSaveUserSimilarities(userId);
+            precomputedRecommendationService.markDirty(userId);
             return ResponseEntity.ok("Similarités utilisateur calculées avec succès");
             
         } catch (Exception e) {
@@ -199,6 +197,57 @@ public class RecommendationController {
         }
     }
     
+    /**
+     * Lance en arrière-plan la reconstruction du modèle item-item (voisins par produit), sans attendre
+     * la construction nocturne ; suivi par GET /item-model/rebuild/status
+     */
+    @PostMapping("/item-model/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> rebuildItemModel() {
+        boolean started = itemSimilarityModel.startBuild();
+        Map<String, Object> response = new HashMap<>(itemSimilarityModel.buildStatus());
+        response.put("started", started);
+        return ResponseEntity.accepted().body(response);
+    }
+    
+    @GetMapping("/item-model/rebuild/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> itemModelRebuildStatus() {
+        return ResponseEntity.ok(itemSimilarityModel.buildStatus());
+    }
+    
+    /**
+     * Lance en arrière-plan le recalcul de toutes les similarités utilisateur, sans attendre le calcul nocturne ;
+     * suivi par GET /user-similarities/rebuild/status
+     */
+    @PostMapping("/user-similarities/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> rebuildUserSimilarities() {
+        boolean started = userSimilarityEngine.startRebuild();
+        Map<String, Object> response = new HashMap<>(userSimilarityEngine.rebuildStatus());
+        response.put("started", started);
+        return ResponseEntity.accepted().body(response);
+    }
+    
+    @GetMapping("/user-similarities/rebuild/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> userSimilaritiesRebuildStatus() {
+        return ResponseEntity.ok(userSimilarityEngine.rebuildStatus());
+    }
+    
+    /**
+     * Lance en arrière-plan le recalcul de toutes les listes précalculées, sans attendre le calcul nocturne
+     */
+    @PostMapping("/store/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> rebuildRecommendationStore() {
+        boolean started = precomputedRecommendationService.startRebuild();
+        Map<String, Object> response = new HashMap<>();
+        response.put("started", started);
+        response.put("running", precomputedRecommendationService.isRebuildRunning());
+        return ResponseEntity.accepted().body(response);
+    }
+    
     /**
      * Obtient des recommandations pour l'utilisateur connecté
      */
@@ -213,19 +262,8 @@ public class RecommendationController {
             // Pour l'instant, on utilise un ID par défaut
             Long currentUserId = 1L; // TODO: Récupérer depuis le contexte de sécurité
             
-            List<Product> recommendations;
-            switch (type.toLowerCase()) {
-                case "content":
-                    recommendations = contentBasedService.getContentBasedRecommendations(currentUserId, limit);
-                    break;
-                case "collaborative":
-                    recommendations = collaborativeService.getCollaborativeRecommendations(currentUserId, limit);
-                    break;
-                case "hybrid":
-                default:
-                    recommendations = collaborativeService.getHybridRecommendations(currentUserId, limit);
-                    break;
-            }
+            List<Product> recommendations =
+                precomputedRecommendationService.getRecommendations(currentUserId, type, limit);
             
             if (includeMetrics) {
                 Map<String, Object> metrics = calculateRecommendationMetrics(recommendations);
@@ -257,19 +295,8 @@ public class RecommendationController {
         try {
             Long testUserId = 1L;
             
-            List<Product> recommendations;
-            switch (type.toLowerCase()) {
-                case "content":
-                    recommendations = contentBasedService.getContentBasedRecommendations(testUserId, limit);
-                    break;
-                case "collaborative":
-                    recommendations = collaborativeService.getCollaborativeRecommendations(testUserId, limit);
-                    break;
-                case "hybrid":
-                default:
-                    recommendations = collaborativeService.getHybridRecommendations(testUserId, limit);
-                    break;
-            }
+            List<Product> recommendations =
+                precomputedRecommendationService.getRecommendations(testUserId, type, limit);
             
             Map<String, Object> metrics = calculateRecommendationMetrics(recommendations);
             
@@ -1,12 +1,21 @@
 package io.mazy.souqly_backend.controller;
 
+import io.mazy.souqly_backend.dto.CursorPage;
+import io.mazy.souqly_backend.dto.FacetedSearchResult;
+import io.mazy.souqly_backend.dto.ProductSearchCriteria;
+import io.mazy.souqly_backend.dto.SuggestionDTO;
 import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
 import io.mazy.souqly_backend.service.ElasticsearchService;
+import io.mazy.souqly_backend.service.FacetedSearchService;
+import io.mazy.souqly_backend.service.ProductReindexer;
+import io.mazy.souqly_backend.service.SuggestionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -20,14 +29,61 @@ public class SearchController {
     @Autowired
     private ElasticsearchService elasticsearchService;
 
+    @Autowired
+    private ProductReindexer productReindexer;
+
+    @Autowired
+    private FacetedSearchService facetedSearchService;
+
+    @Autowired
+    private SuggestionService suggestionService;
+
+    /**
+     * Recherche avec filtres optionnels (seuls ceux fournis s'appliquent). size est la taille de page ;
+     * le filtre de taille d'article s'appelle productSize. Avec le paramètre cursor (même vide),
+     * pagination search_after : réponse sans total, avec nextCursor.
+     */
     @GetMapping("/products")
     public ResponseEntity<Map<String, Object>> searchProducts(
             @RequestParam(required = false) String query,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) List<String> brand,
+            @RequestParam(required = false) List<String> productSize,
+            @RequestParam(required = false) List<String> condition,
+            @RequestParam(required = false) List<String> city,
+            @RequestParam(required = false) String country,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String sortOrder,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
-        
-        Pageable pageable = PageRequest.of(page, size);
-        Page<ProductDocument> result = elasticsearchService.searchProducts(query, pageable);
+
+        ProductSearchCriteria criteria = new ProductSearchCriteria(query, categoryId, brand, productSize, condition,
+                                                                   city, country, minPrice, maxPrice, sortBy, sortOrder);
+        size = CursorPage.clampSize(size);
+
+        if (query != null && (cursor == null ? page == 0 : cursor.isEmpty())) {
+            suggestionService.recordQuery(query);
+        }
+
+        if (cursor != null) {
+            try {
+                CursorPage<ProductDocument> slice = elasticsearchService.searchProductsAfter(criteria, cursor, size);
+                Map<String, Object> response = new HashMap<>();
+                response.put("content", slice.getContent());
+                response.put("nextCursor", slice.getNextCursor());
+                response.put("hasNext", slice.isHasNext());
+                response.put("size", slice.getSize());
+                return ResponseEntity.ok(response);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        Pageable pageable = PageRequest.of(Math.max(page, 0), size);
+        Page<ProductDocument> result = elasticsearchService.searchProductsWithFilters(criteria, pageable);
         
         Map<String, Object> response = new HashMap<>();
         response.put("content", result.getContent());
@@ -39,24 +95,103 @@ public class SearchController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Résultats et facettes (catégorie, marque, taille, état, ville, tranches de prix) en une requête.
+     * brand, size, condition et city acceptent plusieurs valeurs (paramètre répété). sortBy et sortOrder
+     * ont les mêmes valeurs que pour /products.
+     */
+    @GetMapping("/faceted")
+    public ResponseEntity<Map<String, Object>> facetedSearch(
+            @RequestParam(required = false) String query,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) List<String> brand,
+            @RequestParam(required = false) List<String> size,
+            @RequestParam(required = false) List<String> condition,
+            @RequestParam(required = false) List<String> city,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String sortOrder,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int pageSize) {
+
+        ProductSearchCriteria criteria = new ProductSearchCriteria(query, categoryId, brand, size, condition, city,
+                                                                   null, minPrice, maxPrice, sortBy, sortOrder);
+        if (query != null && page == 0) {
+            suggestionService.recordQuery(query);
+        }
+        FacetedSearchResult result = facetedSearchService.search(criteria,
+            PageRequest.of(Math.max(page, 0), CursorPage.clampSize(pageSize)));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("content", result.getPage().getContent());
+        response.put("totalElements", result.getPage().getTotalElements());
+        response.put("totalPages", result.getPage().getTotalPages());
+        response.put("currentPage", result.getPage().getNumber());
+        response.put("size", result.getPage().getSize());
+        response.put("facets", result.getFacets());
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Autocomplétion de la barre de recherche (titres, marques, catégories, recherches fréquentes)
+     */
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<SuggestionDTO>> autocomplete(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "8") int size) {
+
+        return ResponseEntity.ok(suggestionService.suggest(query, Math.max(1, Math.min(size, 20))));
+    }
+
+    /**
+     * Ancienne autocomplétion (phrase_prefix sur l'index produits), conservée pour les clients existants.
+     * La réponse porte l'en-tête Deprecation.
+     *
+     * @deprecated remplacé par {@link #autocomplete}, servi par l'index de suggestions
+     */
+    @Deprecated
     @GetMapping("/suggestions")
     public ResponseEntity<List<ProductDocument>> getSuggestions(
             @RequestParam String query,
             @RequestParam(defaultValue = "5") int size) {
         
-        Pageable pageable = PageRequest.of(0, size);
+        Pageable pageable = PageRequest.of(0, CursorPage.clampSize(size));
         List<ProductDocument> suggestions = elasticsearchService.findSuggestions(query, pageable);
         
-        return ResponseEntity.ok(suggestions);
+        return ResponseEntity.ok()
+            .header("Deprecation", "true")
+            .header(HttpHeaders.LINK, "</api/search/autocomplete>; rel=\"successor-version\"")
+            .body(suggestions);
     }
 
     @PostMapping("/sync")
+    @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<String> syncProducts() {
         try {
-            elasticsearchService.syncAllProducts();
+            productReindexer.reindex();
             return ResponseEntity.ok("Synchronisation terminée avec succès");
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Erreur lors de la synchronisation: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Lance la réindexation en arrière-plan (ou reprend un job interrompu)
+     */
+    @PostMapping("/reindex")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> reindex() {
+        boolean started = productReindexer.start();
+        Map<String, Object> response = productReindexer.status();
+        response.put("started", started);
+        return ResponseEntity.accepted().body(response);
+    }
+
+    @GetMapping("/reindex/status")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> reindexStatus() {
+        return ResponseEntity.ok(productReindexer.status());
+    }
+}
@@ -0,0 +1,31 @@
+package io.mazy.souqly_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Tranche de résultats paginée par curseur : pas de total, donc pas de count(*).
+ * nextCursor est null quand il n'y a plus rien à charger.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    // Taille de page maximale des endpoints paginés (curseur ou numéro de page)
+    public static final int MAX_SIZE = 100;
+
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+    private int size;
+
+    /**
+     * Taille demandée ramenée dans [1, MAX_SIZE], à appliquer à l'entrée des contrôleurs
+     */
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+}
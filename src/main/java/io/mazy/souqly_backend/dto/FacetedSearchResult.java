@@ -0,0 +1,28 @@
+package io.mazy.souqly_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page de résultats et compteurs par facette (category, brand, size, condition, city, price), issus de la même requête.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetedSearchResult {
+    private Page<ProductListDTO> page;
+    private Map<String, List<FacetBucket>> facets;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetBucket {
+        private String key;
+        private long count;
+    }
+}
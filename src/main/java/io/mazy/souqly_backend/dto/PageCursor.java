@@ -0,0 +1,52 @@
+package io.mazy.souqly_backend.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Curseur opaque de pagination par clé (keyset) : encode la position (date, id)
+ * du dernier élément renvoyé. Le client le renvoie tel quel pour obtenir la page suivante.
+ */
+public class PageCursor {
+    private static final char SEPARATOR = '|';
+
+    private final LocalDateTime timestamp;
+    private final Long id;
+
+    public PageCursor(LocalDateTime timestamp, Long id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+
+    public LocalDateTime getTimestamp() { return timestamp; }
+    public Long getId() { return id; }
+
+    public String encode() {
+        String raw = timestamp.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un curseur reçu du client. Un curseur vide ou null désigne la première page.
+     *
+     * @throws IllegalArgumentException si le curseur est illisible
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Curseur invalide");
+            }
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                Long.parseLong(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Curseur invalide", e);
+        }
+    }
+}
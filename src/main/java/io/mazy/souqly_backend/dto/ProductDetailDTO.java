@@ -0,0 +1,77 @@
+package io.mazy.souqly_backend.dto;
+
+import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.entity.ProductImage;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Détail d'un produit, immuable : c'est lui qui est partagé par le cache PRODUCT_DETAIL, jamais l'entité.
+ * Mêmes champs JSON que l'entité Product ; les images ne portent que leurs métadonnées (le contenu est servi
+ * par ProductImageController).
+ */
+@Value
+public class ProductDetailDTO {
+    Long id;
+    String title;
+    String description;
+    Double price;
+    List<Image> images;
+    LocalDateTime createdAt;
+    String brand;
+    String size;
+    String condition;
+    BigDecimal priceWithFees;
+    String shippingInfo;
+    List<String> tags;
+    Map<String, String> measurements;
+    Product.ProductStatus status;
+    Integer viewCount;
+    Integer favoriteCount;
+    LocalDateTime updatedAt;
+    Boolean isActive;
+    String city;
+    String country;
+    Boolean isBoosted;
+    Integer boostLevel;
+
+    @Value
+    public static class Image {
+        Long id;
+        String fileName;
+        String contentType;
+        Long sizeBytes;
+        LocalDateTime createdAt;
+
+        public String getUrl() { return "/api/products/image/" + id; }
+        public String getThumbUrl() { return getUrl() + "/thumb"; }
+        public String getCardUrl() { return getUrl() + "/card"; }
+        public String getFullUrl() { return getUrl() + "/full"; }
+    }
+
+    /**
+     * Copie de l'entité, collections comprises (à appeler tant que la session est ouverte)
+     */
+    public static ProductDetailDTO from(Product product) {
+        List<Image> images = new ArrayList<>(product.getImages().size());
+        for (ProductImage image : product.getImages()) {
+            images.add(new Image(image.getId(), image.getFileName(), image.getContentType(), image.getSizeBytes(),
+                                 image.getCreatedAt()));
+        }
+        return new ProductDetailDTO(product.getId(), product.getTitle(), product.getDescription(), product.getPrice(),
+            Collections.unmodifiableList(images), product.getCreatedAt(), product.getBrand(), product.getSize(),
+            product.getCondition(), product.getPriceWithFees(), product.getShippingInfo(),
+            Collections.unmodifiableList(new ArrayList<>(product.getTags())),
+            Collections.unmodifiableMap(new HashMap<>(product.getMeasurements())),
+            product.getStatus(), product.getViewCount(), product.getFavoriteCount(), product.getUpdatedAt(),
+            product.getIsActive(), product.getCity(), product.getCountry(), product.getIsBoosted(),
+            product.getBoostLevel());
+    }
+}
@@ -0,0 +1,33 @@
+package io.mazy.souqly_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bilan d'un import en masse : les lignes invalides sont rejetées une à une, les autres sont créées.
+ */
+@Data
+@NoArgsConstructor
+public class ProductImportResult {
+    private int received;
+    private int created;
+    private List<LineError> errors = new ArrayList<>();
+    // Renseigné si le flux a dû être interrompu (JSON illisible) : les lots déjà écrits restent créés
+    private String abortedReason;
+
+    public void reject(int line, String message) {
+        errors.add(new LineError(line, message));
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineError {
+        private int line;
+        private String message;
+    }
+}
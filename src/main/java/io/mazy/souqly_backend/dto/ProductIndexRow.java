@@ -0,0 +1,98 @@
+package io.mazy.souqly_backend.dto;
+
+import io.mazy.souqly_backend.entity.Product;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection JPQL (constructeur) des colonnes indexées dans Elasticsearch.
+ * Catégorie et vendeur sont joints dans la même requête ; tags et ids d'images sont chargés à part, en lot.
+ * searchVersion est lue dans le même instantané que les colonnes : c'est la version externe du document.
+ */
+public class ProductIndexRow {
+    private final Long id;
+    private final String title;
+    private final String description;
+    private final Double price;
+    private final String brand;
+    private final String size;
+    private final String condition;
+    private final String shippingInfo;
+    private final String city;
+    private final String country;
+    private final Long categoryId;
+    private final String categoryLabel;
+    private final Long sellerId;
+    private final String sellerFirstName;
+    private final String sellerLastName;
+    private final String sellerEmail;
+    private final Product.ProductStatus status;
+    private final Boolean isActive;
+    private final Integer viewCount;
+    private final Integer favoriteCount;
+    private final Boolean isBoosted;
+    private final Integer boostLevel;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final long searchVersion;
+
+    public ProductIndexRow(Long id, String title, String description, Double price, String brand, String size,
+                           String condition, String shippingInfo, String city, String country,
+                           Long categoryId, String categoryLabel, Long sellerId, String sellerFirstName,
+                           String sellerLastName, String sellerEmail, Product.ProductStatus status,
+                           Boolean isActive, Integer viewCount, Integer favoriteCount, Boolean isBoosted,
+                           Integer boostLevel, LocalDateTime createdAt, LocalDateTime updatedAt,
+                           Long searchVersion) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.price = price;
+        this.brand = brand;
+        this.size = size;
+        this.condition = condition;
+        this.shippingInfo = shippingInfo;
+        this.city = city;
+        this.country = country;
+        this.categoryId = categoryId;
+        this.categoryLabel = categoryLabel;
+        this.sellerId = sellerId;
+        this.sellerFirstName = sellerFirstName;
+        this.sellerLastName = sellerLastName;
+        this.sellerEmail = sellerEmail;
+        this.status = status;
+        this.isActive = isActive;
+        this.viewCount = viewCount;
+        this.favoriteCount = favoriteCount;
+        this.isBoosted = isBoosted;
+        this.boostLevel = boostLevel;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.searchVersion = searchVersion != null ? searchVersion : 0;
+    }
+
+    public Long getId() { return id; }
+    public String getTitle() { return title; }
+    public String getDescription() { return description; }
+    public Double getPrice() { return price; }
+    public String getBrand() { return brand; }
+    public String getSize() { return size; }
+    public String getCondition() { return condition; }
+    public String getShippingInfo() { return shippingInfo; }
+    public String getCity() { return city; }
+    public String getCountry() { return country; }
+    public Long getCategoryId() { return categoryId; }
+    public String getCategoryLabel() { return categoryLabel; }
+    public Long getSellerId() { return sellerId; }
+    public String getSellerFirstName() { return sellerFirstName; }
+    public String getSellerLastName() { return sellerLastName; }
+    public String getSellerEmail() { return sellerEmail; }
+    public Product.ProductStatus getStatus() { return status; }
+    public Boolean getIsActive() { return isActive; }
+    public Integer getViewCount() { return viewCount; }
+    public Integer getFavoriteCount() { return favoriteCount; }
+    public Boolean getIsBoosted() { return isBoosted; }
+    public Integer getBoostLevel() { return boostLevel; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public long getSearchVersion() { return searchVersion; }
+}
@@ -2,6 +2,8 @@ package io.mazy.souqly_backend.dto;
 
 import io.mazy.souqly_backend.entity.Product;
 import io.mazy.souqly_backend.entity.ProductImage;
+import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -39,6 +41,63 @@ public class ProductListDTO {
             .collect(Collectors.toList());
     }
 
+    // Depuis le détail en cache (immuable)
+    public ProductListDTO(ProductDetailDTO product, int favoriteCount) {
+        this.id = product.getId();
+        this.title = product.getTitle();
+        this.description = product.getDescription();
+        this.price = product.getPrice();
+        this.brand = product.getBrand();
+        this.size = product.getSize();
+        this.condition = product.getCondition();
+        this.shippingInfo = product.getShippingInfo();
+        this.status = product.getStatus().toString();
+        this.favoriteCount = favoriteCount;
+        this.isBoosted = product.getIsBoosted() != null ? product.getIsBoosted() : false;
+        this.boostLevel = product.getBoostLevel() != null ? product.getBoostLevel() : 0;
+        this.images = product.getImages().stream()
+            .map(img -> new ImageMeta(img.getId(), img.getFileName(), img.getContentType()))
+            .collect(Collectors.toList());
+    }
+
+    public ProductListDTO(ProductListRow row, List<ImageMeta> images) {
+        this.id = row.getId();
+        this.title = row.getTitle();
+        this.description = row.getDescription();
+        this.price = row.getPrice();
+        this.brand = row.getBrand();
+        this.size = row.getSize();
+        this.condition = row.getCondition();
+        this.shippingInfo = row.getShippingInfo();
+        this.status = row.getStatus() != null ? row.getStatus().toString() : null;
+        this.favoriteCount = row.getFavoriteCount() != null ? row.getFavoriteCount() : 0;
+        this.isBoosted = row.getIsBoosted() != null ? row.getIsBoosted() : false;
+        this.boostLevel = row.getBoostLevel() != null ? row.getBoostLevel() : 0;
+        this.images = images;
+    }
+
+    // Résultat de recherche servi depuis le document Elasticsearch ; les images ne portent que leur id (les URL en dérivent)
+    public ProductListDTO(ProductDocument document, int favoriteCount) {
+        this.id = Long.valueOf(document.getId());
+        this.title = document.getTitle();
+        this.description = document.getDescription();
+        this.price = document.getPrice();
+        this.brand = document.getBrand();
+        this.size = document.getSize();
+        this.condition = document.getCondition();
+        this.shippingInfo = document.getShippingInfo();
+        this.status = document.getStatus();
+        this.favoriteCount = favoriteCount;
+        this.isBoosted = document.getIsBoosted() != null ? document.getIsBoosted() : false;
+        this.boostLevel = document.getBoostLevel() != null ? document.getBoostLevel() : 0;
+        this.images = new ArrayList<>();
+        if (document.getImageIds() != null) {
+            for (Long imageId : document.getImageIds()) {
+                this.images.add(new ImageMeta(imageId, null, null));
+            }
+        }
+    }
+
     public static class ImageMeta {
         private Long id;
         private String fileName;
@@ -51,6 +110,11 @@ public class ProductListDTO {
         public Long getId() { return id; }
         public String getFileName() { return fileName; }
         public String getContentType() { return contentType; }
+        // Déclinaisons servies par ProductImageController (l'original tant qu'elles ne sont pas générées)
+        public String getUrl() { return "/api/products/image/" + id; }
+        public String getThumbUrl() { return getUrl() + "/thumb"; }
+        public String getCardUrl() { return getUrl() + "/card"; }
+        public String getFullUrl() { return getUrl() + "/full"; }
     }
 
     // Getters et setters
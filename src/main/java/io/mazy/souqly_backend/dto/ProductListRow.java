@@ -0,0 +1,57 @@
+package io.mazy.souqly_backend.dto;
+
+import io.mazy.souqly_backend.entity.Product;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection JPQL (constructeur) des colonnes nécessaires au listing.
+ * Ne charge ni les images, ni la catégorie, ni le vendeur du produit.
+ */
+public class ProductListRow {
+    private final Long id;
+    private final String title;
+    private final String description;
+    private final Double price;
+    private final String brand;
+    private final String size;
+    private final String condition;
+    private final String shippingInfo;
+    private final Product.ProductStatus status;
+    private final Integer favoriteCount;
+    private final Boolean isBoosted;
+    private final Integer boostLevel;
+    private final LocalDateTime createdAt;
+
+    public ProductListRow(Long id, String title, String description, Double price, String brand,
+                          String size, String condition, String shippingInfo, Product.ProductStatus status,
+                          Integer favoriteCount, Boolean isBoosted, Integer boostLevel, LocalDateTime createdAt) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.price = price;
+        this.brand = brand;
+        this.size = size;
+        this.condition = condition;
+        this.shippingInfo = shippingInfo;
+        this.status = status;
+        this.favoriteCount = favoriteCount;
+        this.isBoosted = isBoosted;
+        this.boostLevel = boostLevel;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() { return id; }
+    public String getTitle() { return title; }
+    public String getDescription() { return description; }
+    public Double getPrice() { return price; }
+    public String getBrand() { return brand; }
+    public String getSize() { return size; }
+    public String getCondition() { return condition; }
+    public String getShippingInfo() { return shippingInfo; }
+    public Product.ProductStatus getStatus() { return status; }
+    public Integer getFavoriteCount() { return favoriteCount; }
+    public Boolean getIsBoosted() { return isBoosted; }
+    public Integer getBoostLevel() { return boostLevel; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,44 @@
+package io.mazy.souqly_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Filtres et tri du catalogue, appliqués côté base par ProductListingRepository.
+ * Les champs null (ou vides) sont ignorés.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductListingFilter {
+    private Long categoryId;
+    private Double minPrice;
+    private Double maxPrice;
+    private String condition;
+    private String brand;
+    private String size;
+    private String sortBy;
+    private String sortOrder;
+
+    /**
+     * Vrai si aucun filtre ni tri explicite n'est demandé : le fil par défaut suffit.
+     */
+    public boolean isUnfiltered() {
+        return categoryId == null && minPrice == null && maxPrice == null
+            && isBlank(condition) && isBlank(brand) && isBlank(size)
+            && isBlank(sortBy) && isBlank(sortOrder);
+    }
+
+    /**
+     * Clé stable utilisée pour le cache des premières pages filtrées
+     */
+    public String cacheKey() {
+        return categoryId + "|" + minPrice + "|" + maxPrice + "|" + condition + "|" + brand + "|" + size
+            + "|" + sortBy + "|" + sortOrder;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
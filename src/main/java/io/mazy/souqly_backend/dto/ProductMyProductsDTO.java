@@ -98,6 +98,28 @@ public class ProductMyProductsDTO {
         }
     }
     
+    /**
+     * Construction à partir d'une projection, les relations étant déjà converties en lot par l'appelant
+     */
+    public ProductMyProductsDTO(SellerProductRow row, List<ProductImageDTO> images, CategoryDTO category, UserDTO seller) {
+        this.id = row.getId();
+        this.title = row.getTitle();
+        this.description = row.getDescription();
+        this.price = BigDecimal.valueOf(row.getPrice());
+        this.status = row.getStatus().name();
+        this.city = row.getCity();
+        this.country = row.getCountry();
+        this.state = null;
+        this.favoriteCount = row.getFavoriteCount();
+        this.isBoosted = row.getIsBoosted();
+        this.boostExpiresAt = null;
+        this.createdAt = row.getCreatedAt();
+        this.updatedAt = row.getUpdatedAt();
+        this.images = images;
+        this.category = category;
+        this.seller = seller;
+    }
+    
     // Getters et Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
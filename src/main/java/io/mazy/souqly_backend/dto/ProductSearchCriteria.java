@@ -0,0 +1,30 @@
+package io.mazy.souqly_backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Critères de recherche Elasticsearch. Tout critère null ou vide est simplement ignoré.
+ * Plusieurs valeurs d'un même critère se combinent en OU, des critères différents en ET.
+ * sortBy : relevance (défaut : texte, popularité, fraîcheur et boost mêlés), price, popularity, views
+ * ou recent ; sortOrder : asc ou desc.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchCriteria {
+    private String query;
+    private Long categoryId;
+    private List<String> brands;
+    private List<String> sizes;
+    private List<String> conditions;
+    private List<String> cities;
+    private String country;
+    private Double minPrice;
+    private Double maxPrice;
+    private String sortBy;
+    private String sortOrder;
+}
@@ -0,0 +1,66 @@
+package io.mazy.souqly_backend.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Curseur opaque de pagination Elasticsearch (search_after) : encode les valeurs de tri du dernier hit renvoyé,
+ * avec la signature du tri qui les a produites. Le client le renvoie tel quel pour obtenir la suite,
+ * sans from/size ni limite de profondeur. Un curseur d'un autre tri, tronqué ou forgé est refusé au décodage
+ * (400) au lieu d'être rejeté par Elasticsearch.
+ */
+public final class SearchAfterCursor {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private SearchAfterCursor() {
+    }
+
+    public static String encode(String sortSignature, List<Object> sortValues) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(MAPPER.writeValueAsBytes(new Payload(sortSignature, sortValues)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Curseur non encodable", e);
+        }
+    }
+
+    /**
+     * Décode un curseur reçu du client. Un curseur vide ou null désigne la première page.
+     *
+     * @throws IllegalArgumentException si le curseur est illisible, vient d'un autre tri
+     *         ou ne porte pas une valeur scalaire par critère de tri
+     */
+    public static List<Object> decode(String cursor, String sortSignature, int sortArity) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        Payload payload;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            payload = MAPPER.readValue(raw, Payload.class);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Curseur invalide", e);
+        }
+        if (payload == null || !sortSignature.equals(payload.sort())) {
+            throw new IllegalArgumentException("Curseur d'un autre tri");
+        }
+        List<Object> values = payload.after();
+        if (values == null || values.size() != sortArity) {
+            throw new IllegalArgumentException("Curseur invalide");
+        }
+        for (Object value : values) {
+            if (!(value instanceof Number || value instanceof String || value instanceof Boolean)) {
+                throw new IllegalArgumentException("Curseur invalide");
+            }
+        }
+        return values;
+    }
+
+    private record Payload(String sort, List<Object> after) {
+    }
+}
@@ -0,0 +1,54 @@
+package io.mazy.souqly_backend.dto;
+
+import io.mazy.souqly_backend.entity.Product;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection JPQL (constructeur) des colonnes de l'écran "mes produits".
+ * La catégorie n'est portée que par son id : l'arbre est reconstruit à partir d'une seule requête.
+ */
+public class SellerProductRow {
+    private final Long id;
+    private final String title;
+    private final String description;
+    private final Double price;
+    private final Product.ProductStatus status;
+    private final String city;
+    private final String country;
+    private final Integer favoriteCount;
+    private final Boolean isBoosted;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final Long categoryId;
+
+    public SellerProductRow(Long id, String title, String description, Double price, Product.ProductStatus status,
+                            String city, String country, Integer favoriteCount, Boolean isBoosted,
+                            LocalDateTime createdAt, LocalDateTime updatedAt, Long categoryId) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.price = price;
+        this.status = status;
+        this.city = city;
+        this.country = country;
+        this.favoriteCount = favoriteCount;
+        this.isBoosted = isBoosted;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.categoryId = categoryId;
+    }
+
+    public Long getId() { return id; }
+    public String getTitle() { return title; }
+    public String getDescription() { return description; }
+    public Double getPrice() { return price; }
+    public Product.ProductStatus getStatus() { return status; }
+    public String getCity() { return city; }
+    public String getCountry() { return country; }
+    public Integer getFavoriteCount() { return favoriteCount; }
+    public Boolean getIsBoosted() { return isBoosted; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public Long getCategoryId() { return categoryId; }
+}
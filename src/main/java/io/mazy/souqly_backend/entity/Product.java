@@ -24,8 +24,11 @@ import java.util.List;
 @AllArgsConstructor
 public class Product {
     
+    // Séquence de la colonne (pas IDENTITY) pour permettre le batching JDBC des inserts ;
+    // le pas de 50 est aligné sur l'INCREMENT BY posé par add_products_id_sequence_increment.xml
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_id_seq")
+    @SequenceGenerator(name = "products_id_seq", sequenceName = "products_id_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, length = 120)
@@ -111,6 +114,11 @@ public class Product {
     
     @Column(name = "boost_level")
     private Integer boostLevel = 0;
+
+    // Version externe du document Elasticsearch, écrite uniquement en SQL par le listener de search_outbox
+    @JsonIgnore
+    @Column(name = "search_version", insertable = false, updatable = false)
+    private Long searchVersion;
     
     @PrePersist
     protected void onCreate() {
@@ -8,6 +8,8 @@ import jakarta.persistence.Cacheable;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Cacheable
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
@@ -23,10 +25,36 @@ public class ProductImage {
     @JsonBackReference
     private Product product;
 
+    // Ancien stockage en base, vidé par ImageBlobMigration au profit de storageKey
     @Basic(fetch = FetchType.LAZY)
-    @Column(name = "image_data", nullable = false, columnDefinition = "BYTEA")
+    @Column(name = "image_data", columnDefinition = "BYTEA")
     private byte[] imageData;
 
+    // Clé SHA-256 du fichier dans l'ImageStore
+    @Column(name = "storage_key", length = 64)
+    private String storageKey;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+
+    // Déclinaisons JPEG générées par ImageVariantService (clés dans l'ImageStore)
+    @Column(name = "thumb_key", length = 64)
+    private String thumbKey;
+
+    @Column(name = "card_key", length = 64)
+    private String cardKey;
+
+    @Column(name = "full_key", length = 64)
+    private String fullKey;
+
+    // Échecs de génération des déclinaisons, incrémentés uniquement en SQL par ImageVariantService
+    @Column(name = "variant_attempts", nullable = false, updatable = false)
+    private int variantAttempts = 0;
+
+    // Last-Modified des réponses image
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
     @Column(name = "content_type")
     private String contentType;
 
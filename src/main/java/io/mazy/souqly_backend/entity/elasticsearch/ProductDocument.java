@@ -1,19 +1,27 @@
 package io.mazy.souqly_backend.entity.elasticsearch;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
 import org.springframework.data.elasticsearch.annotations.Document;
 import org.springframework.data.elasticsearch.annotations.Field;
 import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
 import org.springframework.data.elasticsearch.annotations.Setting;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
+// Lu aussi par le client Java Elasticsearch (recherche à facettes), qui ne connaît pas le champ _class
+@JsonIgnoreProperties(ignoreUnknown = true)
 @Document(indexName = "products")
 @Setting(settingPath = "elasticsearch-settings.json")
 public class ProductDocument {
 
+    // Keyword (doc values) : départage des tris et pagination search_after
     @Id
+    @Field(type = FieldType.Keyword)
     private String id;
 
     @Field(type = FieldType.Text, analyzer = "french")
@@ -25,7 +33,9 @@ public class ProductDocument {
     @Field(type = FieldType.Double)
     private Double price;
 
-    @Field(type = FieldType.Text, analyzer = "french")
+    // brand.keyword : valeur exacte pour les agrégations (facettes) et les filtres
+    @MultiField(mainField = @Field(type = FieldType.Text, analyzer = "french"),
+                otherFields = @InnerField(suffix = "keyword", type = FieldType.Keyword))
     private String brand;
 
     @Field(type = FieldType.Keyword)
@@ -67,15 +77,26 @@ public class ProductDocument {
     @Field(type = FieldType.Integer)
     private Integer favoriteCount;
 
-    @Field(type = FieldType.Text)
+    // Dates ISO (LocalDateTime#toString) : tri "recent" et fraîcheur du classement
+    @Field(type = FieldType.Date, format = DateFormat.date_optional_time)
     private String createdAt;
 
-    @Field(type = FieldType.Text)
+    @Field(type = FieldType.Date, format = DateFormat.date_optional_time)
     private String updatedAt;
 
     @Field(type = FieldType.Nested)
     private List<String> tags;
 
+    @Field(type = FieldType.Boolean)
+    private Boolean isBoosted;
+
+    @Field(type = FieldType.Integer)
+    private Integer boostLevel;
+
+    // Images du produit, dans l'ordre d'affichage : le listing de recherche est servi sans passer par la base
+    @Field(type = FieldType.Long, index = false)
+    private List<Long> imageIds;
+
     // Constructors
     public ProductDocument() {}
 
@@ -276,4 +297,28 @@ public class ProductDocument {
     public void setTags(List<String> tags) {
         this.tags = tags;
     }
-} 
\ No newline at end of file
+
+    public Boolean getIsBoosted() {
+        return isBoosted;
+    }
+
+    public void setIsBoosted(Boolean isBoosted) {
+        this.isBoosted = isBoosted;
+    }
+
+    public Integer getBoostLevel() {
+        return boostLevel;
+    }
+
+    public void setBoostLevel(Integer boostLevel) {
+        this.boostLevel = boostLevel;
+    }
+
+    public List<Long> getImageIds() {
+        return imageIds;
+    }
+
+    public void setImageIds(List<Long> imageIds) {
+        this.imageIds = imageIds;
+    }
+}
@@ -0,0 +1,114 @@
+package io.mazy.souqly_backend.entity.elasticsearch;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.CompletionField;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.Setting;
+import org.springframework.data.elasticsearch.core.suggest.Completion;
+
+/**
+ * Entrée de l'index d'autocomplétion, distinct de l'index produits : un titre, une marque,
+ * une catégorie ou une recherche fréquente. Quelques dizaines d'octets par entrée, l'index tient en mémoire.
+ *
+ * suggest sert au completion suggester (FST en mémoire, préfixe du début de chaque entrée) ;
+ * text est analysé en edge n-grams pour retrouver un préfixe de n'importe quel mot.
+ *
+ * Les analyseurs reprennent la chaîne "french" de l'index produits (élision, mots vides) sans son stemmer :
+ * ils analysent un mot en cours de frappe, et la racine d'un préfixe n'est pas un préfixe de la racine du mot
+ * ("chevau" resterait tel quel, "chevaux" devient "cheval"). Le dernier mot n'est jamais retiré comme mot vide
+ * (remove_trailing à false) : "la" peut être le début de "lampe". asciifolding, absent de l'index produits,
+ * accepte les préfixes tapés sans accents.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Document(indexName = "product_suggestions")
+@Setting(settingPath = "elasticsearch-suggest-settings.json")
+public class SuggestionDocument {
+
+    public static final String TITLE = "title";
+    public static final String BRAND = "brand";
+    public static final String CATEGORY = "category";
+    public static final String QUERY = "query";
+
+    @Id
+    @Field(type = FieldType.Keyword)
+    private String id;
+
+    @Field(type = FieldType.Text, analyzer = "autocomplete", searchAnalyzer = "suggest")
+    private String text;
+
+    @Field(type = FieldType.Keyword)
+    private String type;
+
+    @Field(type = FieldType.Integer)
+    private Integer weight;
+
+    @CompletionField(analyzer = "suggest", searchAnalyzer = "suggest", maxInputLength = 60)
+    private Completion suggest;
+
+    // Date (epoch ms) de la reconstruction qui a écrit l'entrée : les entrées plus anciennes sont purgées
+    @Field(type = FieldType.Long)
+    private Long refreshedAt;
+
+    public SuggestionDocument() {}
+
+    public SuggestionDocument(String id, String text, String type, Integer weight, Completion suggest,
+                              Long refreshedAt) {
+        this.id = id;
+        this.text = text;
+        this.type = type;
+        this.weight = weight;
+        this.suggest = suggest;
+        this.refreshedAt = refreshedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Integer weight) {
+        this.weight = weight;
+    }
+
+    public Completion getSuggest() {
+        return suggest;
+    }
+
+    public void setSuggest(Completion suggest) {
+        this.suggest = suggest;
+    }
+
+    public Long getRefreshedAt() {
+        return refreshedAt;
+    }
+
+    public void setRefreshedAt(Long refreshedAt) {
+        this.refreshedAt = refreshedAt;
+    }
+}
@@ -31,6 +31,32 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     List<Category> findAllActive();
     
     boolean existsByKey(String key);
+
+    public interface CategoryEdge {
+        Long getId();
+        Long getParentId();
+    }
+
+    // Arêtes (id, parent) de tout l'arbre, pour développer une catégorie en sous-arbre sans charger les entités
+    @Query("SELECT c.id as id, p.id as parentId FROM Category c LEFT JOIN c.parent p")
+    List<CategoryEdge> findAllEdges();
+
+    public interface CategoryNode {
+        Long getId();
+        Long getParentId();
+        String getKey();
+        String getLabel();
+        String getIconName();
+        String getBadgeText();
+        Boolean getActive();
+        Integer getSortOrder();
+    }
+
+    // Tout l'arbre en une requête, sans le graphe EAGER parent/enfants des entités
+    @Query("SELECT c.id as id, p.id as parentId, c.key as key, c.label as label, c.iconName as iconName, " +
+           "c.badgeText as badgeText, c.active as active, c.sortOrder as sortOrder " +
+           "FROM Category c LEFT JOIN c.parent p")
+    List<CategoryNode> findAllNodes();
     
     @Query("SELECT c FROM Category c WHERE c.key LIKE %:searchTerm% OR c.label LIKE %:searchTerm%")
     List<Category> searchCategories(@Param("searchTerm") String searchTerm);
@@ -1,9 +1,27 @@
 package io.mazy.souqly_backend.repository;
 
 import io.mazy.souqly_backend.entity.ChatMessageEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessageEntity, Long> {
     List<ChatMessageEntity> findByConversationIdOrderBySentAtAsc(String conversationId);
-} 
\ No newline at end of file
+
+    // Pagination par clé (sentAt, id), des messages les plus récents vers les plus anciens
+    @Query("SELECT m FROM ChatMessageEntity m WHERE m.conversationId = :conversationId " +
+           "ORDER BY m.sentAt DESC, m.id DESC")
+    List<ChatMessageEntity> findLatestByConversationId(@Param("conversationId") String conversationId, Pageable limit);
+
+    @Query("SELECT m FROM ChatMessageEntity m WHERE m.conversationId = :conversationId " +
+           "AND (m.sentAt < :sentAt OR (m.sentAt = :sentAt AND m.id < :id)) " +
+           "ORDER BY m.sentAt DESC, m.id DESC")
+    List<ChatMessageEntity> findByConversationIdBefore(@Param("conversationId") String conversationId,
+                                                       @Param("sentAt") LocalDateTime sentAt,
+                                                       @Param("id") Long id,
+                                                       Pageable limit);
+} 
@@ -1,9 +1,62 @@
 package io.mazy.souqly_backend.repository;
 
 import io.mazy.souqly_backend.entity.ProductImage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ProductImageRepository extends JpaRepository<ProductImage, Long> {
     List<ProductImage> findByProductId(Long productId);
-} 
\ No newline at end of file
+
+    // Métadonnées d'image (sans le BYTEA) pour un lot de produits
+    interface ProductImageMeta {
+        Long getId();
+        Long getProductId();
+        String getFileName();
+        String getContentType();
+    }
+
+    @Query("SELECT i.id as id, i.product.id as productId, i.fileName as fileName, i.contentType as contentType " +
+           "FROM ProductImage i WHERE i.product.id IN :productIds ORDER BY i.id")
+    List<ProductImageMeta> findMetaByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    // Ce qu'il faut pour servir le fichier, sans lire la colonne BYTEA
+    interface ImageFileMeta {
+        Long getProductId();
+        String getContentType();
+        String getStorageKey();
+        Long getSizeBytes();
+        String getThumbKey();
+        String getCardKey();
+        String getFullKey();
+        LocalDateTime getCreatedAt();
+    }
+
+    // Jointure externe : une image uploadée n'est rattachée à un produit qu'à sa création
+    @Query("SELECT p.id as productId, i.contentType as contentType, i.storageKey as storageKey, " +
+           "i.sizeBytes as sizeBytes, i.thumbKey as thumbKey, i.cardKey as cardKey, i.fullKey as fullKey, " +
+           "i.createdAt as createdAt FROM ProductImage i LEFT JOIN i.product p WHERE i.id = :id")
+    Optional<ImageFileMeta> findFileMetaById(@Param("id") Long id);
+
+    // Images pas encore migrées vers l'ImageStore
+    @Query("SELECT i.imageData FROM ProductImage i WHERE i.id = :id")
+    byte[] findLegacyDataById(@Param("id") Long id);
+
+    // Images stockées dont les déclinaisons restent à générer (upload refusé par la file, redémarrage, migration),
+    // hors celles déjà en échec maxAttempts fois
+    @Query("SELECT i.id FROM ProductImage i WHERE i.storageKey IS NOT NULL AND i.thumbKey IS NULL " +
+           "AND i.variantAttempts < :maxAttempts AND i.id > :afterId ORDER BY i.id")
+    List<Long> findIdsWithoutVariants(@Param("afterId") Long afterId, @Param("maxAttempts") int maxAttempts,
+                                      Pageable limit);
+
+    // Nombre de références à une clé de fichier, toutes colonnes confondues
+    @Query("SELECT COUNT(i) FROM ProductImage i WHERE i.storageKey = :key OR i.thumbKey = :key " +
+           "OR i.cardKey = :key OR i.fullKey = :key")
+    long countReferences(@Param("key") String key);
+}
@@ -0,0 +1,21 @@
+package io.mazy.souqly_backend.repository;
+
+import io.mazy.souqly_backend.dto.ProductListRow;
+import io.mazy.souqly_backend.dto.ProductListingFilter;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+
+/**
+ * Fragment de ProductRepository : listing filtré construit dynamiquement (Criteria API).
+ */
+public interface ProductListingRepository {
+
+    /**
+     * Page de lignes de listing (produits actifs et vendus) correspondant aux filtres.
+     *
+     * @param categoryIds catégorie demandée et toutes ses descendantes, ou null pour ne pas filtrer
+     */
+    Page<ProductListRow> findListingRows(ProductListingFilter filter, Collection<Long> categoryIds, Pageable pageable);
+}
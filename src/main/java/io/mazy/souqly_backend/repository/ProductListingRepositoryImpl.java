@@ -0,0 +1,121 @@
+package io.mazy.souqly_backend.repository;
+
+import io.mazy.souqly_backend.dto.ProductListRow;
+import io.mazy.souqly_backend.dto.ProductListingFilter;
+import io.mazy.souqly_backend.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implémentation Criteria du listing filtré.
+ *
+ * Seuls les filtres renseignés deviennent des prédicats, le tri est résolu via une liste blanche
+ * et départagé par l'id pour rester stable d'une page à l'autre.
+ */
+public class ProductListingRepositoryImpl implements ProductListingRepository {
+
+    // Valeurs de sortBy acceptées -> attribut de Product
+    private static final Map<String, String> SORTABLE_ATTRIBUTES = Map.of(
+        "price", "price",
+        "createdAt", "createdAt",
+        "date", "createdAt",
+        "popularity", "favoriteCount",
+        "favorites", "favoriteCount",
+        "views", "viewCount"
+    );
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<ProductListRow> findListingRows(ProductListingFilter filter, Collection<Long> categoryIds, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<ProductListRow> query = cb.createQuery(ProductListRow.class);
+        Root<Product> product = query.from(Product.class);
+        query.select(cb.construct(ProductListRow.class,
+                product.get("id"), product.get("title"), product.get("description"), product.get("price"),
+                product.get("brand"), product.get("size"), product.get("condition"), product.get("shippingInfo"),
+                product.get("status"), product.get("favoriteCount"), product.get("isBoosted"),
+                product.get("boostLevel"), product.get("createdAt")))
+            .where(buildPredicates(cb, product, filter, categoryIds))
+            .orderBy(buildOrder(cb, product, filter));
+
+        TypedQuery<ProductListRow> rowsQuery = entityManager.createQuery(query)
+            .setFirstResult((int) pageable.getOffset())
+            .setMaxResults(pageable.getPageSize());
+        List<ProductListRow> rows = rowsQuery.getResultList();
+
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<Product> counted = countQuery.from(Product.class);
+        countQuery.select(cb.count(counted)).where(buildPredicates(cb, counted, filter, categoryIds));
+        Long total = entityManager.createQuery(countQuery).getSingleResult();
+
+        return new PageImpl<>(rows, pageable, total);
+    }
+
+    private Predicate[] buildPredicates(CriteriaBuilder cb, Root<Product> product,
+                                        ProductListingFilter filter, Collection<Long> categoryIds) {
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(product.get("status").in(Product.ProductStatus.ACTIVE, Product.ProductStatus.SOLD));
+
+        if (categoryIds != null) {
+            // Comparaison sur la clé étrangère, sans jointure vers categories
+            predicates.add(product.get("category").get("id").in(categoryIds));
+        }
+        if (filter.getMinPrice() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(product.get("price"), filter.getMinPrice()));
+        }
+        if (filter.getMaxPrice() != null) {
+            predicates.add(cb.lessThanOrEqualTo(product.get("price"), filter.getMaxPrice()));
+        }
+        if (hasText(filter.getCondition())) {
+            predicates.add(cb.equal(product.get("condition"), filter.getCondition().trim()));
+        }
+        if (hasText(filter.getSize())) {
+            predicates.add(cb.equal(product.get("size"), filter.getSize().trim()));
+        }
+        if (hasText(filter.getBrand())) {
+            // Couvert par l'index sur lower(brand)
+            predicates.add(cb.equal(cb.lower(product.get("brand")), filter.getBrand().trim().toLowerCase()));
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    private List<Order> buildOrder(CriteriaBuilder cb, Root<Product> product, ProductListingFilter filter) {
+        String attribute = filter.getSortBy() != null ? SORTABLE_ATTRIBUTES.get(filter.getSortBy().trim()) : null;
+        if (attribute == null) {
+            attribute = "createdAt";
+        }
+        // Tri décroissant par défaut, sauf pour le prix qui se lit naturellement du moins cher au plus cher
+        boolean ascending = filter.getSortOrder() != null
+            ? "asc".equalsIgnoreCase(filter.getSortOrder().trim())
+            : "price".equals(attribute);
+
+        Path<Object> sortPath = product.get(attribute);
+        Path<Object> idPath = product.get("id");
+        List<Order> orders = new ArrayList<>();
+        orders.add(ascending ? cb.asc(sortPath) : cb.desc(sortPath));
+        orders.add(ascending ? cb.asc(idPath) : cb.desc(idPath));
+        return orders;
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+}
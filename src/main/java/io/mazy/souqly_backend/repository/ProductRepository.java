@@ -1,5 +1,8 @@
 package io.mazy.souqly_backend.repository;
 
+import io.mazy.souqly_backend.dto.ProductIndexRow;
+import io.mazy.souqly_backend.dto.ProductListRow;
+import io.mazy.souqly_backend.dto.SellerProductRow;
 import io.mazy.souqly_backend.entity.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -10,10 +13,16 @@ import org.springframework.data.jpa.repository.QueryHints;
 import jakarta.persistence.QueryHint;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductListingRepository {
     
     List<Product> findBySellerId(Long sellerId);
     
@@ -23,18 +32,6 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @QueryHints({ @QueryHint(name = "org.hibernate.cacheable", value = "true") })
     Page<Product> findActiveProductsCacheable(Pageable pageable);
     
-    @Query("SELECT p FROM Product p WHERE p.status = 'ACTIVE' ORDER BY p.createdAt DESC")
-    Page<Product> findProductsWithFilters(
-        @Param("categoryId") Long categoryId,
-        @Param("minPrice") Double minPrice,
-        @Param("maxPrice") Double maxPrice,
-        @Param("condition") String condition,
-        @Param("brand") String brand,
-        @Param("size") String size,
-        @Param("search") String search,
-        Pageable pageable
-    );
-
     @Query("SELECT p FROM Product p")
     Page<Product> findAllProducts(Pageable pageable);
     
@@ -48,29 +45,155 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE p.status IN ('ACTIVE', 'SOLD') ORDER BY p.createdAt DESC")
     Page<Product> findActiveAndSoldProducts(Pageable pageable);
 
-    // Méthode pour la recherche textuelle
-    Page<Product> findByIsActiveAndTitleContainingIgnoreCase(Boolean isActive, String title, Pageable pageable);
+    // Listing : projection des seules colonnes du ProductListDTO, sans hydrater le graphe EAGER
+    String LISTING_ROW_SELECT = "SELECT new io.mazy.souqly_backend.dto.ProductListRow(" +
+        "p.id, p.title, p.description, p.price, p.brand, p.size, p.condition, p.shippingInfo, " +
+        "p.status, p.favoriteCount, p.isBoosted, p.boostLevel, p.createdAt) FROM Product p ";
+
+    @Query(value = LISTING_ROW_SELECT + "WHERE p.status IN ('ACTIVE', 'SOLD') ORDER BY p.createdAt DESC, p.id DESC",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.status IN ('ACTIVE', 'SOLD')")
+    Page<ProductListRow> findActiveAndSoldListingRows(Pageable pageable);
+
+    // Pagination par clé (createdAt, id) : pas d'OFFSET ni de count(*), coût constant quelle que soit la profondeur
+    @Query(LISTING_ROW_SELECT + "WHERE p.status IN ('ACTIVE', 'SOLD') ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductListRow> findActiveAndSoldListingRowsFirst(Pageable limit);
+
+    @Query(LISTING_ROW_SELECT + "WHERE p.status IN ('ACTIVE', 'SOLD') " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductListRow> findActiveAndSoldListingRowsBefore(@Param("createdAt") LocalDateTime createdAt,
+                                                            @Param("id") Long id,
+                                                            Pageable limit);
+
+    // Recherche plein texte de secours (Elasticsearch indisponible) : tsvector indexé en GIN, classé par ts_rank_cd
+    @Query(value = "SELECT p.id FROM products p, websearch_to_tsquery('french', :query) q " +
+                   "WHERE p.is_active = true AND p.search_vector @@ q " +
+                   "ORDER BY ts_rank_cd(p.search_vector, q) DESC, p.id DESC",
+           countQuery = "SELECT COUNT(*) FROM products p " +
+                        "WHERE p.is_active = true AND p.search_vector @@ websearch_to_tsquery('french', :query)",
+           nativeQuery = true)
+    Page<Long> searchActiveIdsFullText(@Param("query") String query, Pageable pageable);
 
     // Utiliser la méthode Spring Data par défaut pour la pagination
     Page<Product> findAll(Pageable pageable);
 
-    @Modifying
-    @Query("UPDATE Product p SET p.favoriteCount = p.favoriteCount + 1 WHERE p.id = :productId")
-    void incrementFavoriteCount(@Param("productId") Long productId);
+    public interface FavoriteCountRow {
+        Long getId();
+        Integer getFavoriteCount();
+    }
+
+    // Hydratation en base des résultats de recherche (l'ordre est rétabli par l'appelant)
+    @Query(LISTING_ROW_SELECT + "WHERE p.id IN :ids")
+    List<ProductListRow> findListingRowsByIds(@Param("ids") Collection<Long> ids);
+
+    // Compteurs de favoris persistés, chargés en lot par FavoriteCounter
+    @Query("SELECT p.id as id, p.favoriteCount as favoriteCount FROM Product p WHERE p.id IN :ids")
+    List<FavoriteCountRow> findFavoriteCounts(@Param("ids") Collection<Long> ids);
+
+    // Réindexation Elasticsearch : lecture par tranches d'id croissants, catégorie et vendeur joints
+    String INDEX_ROW_SELECT = "SELECT new io.mazy.souqly_backend.dto.ProductIndexRow(" +
+        "p.id, p.title, p.description, p.price, p.brand, p.size, p.condition, p.shippingInfo, p.city, p.country, " +
+        "c.id, c.label, s.id, s.firstName, s.lastName, s.email, p.status, p.isActive, p.viewCount, " +
+        "p.favoriteCount, p.isBoosted, p.boostLevel, p.createdAt, p.updatedAt, p.searchVersion) " +
+        "FROM Product p LEFT JOIN p.category c LEFT JOIN p.seller s ";
+
+    @Query(INDEX_ROW_SELECT + "WHERE p.id > :afterId ORDER BY p.id")
+    List<ProductIndexRow> findIndexRowsAfter(@Param("afterId") Long afterId, Pageable limit);
+
+    // Réindexation : produits créés ou modifiés depuis le début du job (horodatage ou version externe)
+    @Query(INDEX_ROW_SELECT + "WHERE p.id > :afterId AND (p.createdAt >= :since OR p.updatedAt >= :since " +
+           "OR p.searchVersion > :sinceVersion) ORDER BY p.id")
+    List<ProductIndexRow> findIndexRowsModifiedSince(@Param("since") LocalDateTime since,
+                                                     @Param("sinceVersion") long sinceVersion,
+                                                     @Param("afterId") Long afterId,
+                                                     Pageable limit);
+
+    @Query(INDEX_ROW_SELECT + "WHERE p.id IN :ids")
+    List<ProductIndexRow> findIndexRowsByIds(@Param("ids") Collection<Long> ids);
+
+    // Réindexation : ids encore présents parmi ceux d'un index (produits supprimés pendant la copie)
+    @Query("SELECT p.id FROM Product p WHERE p.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    public interface ProductTagRow {
+        Long getProductId();
+        String getTag();
+    }
+
+    @Query("SELECT p.id as productId, t as tag FROM Product p JOIN p.tags t WHERE p.id IN :ids")
+    List<ProductTagRow> findTagsByProductIds(@Param("ids") Collection<Long> ids);
+
+    // Sources de l'index d'autocomplétion : texte et poids (nombre de produits actifs, ou favoris pour un titre)
+    public interface SuggestionSource {
+        String getText();
+        Long getWeight();
+    }
+
+    @Query("SELECT p.brand as text, COUNT(p) as weight FROM Product p " +
+           "WHERE p.status = 'ACTIVE' AND p.brand IS NOT NULL AND p.brand <> '' GROUP BY p.brand")
+    List<SuggestionSource> findBrandSuggestionSources();
+
+    @Query("SELECT c.label as text, COUNT(p) as weight FROM Product p JOIN p.category c " +
+           "WHERE p.status = 'ACTIVE' GROUP BY c.label")
+    List<SuggestionSource> findCategorySuggestionSources();
+
+    public interface TitleSuggestionSource {
+        Long getId();
+        String getText();
+        Integer getWeight();
+    }
+
+    @Query("SELECT p.id as id, p.title as text, p.favoriteCount as weight FROM Product p " +
+           "WHERE p.status = 'ACTIVE' AND p.id > :afterId ORDER BY p.id")
+    List<TitleSuggestionSource> findTitleSuggestionSources(@Param("afterId") Long afterId, Pageable limit);
+
+    // Écran vendeur : projection sans images, catégorie réduite à son id, vendeur chargé une seule fois à part
+    String SELLER_ROW_SELECT = "SELECT new io.mazy.souqly_backend.dto.SellerProductRow(" +
+        "p.id, p.title, p.description, p.price, p.status, p.city, p.country, p.favoriteCount, p.isBoosted, " +
+        "p.createdAt, p.updatedAt, p.category.id) FROM Product p ";
+
+    @Query(SELLER_ROW_SELECT + "WHERE p.seller.id = :sellerId AND p.status IN :statuses " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<SellerProductRow> findSellerRows(@Param("sellerId") Long sellerId,
+                                          @Param("statuses") Collection<Product.ProductStatus> statuses);
 
-    @Modifying
-    @Query("UPDATE Product p SET p.favoriteCount = p.favoriteCount - 1 WHERE p.id = :productId AND p.favoriteCount > 0")
-    void decrementFavoriteCount(@Param("productId") Long productId);
+    @Query(SELLER_ROW_SELECT + "WHERE p.seller.id = :sellerId AND p.status IN :statuses " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<SellerProductRow> findSellerRowsFirst(@Param("sellerId") Long sellerId,
+                                               @Param("statuses") Collection<Product.ProductStatus> statuses,
+                                               Pageable limit);
 
-    List<Product> findBySellerIdAndStatus(Long sellerId, Product.ProductStatus status);
+    @Query(SELLER_ROW_SELECT + "WHERE p.seller.id = :sellerId AND p.status IN :statuses " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<SellerProductRow> findSellerRowsBefore(@Param("sellerId") Long sellerId,
+                                                @Param("statuses") Collection<Product.ProductStatus> statuses,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") Long id,
+                                                Pageable limit);
 
-    @Query("SELECT p FROM Product p WHERE p.seller.id = :sellerId AND p.status IN ('INACTIVE', 'SOLD', 'DELETED')")
-    List<Product> findBySellerIdAndTerminatedStatus(@Param("sellerId") Long sellerId);
+    // Vitrine publique d'un vendeur, au format du listing
+    @Query(LISTING_ROW_SELECT + "WHERE p.seller.id = :sellerId ORDER BY p.createdAt DESC, p.id DESC")
+    List<ProductListRow> findListingRowsBySellerId(@Param("sellerId") Long sellerId);
     
     // Méthodes pour les recommandations
     List<Product> findByIdInAndIsActiveTrue(List<Long> ids);
     
-    List<Product> findByIsActiveTrueOrderByFavoriteCountDesc();
+    /**
+     * Produits actifs parmi ids, dans l'ordre de la liste (ids inconnus ou inactifs ignorés)
+     */
+    default List<Product> findActiveByIdsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Integer> rank = new HashMap<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            rank.putIfAbsent(ids.get(i), i);
+        }
+        List<Product> products = findByIdInAndIsActiveTrue(ids);
+        products.sort(Comparator.comparing(product -> rank.get(product.getId())));
+        return products;
+    }
     
     // Méthode pour compter les produits par utilisateur
     int countBySellerId(Long sellerId);
@@ -0,0 +1,28 @@
+package io.mazy.souqly_backend.repository.elasticsearch;
+
+import io.mazy.souqly_backend.dto.CursorPage;
+import io.mazy.souqly_backend.dto.ProductSearchCriteria;
+import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+
+/**
+ * Recherche filtrée construite par programme ({@link ProductSearchQueries}) : seuls les critères fournis
+ * s'appliquent, les filtres sont en contexte filtre.
+ */
+public interface ProductFilteredSearchRepository {
+
+    /**
+     * Page classique (from/size), avec total
+     */
+    Page<ProductDocument> searchProductsWithFilters(ProductSearchCriteria criteria, Collection<Long> categoryIds,
+                                                    Pageable pageable);
+
+    /**
+     * Tranche suivant le curseur search_after (null ou vide : première tranche), sans limite de profondeur
+     */
+    CursorPage<ProductDocument> searchProductsAfter(ProductSearchCriteria criteria, Collection<Long> categoryIds,
+                                                    String cursor, int size);
+}
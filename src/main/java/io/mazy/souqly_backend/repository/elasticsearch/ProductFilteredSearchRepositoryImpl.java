@@ -0,0 +1,91 @@
+package io.mazy.souqly_backend.repository.elasticsearch;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import io.mazy.souqly_backend.dto.CursorPage;
+import io.mazy.souqly_backend.dto.ProductSearchCriteria;
+import io.mazy.souqly_backend.dto.SearchAfterCursor;
+import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class ProductFilteredSearchRepositoryImpl implements ProductFilteredSearchRepository {
+
+    // Valeurs de tri par hit : critère principal puis id (ProductSearchQueries.sort)
+    private static final int SORT_VALUES = 2;
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final SearchRanking searchRanking;
+
+    public ProductFilteredSearchRepositoryImpl(ElasticsearchOperations elasticsearchOperations,
+                                               SearchRanking searchRanking) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.searchRanking = searchRanking;
+    }
+
+    @Override
+    public Page<ProductDocument> searchProductsWithFilters(ProductSearchCriteria criteria,
+                                                           Collection<Long> categoryIds, Pageable pageable) {
+        NativeQuery query = baseBuilder(criteria, categoryIds)
+            .withPageable(pageable)
+            .withTrackTotalHits(true)
+            .build();
+        SearchHits<ProductDocument> hits = elasticsearchOperations.search(query, ProductDocument.class);
+        return new PageImpl<>(contents(hits.getSearchHits()), pageable, hits.getTotalHits());
+    }
+
+    @Override
+    public CursorPage<ProductDocument> searchProductsAfter(ProductSearchCriteria criteria,
+                                                           Collection<Long> categoryIds, String cursor, int size) {
+        String sortSignature = ProductSearchQueries.sortSignature(criteria.getSortBy(), criteria.getSortOrder());
+        List<Object> searchAfter = SearchAfterCursor.decode(cursor, sortSignature, SORT_VALUES);
+        // Critère principal numérique (prix, compteur, date, score) puis id (keyword)
+        if (searchAfter != null && !(searchAfter.get(0) instanceof Number && searchAfter.get(1) instanceof String)) {
+            throw new IllegalArgumentException("Curseur invalide");
+        }
+        // Un hit de plus que demandé pour savoir s'il existe une suite ; pas de total (track_total_hits=false)
+        NativeQueryBuilder builder = baseBuilder(criteria, categoryIds)
+            .withPageable(PageRequest.of(0, size + 1))
+            .withTrackTotalHits(false);
+        if (searchAfter != null) {
+            builder.withSearchAfter(searchAfter);
+        }
+        List<SearchHit<ProductDocument>> hits = elasticsearchOperations
+            .search(builder.build(), ProductDocument.class).getSearchHits();
+
+        boolean hasNext = hits.size() > size;
+        List<SearchHit<ProductDocument>> page = hasNext ? hits.subList(0, size) : hits;
+        String nextCursor = hasNext
+            ? SearchAfterCursor.encode(sortSignature, page.get(page.size() - 1).getSortValues())
+            : null;
+        return new CursorPage<>(contents(page), nextCursor, hasNext, page.size());
+    }
+
+    private NativeQueryBuilder baseBuilder(ProductSearchCriteria criteria, Collection<Long> categoryIds) {
+        Query query = ProductSearchQueries.query(criteria, categoryIds);
+        if (ProductSearchQueries.isRelevanceSort(criteria.getSortBy())) {
+            query = searchRanking.rank(query, ProductSearchQueries.hasText(criteria.getQuery()));
+        }
+        NativeQueryBuilder builder = NativeQuery.builder().withQuery(query);
+        ProductSearchQueries.sort(criteria.getSortBy(), criteria.getSortOrder()).forEach(builder::withSort);
+        return builder;
+    }
+
+    private List<ProductDocument> contents(List<SearchHit<ProductDocument>> hits) {
+        List<ProductDocument> documents = new ArrayList<>(hits.size());
+        for (SearchHit<ProductDocument> hit : hits) {
+            documents.add(hit.getContent());
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,158 @@
+package io.mazy.souqly_backend.repository.elasticsearch;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.TextQueryType;
+import co.elastic.clients.json.JsonData;
+import io.mazy.souqly_backend.dto.ProductSearchCriteria;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Construction programmatique des requêtes de recherche produit.
+ *
+ * Seuls les critères renseignés produisent une clause. Le texte libre est la seule clause scorée (must) ;
+ * tous les autres critères vont en contexte filtre (sans score, mis en cache par Elasticsearch).
+ * Les tris se terminent par l'id du document, unique, pour que search_after soit déterministe.
+ */
+public final class ProductSearchQueries {
+
+    public static final String CATEGORY = "category";
+    public static final String BRAND = "brand";
+    public static final String SIZE = "size";
+    public static final String CONDITION = "condition";
+    public static final String CITY = "city";
+    public static final String COUNTRY = "country";
+    public static final String PRICE = "price";
+
+    private ProductSearchQueries() {
+    }
+
+    /**
+     * Texte libre (scoré) et produits actifs (filtre)
+     */
+    public static Query baseQuery(String text) {
+        return Query.of(q -> q.bool(b -> {
+            if (hasText(text)) {
+                b.must(m -> m.multiMatch(mm -> mm
+                    .query(text.trim())
+                    .fields("title^2", "description", "brand", "categoryName")
+                    .type(TextQueryType.BestFields)
+                    .fuzziness("AUTO")));
+            }
+            return b.filter(f -> f.term(t -> t.field("isActive").value(true)));
+        }));
+    }
+
+    /**
+     * Requête complète : texte libre + produits actifs + tous les critères en filtre
+     */
+    public static Query query(ProductSearchCriteria criteria, Collection<Long> categoryIds) {
+        Query base = baseQuery(criteria.getQuery());
+        List<Query> filters = new ArrayList<>(filters(criteria, categoryIds).values());
+        if (filters.isEmpty()) {
+            return base;
+        }
+        return Query.of(q -> q.bool(b -> b.must(base).filter(filters)));
+    }
+
+    /**
+     * Clauses filtre des critères renseignés, par nom de critère (utilisé par les facettes pour exclure le leur).
+     * categoryIds contient la catégorie demandée et ses sous-catégories.
+     */
+    public static Map<String, Query> filters(ProductSearchCriteria criteria, Collection<Long> categoryIds) {
+        Map<String, Query> filters = new LinkedHashMap<>();
+        if (categoryIds != null && !categoryIds.isEmpty()) {
+            List<FieldValue> values = categoryIds.stream().map(FieldValue::of).toList();
+            filters.put(CATEGORY, Query.of(q -> q.terms(t -> t.field("categoryId").terms(v -> v.value(values)))));
+        }
+        putTerms(filters, BRAND, "brand.keyword", criteria.getBrands());
+        putTerms(filters, SIZE, "size", criteria.getSizes());
+        putTerms(filters, CONDITION, "condition", criteria.getConditions());
+        putTerms(filters, CITY, "city", criteria.getCities());
+        if (criteria.getCountry() != null && !criteria.getCountry().isBlank()) {
+            filters.put(COUNTRY, Query.of(q -> q.term(t -> t.field("country").value(criteria.getCountry()))));
+        }
+        if (criteria.getMinPrice() != null || criteria.getMaxPrice() != null) {
+            filters.put(PRICE, Query.of(q -> q.range(r -> {
+                r.field("price");
+                if (criteria.getMinPrice() != null) {
+                    r.gte(JsonData.of(criteria.getMinPrice()));
+                }
+                if (criteria.getMaxPrice() != null) {
+                    r.lte(JsonData.of(criteria.getMaxPrice()));
+                }
+                return r;
+            })));
+        }
+        return filters;
+    }
+
+    /**
+     * Tri demandé (pertinence par défaut), suivi de l'id en départage
+     */
+    public static List<SortOptions> sort(String sortBy, String sortOrder) {
+        SortOrder order = "asc".equalsIgnoreCase(sortOrder) ? SortOrder.Asc : SortOrder.Desc;
+        List<SortOptions> sort = new ArrayList<>(2);
+        String field = sortField(sortBy);
+        if (field != null) {
+            sort.add(SortOptions.of(s -> s.field(f -> f.field(field).order(order))));
+        } else {
+            sort.add(SortOptions.of(s -> s.score(sc -> sc.order(SortOrder.Desc))));
+        }
+        sort.add(SortOptions.of(s -> s.field(f -> f.field("id").order(SortOrder.Asc))));
+        return sort;
+    }
+
+    /**
+     * Signature du tri produit par {@link #sort}, portée par les curseurs search_after : un curseur
+     * n'est rejoué qu'avec le tri qui l'a émis. Deux valeurs par hit : critère principal puis id.
+     */
+    public static String sortSignature(String sortBy, String sortOrder) {
+        String field = sortField(sortBy);
+        if (field == null) {
+            return "_score:desc,id:asc";
+        }
+        return field + ("asc".equalsIgnoreCase(sortOrder) ? ":asc" : ":desc") + ",id:asc";
+    }
+
+    /**
+     * Tri par score (pertinence) : le classement {@link SearchRanking} s'applique
+     */
+    public static boolean isRelevanceSort(String sortBy) {
+        return sortField(sortBy) == null;
+    }
+
+    public static boolean hasText(String text) {
+        return text != null && !text.isBlank();
+    }
+
+    private static String sortField(String sortBy) {
+        return sortBy == null ? null : switch (sortBy) {
+            case "price" -> "price";
+            case "popularity", "favorites" -> "favoriteCount";
+            case "views" -> "viewCount";
+            case "recent", "newest" -> "createdAt";
+            default -> null;
+        };
+    }
+
+    private static void putTerms(Map<String, Query> filters, String name, String field, List<String> values) {
+        if (values == null) {
+            return;
+        }
+        List<FieldValue> fieldValues = values.stream()
+            .filter(value -> value != null && !value.isBlank())
+            .map(FieldValue::of)
+            .toList();
+        if (!fieldValues.isEmpty()) {
+            filters.put(name, Query.of(q -> q.terms(t -> t.field(field).terms(v -> v.value(fieldValues)))));
+        }
+    }
+}
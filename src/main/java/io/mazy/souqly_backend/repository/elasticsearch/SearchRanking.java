@@ -0,0 +1,93 @@
+package io.mazy.souqly_backend.repository.elasticsearch;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldValueFactorModifier;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionBoostMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionScore;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionScoreMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonData;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classement "pertinence" calculé par Elasticsearch (function_score), en une passe :
+ * score = pertinence du texte + Σ poids × signal, avec pour signaux
+ * ln(1 + favoris), ln(1 + vues), fraîcheur (gauss sur createdAt, 1 pour un produit du jour)
+ * et niveau de boost des produits boostés. Sans texte libre, seuls les signaux comptent.
+ *
+ * Les poids se règlent par souqly.search.ranking.* ; un poids nul retire le signal.
+ */
+@Component
+public class SearchRanking {
+
+    @Value("${souqly.search.ranking.enabled:true}")
+    private boolean enabled;
+
+    @Value("${souqly.search.ranking.favorites-weight:0.5}")
+    private double favoritesWeight;
+
+    @Value("${souqly.search.ranking.views-weight:0.2}")
+    private double viewsWeight;
+
+    @Value("${souqly.search.ranking.freshness-weight:1.0}")
+    private double freshnessWeight;
+
+    // Âge auquel la fraîcheur tombe à 0.5
+    @Value("${souqly.search.ranking.freshness-scale:14d}")
+    private String freshnessScale;
+
+    @Value("${souqly.search.ranking.boost-weight:1.0}")
+    private double boostWeight;
+
+    /**
+     * Requête enveloppée dans le function_score des signaux ; inchangée si le classement est désactivé
+     *
+     * @param textScored la requête porte un texte libre (score BM25) ; sinon son score est ignoré
+     */
+    public Query rank(Query query, boolean textScored) {
+        List<FunctionScore> functions = functions();
+        if (!enabled || functions.isEmpty()) {
+            return query;
+        }
+        return Query.of(q -> q.functionScore(fs -> fs
+            .query(query)
+            .functions(functions)
+            .scoreMode(FunctionScoreMode.Sum)
+            .boostMode(textScored ? FunctionBoostMode.Sum : FunctionBoostMode.Replace)));
+    }
+
+    private List<FunctionScore> functions() {
+        List<FunctionScore> functions = new ArrayList<>(4);
+        if (favoritesWeight > 0) {
+            functions.add(FunctionScore.of(f -> f
+                .fieldValueFactor(v -> v.field("favoriteCount").modifier(FieldValueFactorModifier.Ln1p).missing(0.0))
+                .weight(favoritesWeight)));
+        }
+        if (viewsWeight > 0) {
+            functions.add(FunctionScore.of(f -> f
+                .fieldValueFactor(v -> v.field("viewCount").modifier(FieldValueFactorModifier.Ln1p).missing(0.0))
+                .weight(viewsWeight)));
+        }
+        if (freshnessWeight > 0) {
+            // Origine arrondie à l'heure : scores stables d'une page à l'autre (search_after) et cache de requête ES
+            functions.add(FunctionScore.of(f -> f
+                .gauss(g -> g.untyped(u -> u
+                    .field("createdAt")
+                    .placement(p -> p
+                        .origin(JsonData.of("now/h"))
+                        .scale(JsonData.of(freshnessScale))
+                        .decay(0.5))))
+                .weight(freshnessWeight)));
+        }
+        if (boostWeight > 0) {
+            functions.add(FunctionScore.of(f -> f
+                .filter(q -> q.term(t -> t.field("isBoosted").value(true)))
+                .fieldValueFactor(v -> v.field("boostLevel").missing(1.0))
+                .weight(boostWeight)));
+        }
+        return functions;
+    }
+}
@@ -0,0 +1,9 @@
+package io.mazy.souqly_backend.repository.elasticsearch;
+
+import io.mazy.souqly_backend.entity.elasticsearch.SuggestionDocument;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SuggestionSearchRepository extends ElasticsearchRepository<SuggestionDocument, String> {
+}
@@ -0,0 +1,97 @@
+package io.mazy.souqly_backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Reconstruction lancée à la demande en arrière-plan (un passage à la fois), dont l'appelant suit l'état
+ * par sondage : l'endpoint qui la lance répond 202 au lieu de tenir la requête HTTP pendant le calcul.
+ */
+@Slf4j
+public final class BackgroundJob {
+
+    private final String name;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Dernier passage lancé par start()
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile Long result;
+    private volatile Long durationMs;
+    private volatile String error;
+
+    public BackgroundJob(String name) {
+        this.name = name;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Lance la tâche en arrière-plan. Retourne false si un passage lancé ici tourne déjà.
+     */
+    public boolean start(LongSupplier task) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        result = null;
+        durationMs = null;
+        error = null;
+        try {
+            executor.execute(() -> run(task));
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * État du dernier passage : en cours, début, fin, résultat ou erreur
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("result", result);
+        status.put("durationMs", durationMs);
+        status.put("error", error);
+        return status;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(LongSupplier task) {
+        long start = System.currentTimeMillis();
+        try {
+            result = task.getAsLong();
+        } catch (RuntimeException e) {
+            error = e.getMessage();
+            log.error("Tâche {} échouée: {}", name, e.getMessage(), e);
+        } finally {
+            durationMs = System.currentTimeMillis() - start;
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+}
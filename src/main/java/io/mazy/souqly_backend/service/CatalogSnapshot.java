@@ -0,0 +1,417 @@
+package io.mazy.souqly_backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Catalogue des produits actifs en colonnes (tableaux primitifs parallèles, triés par id produit),
+ * partagé par les moteurs de recommandation qui parcourent tout le catalogue.
+ *
+ * Les attributs texte (catégorie, marque, état, ville) sont encodés par dictionnaire : chaque valeur distincte
+ * reçoit un code dense, 0 signifiant "absent". Le prix est en double, NaN si absent ; la date de création
+ * en millisecondes epoch ; le niveau de boost vaut 0 pour un produit non boosté.
+ *
+ * Copie sur écriture : une version est immuable et publiée par une référence volatile, les lecteurs
+ * ne prennent aucun verrou. Les modifications de produits relayées par {@link SearchOutboxRelay}
+ * produisent une nouvelle version où seules les lignes touchées sont relues en base ; une reconstruction
+ * complète périodique rattrape ce qui échappe à l'outbox (autres instances).
+ *
+ * {@link #apply} ne bloque jamais : les ids sont mis en attente, et si une reconstruction ou une autre
+ * application est en cours, c'est elle qui les relit à la fin de son passage. La fusion écrit chaque colonne
+ * une seule fois, dans des tableaux à la taille exacte de la nouvelle version.
+ */
+@Slf4j
+@Component
+public class CatalogSnapshot {
+
+    private static final String COLUMNS_SQL =
+        "SELECT p.id, p.category_id, c.category_key, p.brand, p.condition, p.city, p.price, " +
+        "p.favorite_count, p.view_count, p.created_at, " +
+        "CASE WHEN p.is_boosted THEN COALESCE(p.boost_level, 1) ELSE 0 END AS boost_level " +
+        "FROM products p LEFT JOIN categories c ON c.id = p.category_id WHERE p.is_active = true";
+
+    private static final String ALL_SQL = COLUMNS_SQL + " ORDER BY p.id";
+
+    private static final String BY_IDS_SQL = COLUMNS_SQL + " AND p.id = ANY (?) ORDER BY p.id";
+
+    private static final int FETCH_SIZE = 5_000;
+
+    /**
+     * Dictionnaire valeur -> code dense (0 réservé à l'absence de valeur). Figé une fois sa version publiée :
+     * une nouvelle version en repart d'une copie, les codes existants ne changent pas.
+     */
+    static final class Dictionary {
+
+        private final Map<String, Integer> codes;
+
+        Dictionary() {
+            this.codes = new HashMap<>();
+        }
+
+        private Dictionary(Dictionary source) {
+            this.codes = new HashMap<>(source.codes);
+        }
+
+        int encode(String value) {
+            if (value == null) {
+                return 0;
+            }
+            return codes.computeIfAbsent(value, v -> codes.size() + 1);
+        }
+
+        /**
+         * Code de la valeur, ou -1 si elle n'apparaît dans aucun produit
+         */
+        int code(String value) {
+            return value == null ? 0 : codes.getOrDefault(value, -1);
+        }
+
+        /**
+         * Nombre de codes, absence comprise
+         */
+        int size() {
+            return codes.size() + 1;
+        }
+    }
+
+    /**
+     * Une version du catalogue, en lecture seule
+     */
+    static final class Columns {
+
+        final int size;
+        final long[] ids;
+        final long[] categoryIds;
+        final int[] categories;
+        final int[] brands;
+        final int[] conditions;
+        final int[] cities;
+        final double[] prices;
+        final int[] favoriteCounts;
+        final int[] viewCounts;
+        final long[] createdAt;
+        final int[] boostLevels;
+        final Dictionary categoryCodes;
+        final Dictionary brandCodes;
+        final Dictionary conditionCodes;
+        final Dictionary cityCodes;
+
+        // Les tableaux du builder sont repris tels quels s'ils ont la bonne taille : il n'est plus utilisé ensuite
+        private Columns(Builder builder) {
+            this.size = builder.size;
+            this.ids = fit(builder.ids, size);
+            this.categoryIds = fit(builder.categoryIds, size);
+            this.categories = fit(builder.categories, size);
+            this.brands = fit(builder.brands, size);
+            this.conditions = fit(builder.conditions, size);
+            this.cities = fit(builder.cities, size);
+            this.prices = fit(builder.prices, size);
+            this.favoriteCounts = fit(builder.favoriteCounts, size);
+            this.viewCounts = fit(builder.viewCounts, size);
+            this.createdAt = fit(builder.createdAt, size);
+            this.boostLevels = fit(builder.boostLevels, size);
+            this.categoryCodes = builder.categoryCodes;
+            this.brandCodes = builder.brandCodes;
+            this.conditionCodes = builder.conditionCodes;
+            this.cityCodes = builder.cityCodes;
+        }
+
+        /**
+         * Ligne du produit, ou -1 s'il n'est pas (ou plus) actif
+         */
+        int rowOf(long productId) {
+            int row = Arrays.binarySearch(ids, productId);
+            return row >= 0 ? row : -1;
+        }
+
+        private static long[] fit(long[] values, int size) {
+            return values.length == size ? values : Arrays.copyOf(values, size);
+        }
+
+        private static int[] fit(int[] values, int size) {
+            return values.length == size ? values : Arrays.copyOf(values, size);
+        }
+
+        private static double[] fit(double[] values, int size) {
+            return values.length == size ? values : Arrays.copyOf(values, size);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Reconstruction, chargement initial et application des modifications : un seul à la fois
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Produits modifiés pas encore relus
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    private volatile Columns current;
+
+    public CatalogSnapshot(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Version courante ; chargée au premier appel si la reconstruction planifiée n'est pas encore passée
+     */
+    Columns columns() {
+        Columns columns = current;
+        if (columns == null) {
+            lock.lock();
+            try {
+                columns = current;
+                if (columns == null) {
+                    columns = load();
+                    current = columns;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Ids des produits actifs les plus mis en favoris, du plus au moins populaire
+     */
+    public List<Long> mostFavorited(int limit) {
+        Columns columns = columns();
+        TopKHeap best = new TopKHeap(limit);
+        for (int row = 0; row < columns.size; row++) {
+            float favorites = columns.favoriteCounts[row];
+            if (favorites > best.threshold()) {
+                best.offer(row, favorites);
+            }
+        }
+        long[] rows = new long[best.size()];
+        int count = best.drainDescending(rows, new float[rows.length]);
+        List<Long> productIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            productIds.add(columns.ids[(int) rows[i]]);
+        }
+        return productIds;
+    }
+
+    /**
+     * Reconstruction complète
+     */
+    @Scheduled(fixedDelayString = "${souqly.recommendations.catalog.refresh-interval-ms:900000}")
+    public void refresh() {
+        lock.lock();
+        try {
+            current = load();
+        } finally {
+            lock.unlock();
+        }
+        // Modifications relayées pendant le chargement (peut-être lu avant leur commit) : relues sur la version neuve
+        drainPending();
+    }
+
+    /**
+     * Nouvelle version où les produits donnés sont relus (ajoutés, modifiés, ou retirés s'ils ne sont plus actifs).
+     * Sans attente : si une reconstruction ou une application est en cours, elle s'en charge à la fin de son passage.
+     */
+    public void apply(Collection<Long> productIds) {
+        pending.addAll(productIds);
+        drainPending();
+    }
+
+    // Vérifié après chaque libération du verrou : un id ajouté pendant qu'un autre thread le tenait n'est pas oublié
+    private void drainPending() {
+        while (!pending.isEmpty() && lock.tryLock()) {
+            try {
+                List<Long> productIds = new ArrayList<>(pending.size());
+                for (Iterator<Long> it = pending.iterator(); it.hasNext(); ) {
+                    productIds.add(it.next());
+                    it.remove();
+                }
+                applyLocked(productIds);
+            } catch (RuntimeException e) {
+                log.warn("Mise à jour du catalogue en colonnes échouée, rattrapée par la reconstruction: {}",
+                         e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void applyLocked(List<Long> productIds) {
+        Columns previous = current;
+        if (previous == null || productIds.isEmpty()) {
+            // Rien de publié : la première lecture chargera le catalogue complet, déjà à jour
+            return;
+        }
+        long[] changed = productIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        Builder updates = new Builder(previous, Math.max(changed.length, 1));
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(BY_IDS_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", productIds.toArray()));
+            return ps;
+        }, (RowCallbackHandler) updates::add);
+
+        // Fusion triée : lignes inchangées de la version précédente + lignes relues,
+        // dans des tableaux dimensionnés d'avance à la taille finale (aucune recopie ensuite)
+        Columns updated = new Columns(updates);
+        int removed = 0;
+        for (long productId : changed) {
+            if (previous.rowOf(productId) >= 0) {
+                removed++;
+            }
+        }
+        Builder next = new Builder(updates, Math.max(previous.size - removed + updated.size, 1));
+        int row = 0;
+        int update = 0;
+        while (row < previous.size || update < updated.size) {
+            long previousId = row < previous.size ? previous.ids[row] : Long.MAX_VALUE;
+            long updatedId = update < updated.size ? updated.ids[update] : Long.MAX_VALUE;
+            if (updatedId <= previousId) {
+                next.copy(updated, update++);
+                if (updatedId == previousId) {
+                    row++;
+                }
+            } else {
+                if (Arrays.binarySearch(changed, previousId) < 0) {
+                    next.copy(previous, row);
+                }
+                row++;
+            }
+        }
+        current = new Columns(next);
+    }
+
+    private Columns load() {
+        long start = System.currentTimeMillis();
+        Builder builder = new Builder(1024);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(ALL_SQL);
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) builder::add);
+        Columns columns = new Columns(builder);
+        log.debug("Catalogue en colonnes chargé: {} produits en {} ms", columns.size, System.currentTimeMillis() - start);
+        return columns;
+    }
+
+    private static final class Builder {
+
+        int size;
+        long[] ids;
+        long[] categoryIds;
+        int[] categories;
+        int[] brands;
+        int[] conditions;
+        int[] cities;
+        double[] prices;
+        int[] favoriteCounts;
+        int[] viewCounts;
+        long[] createdAt;
+        int[] boostLevels;
+        final Dictionary categoryCodes;
+        final Dictionary brandCodes;
+        final Dictionary conditionCodes;
+        final Dictionary cityCodes;
+
+        Builder(int capacity) {
+            this(new Dictionary(), new Dictionary(), new Dictionary(), new Dictionary(), capacity);
+        }
+
+        // Repart des dictionnaires d'une version publiée (copiés : elle reste figée)
+        Builder(Columns base, int capacity) {
+            this(new Dictionary(base.categoryCodes), new Dictionary(base.brandCodes),
+                 new Dictionary(base.conditionCodes), new Dictionary(base.cityCodes), capacity);
+        }
+
+        // Mêmes dictionnaires qu'un autre builder en cours
+        Builder(Builder base, int capacity) {
+            this(base.categoryCodes, base.brandCodes, base.conditionCodes, base.cityCodes, capacity);
+        }
+
+        private Builder(Dictionary categoryCodes, Dictionary brandCodes, Dictionary conditionCodes,
+                        Dictionary cityCodes, int capacity) {
+            this.categoryCodes = categoryCodes;
+            this.brandCodes = brandCodes;
+            this.conditionCodes = conditionCodes;
+            this.cityCodes = cityCodes;
+            this.ids = new long[capacity];
+            this.categoryIds = new long[capacity];
+            this.categories = new int[capacity];
+            this.brands = new int[capacity];
+            this.conditions = new int[capacity];
+            this.cities = new int[capacity];
+            this.prices = new double[capacity];
+            this.favoriteCounts = new int[capacity];
+            this.viewCounts = new int[capacity];
+            this.createdAt = new long[capacity];
+            this.boostLevels = new int[capacity];
+        }
+
+        void add(ResultSet rs) throws SQLException {
+            int row = next();
+            ids[row] = rs.getLong("id");
+            categoryIds[row] = rs.getLong("category_id");
+            categories[row] = categoryCodes.encode(rs.getString("category_key"));
+            brands[row] = brandCodes.encode(rs.getString("brand"));
+            conditions[row] = conditionCodes.encode(rs.getString("condition"));
+            cities[row] = cityCodes.encode(rs.getString("city"));
+            double price = rs.getDouble("price");
+            prices[row] = rs.wasNull() ? Double.NaN : price;
+            favoriteCounts[row] = rs.getInt("favorite_count");
+            viewCounts[row] = rs.getInt("view_count");
+            Timestamp created = rs.getTimestamp("created_at");
+            createdAt[row] = created != null ? created.getTime() : 0L;
+            boostLevels[row] = rs.getInt("boost_level");
+        }
+
+        // Codes repris tels quels : la source partage (ou précède) les dictionnaires de ce builder
+        void copy(Columns source, int from) {
+            int row = next();
+            ids[row] = source.ids[from];
+            categoryIds[row] = source.categoryIds[from];
+            categories[row] = source.categories[from];
+            brands[row] = source.brands[from];
+            conditions[row] = source.conditions[from];
+            cities[row] = source.cities[from];
+            prices[row] = source.prices[from];
+            favoriteCounts[row] = source.favoriteCounts[from];
+            viewCounts[row] = source.viewCounts[from];
+            createdAt[row] = source.createdAt[from];
+            boostLevels[row] = source.boostLevels[from];
+        }
+
+        private int next() {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+                categories = Arrays.copyOf(categories, capacity);
+                brands = Arrays.copyOf(brands, capacity);
+                conditions = Arrays.copyOf(conditions, capacity);
+                cities = Arrays.copyOf(cities, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                favoriteCounts = Arrays.copyOf(favoriteCounts, capacity);
+                viewCounts = Arrays.copyOf(viewCounts, capacity);
+                createdAt = Arrays.copyOf(createdAt, capacity);
+                boostLevels = Arrays.copyOf(boostLevels, capacity);
+            }
+            return size++;
+        }
+    }
+}
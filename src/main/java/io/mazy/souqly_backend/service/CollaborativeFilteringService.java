@@ -26,6 +26,10 @@ public class CollaborativeFilteringService {
     private final UserSimilarityRepository userSimilarityRepository;
     private final ProductRepository productRepository;
     private final ProductBoostRepository productBoostRepository;
+    private final ItemSimilarityModel itemSimilarityModel;
+    private final UserSimilarityEngine userSimilarityEngine;
+    private final ContentBasedRecommendationService contentBasedService;
+    private final CatalogSnapshot catalogSnapshot;
     
     /**
      * Calcule la similarité entre deux utilisateurs basée sur leurs interactions
@@ -68,44 +72,38 @@ public class CollaborativeFilteringService {
     }
     
     /**
-     * Calcule les similarités pour un utilisateur et les sauvegarde
+     * Calcule les similarités pour un utilisateur et les sauvegarde ({@link UserSimilarityEngine} :
+     * une requête pour les utilisateurs partageant au moins un produit, écriture en batch)
      */
     public void calculateAndSaveUserSimilarities(Long userId) {
         try {
-            // Récupérer tous les autres utilisateurs qui ont des interactions
-            List<Long> allUserIds = userInteractionRepository.findDistinctUserIds();
-            
-            for (Long otherUserId : allUserIds) {
-                if (!otherUserId.equals(userId)) {
-                    double similarity = calculateUserSimilarity(userId, otherUserId);
-                    
-                    if (similarity > 0.1) { // Seuil minimum de similarité
-                        // Sauvegarder ou mettre à jour la similarité
-                        UserSimilarity userSimilarity = userSimilarityRepository
-                            .findByUserId1AndUserId2(userId, otherUserId)
-                            .orElseGet(() -> {
-                                UserSimilarity newSimilarity = new UserSimilarity();
-                                newSimilarity.setUserId1(userId);
-                                newSimilarity.setUserId2(otherUserId);
-                                return newSimilarity;
-                            });
-                        
-                        userSimilarity.setSimilarityScore(BigDecimal.valueOf(similarity));
-                        userSimilarity.setLastCalculated(LocalDateTime.now());
-                        userSimilarityRepository.save(userSimilarity);
-                    }
-                }
-            }
-            
+            int neighbors = userSimilarityEngine.recompute(userId);
+            log.debug("{} utilisateurs similaires enregistrés pour l'utilisateur {}", neighbors, userId);
         } catch (Exception e) {
             log.error("Erreur lors du calcul des similarités utilisateur: {}", e.getMessage(), e);
         }
     }
     
     /**
-     * Génère des recommandations basées sur la collaboration
+     * Génère des recommandations basées sur la collaboration : voisins item-item des derniers produits
+     * de l'utilisateur ({@link ItemSimilarityModel}), puis similarités utilisateur si le modèle ne donne rien
      */
     public List<Product> getCollaborativeRecommendations(Long userId, int limit) {
+        try {
+            List<Long> productIds = itemSimilarityModel.recommend(userId, limit);
+            if (!productIds.isEmpty()) {
+                List<Product> recommendedProducts = productRepository.findActiveByIdsInOrder(productIds);
+                if (!recommendedProducts.isEmpty()) {
+                    return applyBoosts(recommendedProducts, userId);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Modèle item-item indisponible, repli sur les similarités utilisateur: {}", e.getMessage());
+        }
+        return getUserBasedRecommendations(userId, limit);
+    }
+    
+    private List<Product> getUserBasedRecommendations(Long userId, int limit) {
         try {
             // Récupérer les utilisateurs similaires
             List<UserSimilarity> similarities = userSimilarityRepository
@@ -163,13 +161,25 @@ public class CollaborativeFilteringService {
     public List<Product> getHybridRecommendations(Long userId, int limit) {
         try {
             // Récupérer les recommandations content-based
-            ContentBasedRecommendationService contentBasedService = new ContentBasedRecommendationService(
-                null, null, productRepository, productBoostRepository, null);
             List<Product> contentBasedRecs = contentBasedService.getContentBasedRecommendations(userId, limit);
             
             // Récupérer les recommandations collaboratives
             List<Product> collaborativeRecs = getCollaborativeRecommendations(userId, limit);
             
+            return combineHybrid(contentBasedRecs, collaborativeRecs, userId, limit);
+            
+        } catch (Exception e) {
+            log.error("Erreur lors de la génération des recommandations hybrides: {}", e.getMessage(), e);
+            return getFallbackRecommendations(limit);
+        }
+    }
+    
+    /**
+     * Combine des listes content-based et collaborative déjà calculées (pondérées 0.6 / 0.4 selon le rang)
+     */
+    public List<Product> combineHybrid(List<Product> contentBasedRecs, List<Product> collaborativeRecs,
+                                       Long userId, int limit) {
+        try {
             // Combiner les deux listes avec des poids
             Map<Long, Double> productScores = new HashMap<>();
             
@@ -222,21 +232,22 @@ public class CollaborativeFilteringService {
             Map<Long, ProductBoost> boostMap = activeBoosts.stream()
                 .collect(Collectors.toMap(boost -> boost.getProduct().getId(), boost -> boost));
             
-            // Réorganiser les produits avec les boosts
+            // Produits boostés en tête, par niveau de boost décroissant (tri stable), chacun une seule fois
             List<Product> boostedProducts = new ArrayList<>();
             List<Product> regularProducts = new ArrayList<>();
             
             for (Product product : products) {
                 ProductBoost boost = boostMap.get(product.getId());
                 if (boost != null && boost.isCurrentlyActive()) {
-                    // Ajouter le produit boosté plusieurs fois selon le niveau
-                    for (int i = 0; i < boost.getBoostLevel(); i++) {
-                        boostedProducts.add(product);
-                    }
+                    boostedProducts.add(product);
                 } else {
                     regularProducts.add(product);
                 }
             }
+            boostedProducts.sort(Comparator.comparingInt((Product product) -> {
+                Integer level = boostMap.get(product.getId()).getBoostLevel();
+                return level != null ? level : 1;
+            }).reversed());
             
             // Combiner les produits boostés et réguliers
             List<Product> result = new ArrayList<>();
@@ -256,10 +267,7 @@ public class CollaborativeFilteringService {
      */
     private List<Product> getFallbackRecommendations(int limit) {
         try {
-            return productRepository.findByIsActiveTrueOrderByFavoriteCountDesc()
-                .stream()
-                .limit(limit)
-                .collect(Collectors.toList());
+            return productRepository.findActiveByIdsInOrder(catalogSnapshot.mostFavorited(limit));
         } catch (Exception e) {
             log.error("Erreur lors de la récupération des recommandations de fallback: {}", e.getMessage(), e);
             return new ArrayList<>();
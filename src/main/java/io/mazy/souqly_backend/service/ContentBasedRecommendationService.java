@@ -28,6 +28,7 @@ public class ContentBasedRecommendationService {
     private final ProductRepository productRepository;
     private final ProductBoostRepository productBoostRepository;
     private final UserService userService;
+    private final CatalogSnapshot catalogSnapshot;
     
     /**
      * Calcule le profil utilisateur basé sur ses interactions
@@ -115,17 +116,24 @@ public class ContentBasedRecommendationService {
                 return getFallbackRecommendations(limit);
             }
             
-            // Récupérer tous les produits actifs
-            List<Product> allProducts = productRepository.findByIsActiveTrue();
+            // Profil compilé une fois, puis parcours du catalogue en colonnes avec un tas des meilleurs scores
+            CatalogSnapshot.Columns catalog = catalogSnapshot.columns();
+            CompiledProfile compiled = CompiledProfile.compile(catalog, profile);
+            TopKHeap best = new TopKHeap(limit);
+            for (int row = 0; row < catalog.size; row++) {
+                float score = compiled.score(catalog, row);
+                if (score > 0 && score > best.threshold()) {
+                    best.offer(row, score);
+                }
+            }
             
-            // Calculer les scores de similarité
-            List<Product> scoredProducts = allProducts.stream()
-                .map(product -> new ProductScore(product, calculateSimilarityScore(product, profile)))
-                .filter(score -> score.score > 0)
-                .sorted(Comparator.comparing(ProductScore::getScore).reversed())
-                .limit(limit)
-                .map(ProductScore::getProduct)
-                .collect(Collectors.toList());
+            long[] rows = new long[best.size()];
+            int count = best.drainDescending(rows, new float[rows.length]);
+            List<Long> productIds = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                productIds.add(catalog.ids[(int) rows[i]]);
+            }
+            List<Product> scoredProducts = productRepository.findActiveByIdsInOrder(productIds);
             
             // Appliquer les boosts
             scoredProducts = applyBoosts(scoredProducts, userId);
@@ -138,68 +146,6 @@ public class ContentBasedRecommendationService {
         }
     }
     
-    /**
-     * Calcule le score de similarité entre un produit et un profil utilisateur
-     */
-    private double calculateSimilarityScore(Product product, UserProfile profile) {
-        double score = 0.0;
-        
-        // Score basé sur la catégorie (poids: 0.3)
-        if (profile.getPreferredCategories() != null && product.getCategory() != null) {
-            Map<String, Integer> categoryPrefs = parseJsonToMap(profile.getPreferredCategories());
-            String categoryKey = product.getCategory().getKey();
-            Integer categoryScore = categoryPrefs.get(categoryKey);
-            if (categoryScore != null) {
-                score += (categoryScore * 0.3);
-            }
-        }
-        
-        // Score basé sur la marque (poids: 0.2)
-        if (profile.getPreferredBrands() != null && product.getBrand() != null) {
-            Map<String, Integer> brandPrefs = parseJsonToMap(profile.getPreferredBrands());
-            Integer brandScore = brandPrefs.get(product.getBrand());
-            if (brandScore != null) {
-                score += (brandScore * 0.2);
-            }
-        }
-        
-        // Score basé sur la condition (poids: 0.15)
-        if (profile.getPreferredConditions() != null && product.getCondition() != null) {
-            Map<String, Integer> conditionPrefs = parseJsonToMap(profile.getPreferredConditions());
-            Integer conditionScore = conditionPrefs.get(product.getCondition());
-            if (conditionScore != null) {
-                score += (conditionScore * 0.15);
-            }
-        }
-        
-        // Score basé sur le prix (poids: 0.2)
-        if (profile.getPreferredPriceRangeMin() != null && 
-            profile.getPreferredPriceRangeMax() != null && 
-            product.getPrice() != null) {
-            
-            BigDecimal productPrice = BigDecimal.valueOf(product.getPrice());
-            BigDecimal minPrice = profile.getPreferredPriceRangeMin();
-            BigDecimal maxPrice = profile.getPreferredPriceRangeMax();
-            
-            if (productPrice.compareTo(minPrice) >= 0 && productPrice.compareTo(maxPrice) <= 0) {
-                score += 0.2;
-            } else {
-                // Pénalité pour les prix hors fourchette
-                score += 0.05;
-            }
-        }
-        
-        // Score basé sur la localisation (poids: 0.15)
-        if (profile.getPreferredLocations() != null && product.getCity() != null) {
-            List<String> preferredLocations = parseJsonToList(profile.getPreferredLocations());
-            if (preferredLocations.contains(product.getCity())) {
-                score += 0.15;
-            }
-        }
-        
-        return score;
-    }
-    
     /**
      * Applique les boosts aux produits recommandés
      */
@@ -212,21 +158,22 @@ public class ContentBasedRecommendationService {
             Map<Long, ProductBoost> boostMap = activeBoosts.stream()
                 .collect(Collectors.toMap(boost -> boost.getProduct().getId(), boost -> boost));
             
-            // Réorganiser les produits avec les boosts
+            // Produits boostés en tête, par niveau de boost décroissant (tri stable), chacun une seule fois
             List<Product> boostedProducts = new ArrayList<>();
             List<Product> regularProducts = new ArrayList<>();
             
             for (Product product : products) {
                 ProductBoost boost = boostMap.get(product.getId());
                 if (boost != null && boost.isCurrentlyActive()) {
-                    // Ajouter le produit boosté plusieurs fois selon le niveau
-                    for (int i = 0; i < boost.getBoostLevel(); i++) {
-                        boostedProducts.add(product);
-                    }
+                    boostedProducts.add(product);
                 } else {
                     regularProducts.add(product);
                 }
             }
+            boostedProducts.sort(Comparator.comparingInt((Product product) -> {
+                Integer level = boostMap.get(product.getId()).getBoostLevel();
+                return level != null ? level : 1;
+            }).reversed());
             
             // Combiner les produits boostés et réguliers
             List<Product> result = new ArrayList<>();
@@ -246,10 +193,7 @@ public class ContentBasedRecommendationService {
      */
     private List<Product> getFallbackRecommendations(int limit) {
         try {
-            return productRepository.findByIsActiveTrueOrderByFavoriteCountDesc()
-                .stream()
-                .limit(limit)
-                .collect(Collectors.toList());
+            return productRepository.findActiveByIdsInOrder(catalogSnapshot.mostFavorited(limit));
         } catch (Exception e) {
             log.error("Erreur lors de la récupération des recommandations de fallback: {}", e.getMessage(), e);
             return new ArrayList<>();
@@ -272,36 +216,4 @@ public class ContentBasedRecommendationService {
             return "[]";
         }
     }
-    
-    private Map<String, Integer> parseJsonToMap(String json) {
-        try {
-            return new com.fasterxml.jackson.databind.ObjectMapper()
-                .readValue(json, new com.fasterxml.jackson.core.type.TypeReference<Map<String, Integer>>() {});
-        } catch (Exception e) {
-            return new HashMap<>();
-        }
-    }
-    
-    private List<String> parseJsonToList(String json) {
-        try {
-            return new com.fasterxml.jackson.databind.ObjectMapper()
-                .readValue(json, new com.fasterxml.jackson.core.type.TypeReference<List<String>>() {});
-        } catch (Exception e) {
-            return new ArrayList<>();
-        }
-    }
-    
-    // Classe interne pour les scores de produits
-    private static class ProductScore {
-        private final Product product;
-        private final double score;
-        
-        public ProductScore(Product product, double score) {
-            this.product = product;
-            this.score = score;
-        }
-        
-        public Product getProduct() { return product; }
-        public double getScore() { return score; }
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
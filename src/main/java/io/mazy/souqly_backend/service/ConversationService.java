@@ -2,6 +2,8 @@ package io.mazy.souqly_backend.service;
 
 import io.mazy.souqly_backend.dto.ConversationDto;
 import io.mazy.souqly_backend.dto.CreateConversationRequest;
+import io.mazy.souqly_backend.dto.CursorPage;
+import io.mazy.souqly_backend.dto.PageCursor;
 import io.mazy.souqly_backend.dto.MessageDto;
 import io.mazy.souqly_backend.entity.ChatMessageEntity;
 import io.mazy.souqly_backend.entity.ConversationEntity;
@@ -12,10 +14,13 @@ import io.mazy.souqly_backend.repository.ConversationRepository;
 import io.mazy.souqly_backend.repository.ProductRepository;
 import io.mazy.souqly_backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -113,6 +118,41 @@ public class ConversationService {
             .collect(Collectors.toList());
     }
 
+    // Récupérer les messages d'une conversation par tranches, du plus récent au plus ancien.
+    // Chaque tranche est renvoyée dans l'ordre chronologique ; nextCursor pointe vers les messages plus anciens.
+    public CursorPage<MessageDto> getConversationMessages(String conversationId, Long currentUserId,
+                                                          String cursor, int size) {
+        ConversationEntity conversation = conversationRepository.findByConversationId(conversationId)
+            .orElseThrow(() -> new RuntimeException("Conversation non trouvée"));
+
+        // Vérifier que l'utilisateur fait partie de la conversation
+        if (!conversation.getBuyer().getId().equals(currentUserId) && 
+            !conversation.getSeller().getId().equals(currentUserId)) {
+            throw new RuntimeException("Accès non autorisé à cette conversation");
+        }
+
+        PageCursor position = PageCursor.decode(cursor);
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<ChatMessageEntity> messages = position == null
+            ? chatMessageRepository.findLatestByConversationId(conversationId, limit)
+            : chatMessageRepository.findByConversationIdBefore(conversationId,
+                position.getTimestamp(), position.getId(), limit);
+
+        boolean hasNext = messages.size() > size;
+        String nextCursor = null;
+        if (hasNext) {
+            messages = messages.subList(0, size);
+            ChatMessageEntity oldest = messages.get(messages.size() - 1);
+            nextCursor = new PageCursor(oldest.getSentAt(), oldest.getId()).encode();
+        }
+
+        List<MessageDto> dtos = new ArrayList<>(messages.size());
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            dtos.add(convertToMessageDto(messages.get(i), currentUserId));
+        }
+        return new CursorPage<>(dtos, nextCursor, hasNext, size);
+    }
+
     // Envoyer un message dans une conversation
     public MessageDto sendMessage(String conversationId, String content, Long senderId, Double offerPrice) {
         ConversationEntity conversation = conversationRepository.findByConversationId(conversationId)
@@ -1,18 +1,40 @@
 package io.mazy.souqly_backend.service;
 
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.VersionType;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import io.mazy.souqly_backend.dto.CursorPage;
+import io.mazy.souqly_backend.dto.ProductIndexRow;
+import io.mazy.souqly_backend.dto.ProductSearchCriteria;
 import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.entity.ProductImage;
 import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
+import io.mazy.souqly_backend.repository.ProductImageRepository;
 import io.mazy.souqly_backend.repository.ProductRepository;
 import io.mazy.souqly_backend.repository.elasticsearch.ProductSearchRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -21,21 +43,23 @@ public class ElasticsearchService {
     @Autowired
     private ProductSearchRepository productSearchRepository;
 
+    @Autowired
+    private ElasticsearchClient elasticsearchClient;
+
+    @Autowired
+    private ElasticsearchOperations elasticsearchOperations;
+
     @Autowired
     private ProductRepository productRepository;
 
-    /**
-     * Synchronise tous les produits de la base de données vers Elasticsearch
-     */
-    @Transactional
-    public void syncAllProducts() {
-        List<Product> products = productRepository.findAll();
-        List<ProductDocument> documents = products.stream()
-                .map(this::convertToDocument)
-                .collect(Collectors.toList());
-        
-        productSearchRepository.saveAll(documents);
-    }
+    @Autowired
+    private ProductImageRepository productImageRepository;
+
+    @Autowired
+    private ProductListingService productListingService;
+
+    @Autowired
+    private SearchResultCache searchResultCache;
 
     /**
      * Synchronise un produit spécifique
@@ -46,6 +70,55 @@ public class ElasticsearchService {
         productSearchRepository.save(document);
     }
 
+    /**
+     * Écriture d'un document avec sa version externe ; document null = suppression
+     */
+    public record VersionedWrite(String id, long version, ProductDocument document) {
+    }
+
+    /**
+     * Bulk versionné (version_type=external) : une écriture plus ancienne que le document indexé est ignorée
+     * (conflit 409, l'index a déjà un état plus récent). Renvoie les documents refusés pour une autre raison,
+     * avec l'erreur ; une requête qui échoue en entier (cluster injoignable) lève une exception.
+     *
+     * @param waitForRefresh répond une fois les écritures visibles des recherches (refresh=wait_for) ;
+     *                       jamais sur un index dont le refresh est désactivé (chargement d'une réindexation)
+     */
+    public Map<String, String> writeVersioned(IndexCoordinates index, List<VersionedWrite> writes,
+                                              boolean waitForRefresh) {
+        if (writes.isEmpty()) {
+            return Map.of();
+        }
+        List<BulkOperation> operations = new ArrayList<>(writes.size());
+        for (VersionedWrite write : writes) {
+            if (write.document() != null) {
+                // Même source que les écritures Spring Data (noms de champs, formats de dates)
+                Map<String, Object> source =
+                    new LinkedHashMap<>(elasticsearchOperations.getElasticsearchConverter().mapObject(write.document()));
+                operations.add(BulkOperation.of(o -> o.index(i -> i.id(write.id()).document(source)
+                    .version(write.version()).versionType(VersionType.External))));
+            } else {
+                operations.add(BulkOperation.of(o -> o.delete(d -> d.id(write.id())
+                    .version(write.version()).versionType(VersionType.External))));
+            }
+        }
+
+        BulkResponse response;
+        try {
+            response = elasticsearchClient.bulk(b -> b.index(index.getIndexName()).operations(operations)
+                .refresh(waitForRefresh ? Refresh.WaitFor : Refresh.False));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Bulk Elasticsearch sur " + index.getIndexName() + " échoué", e);
+        }
+        Map<String, String> rejected = new HashMap<>();
+        for (BulkResponseItem item : response.items()) {
+            if (item.error() != null && item.status() != 409) {
+                rejected.put(item.id(), item.error().reason());
+            }
+        }
+        return rejected;
+    }
+
     /**
      * Supprime un produit d'Elasticsearch
      */
@@ -61,17 +134,69 @@ public class ElasticsearchService {
         if (query == null || query.trim().isEmpty()) {
             return productSearchRepository.findAll(pageable);
         }
-        return productSearchRepository.searchProducts(query.trim(), pageable);
+        return searchProductsWithFilters(textCriteria(query), pageable);
     }
 
     /**
-     * Recherche avec filtres
+     * Recherche avec filtres : seuls les critères renseignés s'appliquent.
+     * Une catégorie inclut ses sous-catégories. Les ids de la page passent par {@link SearchResultCache},
+     * les documents sont relus par id (multi-get, sans recalcul du score).
      */
-    public Page<ProductDocument> searchProductsWithFilters(String query, Double minPrice, Double maxPrice,
-                                                        Long categoryId, String condition, String brand,
-                                                        String size, String city, String country, Pageable pageable) {
-        return productSearchRepository.searchProductsWithFilters(query, minPrice, maxPrice, categoryId,
-                condition, brand, size, city, country, pageable);
+    public Page<ProductDocument> searchProductsWithFilters(ProductSearchCriteria criteria, Pageable pageable) {
+        SearchResultCache.ResultIds result = searchProductIds(criteria, pageable);
+        return new PageImpl<>(findDocuments(result.ids()), pageable, result.total());
+    }
+
+    /**
+     * Ids de la page de résultats d'une recherche textuelle, depuis le cache si possible
+     */
+    public SearchResultCache.ResultIds searchProductIds(String query, Pageable pageable) {
+        return searchProductIds(textCriteria(query), pageable);
+    }
+
+    private SearchResultCache.ResultIds searchProductIds(ProductSearchCriteria criteria, Pageable pageable) {
+        Set<Long> categoryIds = categoryIds(criteria);
+        return searchResultCache.get(criteria, categoryIds, pageable,
+            () -> productSearchRepository.searchProductsWithFilters(criteria, categoryIds, pageable));
+    }
+
+    // Documents dans l'ordre des ids ; ceux supprimés depuis la mise en cache sont ignorés
+    private List<ProductDocument> findDocuments(List<String> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, ProductDocument> documentsById = new HashMap<>();
+        productSearchRepository.findAllById(ids).forEach(document -> documentsById.put(document.getId(), document));
+        List<ProductDocument> documents = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            ProductDocument document = documentsById.get(id);
+            if (document != null) {
+                documents.add(document);
+            }
+        }
+        return documents;
+    }
+
+    private static ProductSearchCriteria textCriteria(String query) {
+        ProductSearchCriteria criteria = new ProductSearchCriteria();
+        criteria.setQuery(query.trim());
+        return criteria;
+    }
+
+    /**
+     * Recherche avec filtres paginée par curseur search_after (défilement profond)
+     *
+     * @throws IllegalArgumentException si le curseur est illisible
+     */
+    public CursorPage<ProductDocument> searchProductsAfter(ProductSearchCriteria criteria, String cursor, int size) {
+        return productSearchRepository.searchProductsAfter(criteria, categoryIds(criteria), cursor, size);
+    }
+
+    /**
+     * Catégorie demandée et ses sous-catégories, null si aucune catégorie n'est demandée
+     */
+    public Set<Long> categoryIds(ProductSearchCriteria criteria) {
+        return criteria.getCategoryId() != null ? productListingService.expandCategory(criteria.getCategoryId()) : null;
     }
 
     /**
@@ -124,17 +249,19 @@ public class ElasticsearchService {
     }
 
     /**
-     * Recherche de produits populaires
+     * Produits populaires : classement sans texte (favoris, vues, fraîcheur, boost)
      */
     public Page<ProductDocument> findPopularProducts(Pageable pageable) {
-        return productSearchRepository.findPopularProducts(pageable);
+        return searchProductsWithFilters(new ProductSearchCriteria(), pageable);
     }
 
     /**
-     * Recherche de produits récents
+     * Produits les plus récents
      */
     public Page<ProductDocument> findRecentProducts(Pageable pageable) {
-        return productSearchRepository.findRecentProducts(pageable);
+        ProductSearchCriteria criteria = new ProductSearchCriteria();
+        criteria.setSortBy("recent");
+        return searchProductsWithFilters(criteria, pageable);
     }
 
     /**
@@ -148,22 +275,12 @@ public class ElasticsearchService {
      * Convertit une entité Product en ProductDocument
      */
     private ProductDocument convertToDocument(Product product) {
-        String sellerName = null;
-        if (product.getSeller() != null) {
-            String firstName = product.getSeller().getFirstName();
-            String lastName = product.getSeller().getLastName();
-            if (firstName != null && lastName != null) {
-                sellerName = firstName + " " + lastName;
-            } else if (firstName != null) {
-                sellerName = firstName;
-            } else if (lastName != null) {
-                sellerName = lastName;
-            } else {
-                sellerName = product.getSeller().getEmail();
-            }
-        }
+        String sellerName = product.getSeller() != null
+                ? sellerName(product.getSeller().getFirstName(), product.getSeller().getLastName(),
+                             product.getSeller().getEmail())
+                : null;
 
-        return new ProductDocument(
+        ProductDocument document = new ProductDocument(
                 product.getId().toString(),
                 product.getTitle(),
                 product.getDescription(),
@@ -186,6 +303,77 @@ public class ElasticsearchService {
                 product.getUpdatedAt() != null ? product.getUpdatedAt().toString() : null,
                 product.getTags()
         );
+        document.setIsBoosted(product.getIsBoosted());
+        document.setBoostLevel(product.getBoostLevel());
+        document.setImageIds(product.getImages().stream().map(ProductImage::getId).collect(Collectors.toList()));
+        return document;
+    }
+
+    /**
+     * Convertit une ligne de réindexation en ProductDocument, sans passer par l'entité
+     */
+    public ProductDocument toDocument(ProductIndexRow row, RowRelations relations) {
+        String sellerName = row.getSellerId() != null
+                ? sellerName(row.getSellerFirstName(), row.getSellerLastName(), row.getSellerEmail())
+                : null;
+
+        ProductDocument document = new ProductDocument(
+                row.getId().toString(),
+                row.getTitle(),
+                row.getDescription(),
+                row.getPrice(),
+                row.getBrand(),
+                row.getSize(),
+                row.getCondition(),
+                row.getShippingInfo(),
+                row.getCity(),
+                row.getCountry(),
+                row.getCategoryId(),
+                row.getCategoryLabel(),
+                row.getSellerId(),
+                sellerName,
+                row.getStatus() != null ? row.getStatus().name() : null,
+                row.getIsActive(),
+                row.getViewCount(),
+                row.getFavoriteCount(),
+                row.getCreatedAt() != null ? row.getCreatedAt().toString() : null,
+                row.getUpdatedAt() != null ? row.getUpdatedAt().toString() : null,
+                relations.tags().getOrDefault(row.getId(), List.of())
+        );
+        document.setIsBoosted(row.getIsBoosted());
+        document.setBoostLevel(row.getBoostLevel());
+        document.setImageIds(relations.imageIds().getOrDefault(row.getId(), List.of()));
+        return document;
+    }
+
+    /**
+     * Tags et ids d'images des lignes à indexer, en une requête chacun
+     */
+    public RowRelations loadRelations(List<ProductIndexRow> rows) {
+        List<Long> ids = rows.stream().map(ProductIndexRow::getId).toList();
+        Map<Long, List<String>> tags = new HashMap<>();
+        for (ProductRepository.ProductTagRow tag : productRepository.findTagsByProductIds(ids)) {
+            tags.computeIfAbsent(tag.getProductId(), id -> new ArrayList<>()).add(tag.getTag());
+        }
+        Map<Long, List<Long>> imageIds = new HashMap<>();
+        for (ProductImageRepository.ProductImageMeta image : productImageRepository.findMetaByProductIdIn(ids)) {
+            imageIds.computeIfAbsent(image.getProductId(), id -> new ArrayList<>()).add(image.getId());
+        }
+        return new RowRelations(tags, imageIds);
+    }
+
+    public record RowRelations(Map<Long, List<String>> tags, Map<Long, List<Long>> imageIds) {
+    }
+
+    private static String sellerName(String firstName, String lastName, String email) {
+        if (firstName != null && lastName != null) {
+            return firstName + " " + lastName;
+        } else if (firstName != null) {
+            return firstName;
+        } else if (lastName != null) {
+            return lastName;
+        }
+        return email;
     }
 
     /**
@@ -0,0 +1,137 @@
+package io.mazy.souqly_backend.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import io.mazy.souqly_backend.dto.FacetedSearchResult;
+import io.mazy.souqly_backend.dto.FacetedSearchResult.FacetBucket;
+import io.mazy.souqly_backend.dto.ProductListDTO;
+import io.mazy.souqly_backend.dto.ProductSearchCriteria;
+import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
+import io.mazy.souqly_backend.repository.elasticsearch.ProductSearchQueries;
+import io.mazy.souqly_backend.repository.elasticsearch.SearchRanking;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recherche à facettes en un seul aller-retour Elasticsearch : hits + agrégations.
+ *
+ * Les clauses viennent de {@link ProductSearchQueries} : tous les critères en contexte filtre (pas de score,
+ * mis en cache par ES), seul le texte libre en must. Les critères de facette sont appliqués en post_filter,
+ * et chaque agrégation est restreinte par les critères des autres facettes seulement : choisir une marque
+ * n'efface pas les autres marques de la facette (sélection multiple), mais réduit bien les tailles proposées.
+ */
+@Service
+@RequiredArgsConstructor
+public class FacetedSearchService {
+
+    // Sous-agrégation portée par chaque agrégation "filter" de facette
+    private static final String VALUES = "values";
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ProductListingService productListingService;
+    private final ElasticsearchService elasticsearchService;
+    private final SearchRanking searchRanking;
+
+    @Value("${souqly.search.facets.max-buckets:20}")
+    private int maxBuckets;
+
+    @Value("${souqly.search.facets.price-interval:50}")
+    private double priceInterval;
+
+    public FacetedSearchResult search(ProductSearchCriteria criteria, Pageable pageable) {
+        Map<String, Query> facetFilters =
+            ProductSearchQueries.filters(criteria, elasticsearchService.categoryIds(criteria));
+
+        Map<String, Aggregation> aggregations = new LinkedHashMap<>();
+        aggregations.put(ProductSearchQueries.CATEGORY, facet(facetFilters, ProductSearchQueries.CATEGORY,
+            Aggregation.of(a -> a.terms(t -> t.field("categoryId").size(maxBuckets)))));
+        aggregations.put(ProductSearchQueries.BRAND, facet(facetFilters, ProductSearchQueries.BRAND,
+            Aggregation.of(a -> a.terms(t -> t.field("brand.keyword").size(maxBuckets)))));
+        aggregations.put(ProductSearchQueries.SIZE, facet(facetFilters, ProductSearchQueries.SIZE,
+            Aggregation.of(a -> a.terms(t -> t.field("size").size(maxBuckets)))));
+        aggregations.put(ProductSearchQueries.CONDITION, facet(facetFilters, ProductSearchQueries.CONDITION,
+            Aggregation.of(a -> a.terms(t -> t.field("condition").size(maxBuckets)))));
+        aggregations.put(ProductSearchQueries.CITY, facet(facetFilters, ProductSearchQueries.CITY,
+            Aggregation.of(a -> a.terms(t -> t.field("city").size(maxBuckets)))));
+        aggregations.put(ProductSearchQueries.PRICE, facet(facetFilters, ProductSearchQueries.PRICE,
+            Aggregation.of(a -> a.histogram(h -> h.field("price").interval(priceInterval).minDocCount(1)))));
+
+        // Même tri que la recherche simple : classement seulement en tri par pertinence, id en départage
+        Query query = ProductSearchQueries.baseQuery(criteria.getQuery());
+        if (ProductSearchQueries.isRelevanceSort(criteria.getSortBy())) {
+            query = searchRanking.rank(query, ProductSearchQueries.hasText(criteria.getQuery()));
+        }
+        Query scored = query;
+
+        SearchResponse<ProductDocument> response;
+        try {
+            response = elasticsearchClient.search(s -> s
+                .index(ProductReindexer.ALIAS)
+                .from((int) pageable.getOffset())
+                .size(pageable.getPageSize())
+                .trackTotalHits(t -> t.enabled(true))
+                .query(scored)
+                .sort(ProductSearchQueries.sort(criteria.getSortBy(), criteria.getSortOrder()))
+                .postFilter(q -> q.bool(b -> b.filter(new ArrayList<>(facetFilters.values()))))
+                .aggregations(aggregations), ProductDocument.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Recherche à facettes indisponible", e);
+        }
+
+        List<ProductDocument> documents = new ArrayList<>();
+        for (Hit<ProductDocument> hit : response.hits().hits()) {
+            if (hit.source() != null) {
+                documents.add(hit.source());
+            }
+        }
+        long total = response.hits().total() != null ? response.hits().total().value() : documents.size();
+        List<ProductListDTO> products = productListingService.fromDocuments(documents);
+
+        Map<String, List<FacetBucket>> facets = new LinkedHashMap<>();
+        response.aggregations().forEach((name, aggregate) -> facets.put(name, buckets(aggregate)));
+        return new FacetedSearchResult(new PageImpl<>(products, pageable, total), facets);
+    }
+
+    // Agrégation de la facette, restreinte par les filtres de toutes les autres facettes
+    private Aggregation facet(Map<String, Query> facetFilters, String facet, Aggregation values) {
+        List<Query> others = new ArrayList<>();
+        facetFilters.forEach((name, filter) -> {
+            if (!name.equals(facet)) {
+                others.add(filter);
+            }
+        });
+        return Aggregation.of(a -> a
+            .filter(f -> f.bool(b -> b.filter(others)))
+            .aggregations(VALUES, values));
+    }
+
+    private List<FacetBucket> buckets(Aggregate aggregate) {
+        Aggregate values = aggregate.filter().aggregations().get(VALUES);
+        List<FacetBucket> buckets = new ArrayList<>();
+        if (values.isSterms()) {
+            values.sterms().buckets().array()
+                .forEach(bucket -> buckets.add(new FacetBucket(bucket.key().stringValue(), bucket.docCount())));
+        } else if (values.isLterms()) {
+            values.lterms().buckets().array()
+                .forEach(bucket -> buckets.add(new FacetBucket(String.valueOf(bucket.key()), bucket.docCount())));
+        } else if (values.isHistogram()) {
+            values.histogram().buckets().array()
+                .forEach(bucket -> buckets.add(new FacetBucket(String.valueOf(bucket.key()), bucket.docCount())));
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,295 @@
+package io.mazy.souqly_backend.service;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.mazy.souqly_backend.config.CacheConfig;
+import io.mazy.souqly_backend.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compteur de favoris en écriture différée.
+ *
+ * Un toggle ne met plus à jour la ligne products : il ajoute +1/-1 dans un LongAdder (striped, sans contention)
+ * une fois la transaction du favori validée. Un flush périodique reporte les deltas dans products.favorite_count
+ * en un UPDATE par produit, en lot.
+ *
+ * Lecture = valeur persistée (cache Caffeine chargé en lot) + delta en attente : le client voit son toggle
+ * immédiatement, sans COUNT sur la table favorites. La réconciliation nocturne recale favorite_count
+ * sur le contenu réel de favorites. Les produits dont le compteur change de palier sont ajoutés à search_outbox
+ * dans la même transaction (signal favoriteCount du classement, voir {@link SearchOutboxListener#enqueueCounterChanges}) ;
+ * ceux dont le compteur est écrit sont retirés de PRODUCT_DETAIL après le commit.
+ *
+ * Un toggle validé après le flush de la réconciliation est à la fois dans le COUNT de favorites et dans
+ * les deltas en attente : la réconciliation lit donc favorites dans un instantané (REPEATABLE READ) pris
+ * pendant que les commits de toggles sont suspendus, avec la copie des deltas en attente à cet instant,
+ * et n'écrit que l'écart COUNT − (favorite_count + delta). Le flush suivant ajoute le delta sans doublon.
+ * Les deltas en attente sur les autres instances ne sont pas visibles ici.
+ */
+@Slf4j
+@Component
+public class FavoriteCounter {
+
+    private static final String APPLY_DELTA_SQL =
+        "UPDATE products SET favorite_count = GREATEST(COALESCE(favorite_count, 0) + ?, 0) WHERE id = ?";
+
+    // Écart entre favorites et le compteur persisté, pour les produits où il n'est pas nul
+    private static final String DRIFT_SQL =
+        "SELECT p.id, COALESCE(f.cnt, 0) - COALESCE(p.favorite_count, 0) AS drift FROM products p " +
+        "LEFT JOIN (SELECT product_id, COUNT(*) AS cnt FROM favorites GROUP BY product_id) f " +
+        "ON f.product_id = p.id WHERE COALESCE(f.cnt, 0) <> COALESCE(p.favorite_count, 0)";
+
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate snapshotTemplate;
+    private final SearchOutboxListener searchOutbox;
+    private final CacheManager cacheManager;
+
+    // Lecture : commit d'un toggle et report de son delta ; écriture : instantané de la réconciliation
+    private final ReadWriteLock commitGate = new ReentrantReadWriteLock();
+
+    // Valeurs lues dans products.favorite_count ; une clé est invalidée quand son delta est écrit
+    private final LoadingCache<Long, Long> persistedCounts;
+
+    // Deltas non encore écrits. Entrées jamais retirées (un toggle peut tenir l'adder pendant le flush)
+    private final ConcurrentHashMap<Long, LongAdder> pendingDeltas = new ConcurrentHashMap<>();
+
+    public FavoriteCounter(ProductRepository productRepository, JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate, SearchOutboxListener searchOutbox,
+                           CacheManager cacheManager,
+                           @Value("${souqly.favorites.cache-size:100000}") long cacheSize,
+                           @Value("${souqly.favorites.cache-ttl:10m}") Duration cacheTtl) {
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.snapshotTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+        this.searchOutbox = searchOutbox;
+        this.cacheManager = cacheManager;
+        this.persistedCounts = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            // Les flush des autres instances et la réconciliation ne passent pas par ce cache
+            .expireAfterWrite(cacheTtl)
+            .recordStats()
+            .build(new CacheLoader<>() {
+                @Override
+                public Long load(Long productId) {
+                    return loadPersistedCounts(List.of(productId)).getOrDefault(productId, 0L);
+                }
+
+                @Override
+                public Map<Long, Long> loadAll(Set<? extends Long> productIds) {
+                    return loadPersistedCounts(productIds);
+                }
+            });
+    }
+
+    /**
+     * Compteur courant d'un produit
+     */
+    public long count(Long productId) {
+        return Math.max(0, persistedCounts.get(productId) + pendingDelta(productId));
+    }
+
+    /**
+     * Compteurs courants de plusieurs produits : une seule requête pour ceux absents du cache
+     */
+    public Map<Long, Long> counts(Collection<Long> productIds) {
+        Map<Long, Long> persisted = persistedCounts.getAll(productIds);
+        Map<Long, Long> counts = new HashMap<>(persisted.size());
+        persisted.forEach((productId, value) -> counts.put(productId, Math.max(0, value + pendingDelta(productId))));
+        return counts;
+    }
+
+    /**
+     * Enregistre un toggle (+1 ou -1). Dans une transaction, le delta n'est appliqué qu'après le commit,
+     * pour qu'un rollback ne laisse pas de dérive. Retourne le compteur attendu après le toggle.
+     */
+    public long recordToggle(Long productId, int delta) {
+        long expected = Math.max(0, count(productId) + delta);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Le verrou couvre le commit et le report du delta : un instantané de réconciliation voit les deux ou aucun
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private boolean locked;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    commitGate.readLock().lock();
+                    locked = true;
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (!locked) {
+                        return;
+                    }
+                    try {
+                        if (status == STATUS_COMMITTED) {
+                            adderFor(productId).add(delta);
+                        }
+                    } finally {
+                        commitGate.readLock().unlock();
+                    }
+                }
+            });
+        } else {
+            commitGate.readLock().lock();
+            try {
+                adderFor(productId).add(delta);
+            } finally {
+                commitGate.readLock().unlock();
+            }
+        }
+        return expected;
+    }
+
+    @Scheduled(fixedDelayString = "${souqly.favorites.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        Map<Long, Long> deltas = new TreeMap<>();
+        pendingDeltas.forEach((productId, adder) -> {
+            long delta = adder.sum();
+            if (delta != 0) {
+                deltas.put(productId, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> updates = new ArrayList<>(deltas.size());
+        deltas.forEach((productId, delta) -> updates.add(new Object[] { delta, productId }));
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, updates);
+                searchOutbox.enqueueCounterChanges(SearchOutboxListener.RankingCounter.FAVORITES, deltas);
+                evictDetails(deltas.keySet());
+            });
+        } catch (RuntimeException e) {
+            // Rien n'a été retiré des adders : le prochain flush réessaie
+            log.error("Flush des compteurs de favoris échoué ({} produits): {}", deltas.size(), e.getMessage());
+            return;
+        }
+
+        // Le delta est retiré de l'attente et la clé invalidée sous le même verrou de clé : un chargement
+        // concurrent attend, puis relit la base déjà à jour sans le delta écrit.
+        deltas.forEach((productId, delta) -> persistedCounts.asMap().compute(productId, (id, persisted) -> {
+            pendingDeltas.get(productId).add(-delta);
+            return null;
+        }));
+    }
+
+    /**
+     * Recale products.favorite_count sur la table favorites (dérive due aux doublons, suppressions directes en base, etc.)
+     */
+    @Scheduled(cron = "${souqly.favorites.reconcile-cron:0 30 3 * * *}")
+    public synchronized void reconcile() {
+        flush();
+        try {
+            int fixed = correctDrift();
+            log.info("Réconciliation des compteurs de favoris: {} produits corrigés", fixed);
+        } catch (RuntimeException e) {
+            log.error("Réconciliation des compteurs de favoris échouée: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Écrit l'écart entre favorites et favorite_count + delta en attente, lus au même instant ; renvoie
+     * le nombre de produits corrigés. Appelé par {@link #reconcile()} après son flush.
+     */
+    synchronized int correctDrift() {
+        Map<Long, Long> corrections = snapshotTemplate.execute(status -> {
+            Map<Long, Long> pending = new HashMap<>();
+            commitGate.writeLock().lock();
+            try {
+                // Premier ordre de la transaction : fixe l'instantané, aucun toggle n'est en cours de commit
+                jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+                pendingDeltas.forEach((productId, adder) -> {
+                    long delta = adder.sum();
+                    if (delta != 0) {
+                        pending.put(productId, delta);
+                    }
+                });
+            } finally {
+                commitGate.writeLock().unlock();
+            }
+
+            Map<Long, Long> drift = new TreeMap<>();
+            jdbcTemplate.query(DRIFT_SQL, (RowCallbackHandler) rs -> drift.put(rs.getLong("id"), rs.getLong("drift")));
+            // Le delta en attente est déjà compté dans favorites : le flush suivant l'ajoutera
+            pending.forEach((productId, delta) -> drift.merge(productId, -delta, Long::sum));
+            drift.values().removeIf(value -> value == 0);
+            return drift;
+        });
+        if (corrections.isEmpty()) {
+            return 0;
+        }
+
+        // Correction relative : les flush des autres instances depuis l'instantané sont conservés
+        List<Object[]> updates = new ArrayList<>(corrections.size());
+        corrections.forEach((productId, delta) -> updates.add(new Object[] { delta, productId }));
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, updates);
+            searchOutbox.enqueueAll(corrections.keySet());
+            evictDetails(corrections.keySet());
+        });
+        corrections.keySet().forEach(persistedCounts::invalidate);
+        return corrections.size();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private Map<Long, Long> loadPersistedCounts(Collection<? extends Long> productIds) {
+        Map<Long, Long> counts = new HashMap<>(productIds.size());
+        for (ProductRepository.FavoriteCountRow row : productRepository.findFavoriteCounts(new ArrayList<>(productIds))) {
+            counts.put(row.getId(), row.getFavoriteCount() != null ? row.getFavoriteCount().longValue() : 0L);
+        }
+        return counts;
+    }
+
+    // Éviction différée après le commit par le gestionnaire de cache transactionnel (CacheConfig)
+    private void evictDetails(Collection<Long> productIds) {
+        Cache detail = cacheManager.getCache(CacheConfig.PRODUCT_DETAIL);
+        if (detail != null) {
+            productIds.forEach(detail::evict);
+        }
+    }
+
+    private long pendingDelta(Long productId) {
+        LongAdder adder = pendingDeltas.get(productId);
+        return adder != null ? adder.sum() : 0;
+    }
+
+    private LongAdder adderFor(Long productId) {
+        return pendingDeltas.computeIfAbsent(productId, id -> new LongAdder());
+    }
+}
@@ -3,7 +3,6 @@ package io.mazy.souqly_backend.service;
 import io.mazy.souqly_backend.dto.FavoriteResponse;
 import io.mazy.souqly_backend.entity.Favorite;
 import io.mazy.souqly_backend.repository.FavoriteRepository;
-import io.mazy.souqly_backend.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,7 +10,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 public class FavoriteService {
@@ -20,7 +18,7 @@ public class FavoriteService {
     private FavoriteRepository favoriteRepository;
     
     @Autowired
-    private ProductRepository productRepository;
+    private FavoriteCounter favoriteCounter;
     
     /**
      * Ajouter ou retirer un produit des favoris
@@ -34,14 +32,12 @@ public class FavoriteService {
         if (existingFavorite.isPresent()) {
             // Retirer des favoris
             favoriteRepository.delete(existingFavorite.get());
-            productRepository.decrementFavoriteCount(productId);
-            return new FavoriteResponse(false, getFavoriteCount(productId));
+            return new FavoriteResponse(false, (int) favoriteCounter.recordToggle(productId, -1));
         } else {
             // Ajouter aux favoris
             Favorite favorite = new Favorite(userId, productId);
             favoriteRepository.save(favorite);
-            productRepository.incrementFavoriteCount(productId);
-            return new FavoriteResponse(true, getFavoriteCount(productId));
+            return new FavoriteResponse(true, (int) favoriteCounter.recordToggle(productId, 1));
         }
     }
     
@@ -56,7 +52,7 @@ public class FavoriteService {
      * Récupérer le nombre de favoris d'un produit
      */
     public int getFavoriteCount(Long productId) {
-        return (int) favoriteRepository.countByProductId(productId);
+        return (int) favoriteCounter.count(productId);
     }
     
     /**
@@ -87,8 +83,10 @@ public class FavoriteService {
         return (int) favoriteRepository.countByUserId(userId);
     }
 
+    /**
+     * Compteurs de favoris de plusieurs produits, lus depuis le cache du compteur (pas de COUNT sur favorites)
+     */
     public Map<Long, Long> getFavoriteCountsForProducts(List<Long> productIds) {
-        List<FavoriteRepository.ProductFavoriteCount> counts = favoriteRepository.countFavoritesByProductIds(productIds);
-        return counts.stream().collect(Collectors.toMap(FavoriteRepository.ProductFavoriteCount::getProductId, FavoriteRepository.ProductFavoriteCount::getCount));
+        return favoriteCounter.counts(productIds);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,44 @@
+package io.mazy.souqly_backend.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Verrous par clé de fichier de l'ImageStore, partagés entre instances (verrous consultatifs Postgres
+ * de transaction, relâchés au commit ou au rollback).
+ *
+ * Un fichier est partagé par toutes les images de même contenu : sa suppression (plus aucune référence)
+ * et l'ajout d'une référence (upload, déclinaisons, migration) se font sous le verrou de la clé.
+ * Celui qui référence vérifie sous le verrou que le fichier existe toujours, et le réécrit sinon.
+ * Plusieurs clés sont toujours verrouillées dans l'ordre, pour éviter les interblocages.
+ */
+@Component
+public class ImageBlobLocks {
+
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(hashtext(?))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ImageBlobLocks(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Verrouille les clés (null ignorées) jusqu'à la fin de la transaction en cours
+     */
+    public void lock(Collection<String> keys) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Verrou de fichier image hors transaction");
+        }
+        keys.stream()
+            .filter(Objects::nonNull)
+            .distinct()
+            .sorted()
+            .forEach(key -> jdbcTemplate.query(LOCK_SQL, (RowCallbackHandler) rs -> { }, key));
+    }
+}
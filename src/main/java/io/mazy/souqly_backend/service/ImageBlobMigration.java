@@ -0,0 +1,98 @@
+package io.mazy.souqly_backend.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Sortie des images BYTEA existantes vers l'ImageStore.
+ *
+ * Les lignes sans storage_key sont traitées par lots, une ligne à la fois (une seule image en mémoire) :
+ * le contenu est écrit dans le store, puis storage_key et size_bytes sont posés et image_data remis à NULL.
+ * Chaque ligne est indépendante ; une ligne en échec est retentée au passage suivant.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageBlobMigration {
+
+    private static final String PENDING_IDS_SQL =
+        "SELECT id FROM product_images WHERE storage_key IS NULL AND image_data IS NOT NULL AND id > ? " +
+        "ORDER BY id LIMIT ?";
+
+    private static final String MARK_MIGRATED_SQL =
+        "UPDATE product_images SET storage_key = ?, size_bytes = ?, image_data = NULL " +
+        "WHERE id = ? AND storage_key IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ImageStore imageStore;
+    private final ImageBlobLocks blobLocks;
+
+    @Value("${souqly.images.migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${souqly.images.migration.batch-size:100}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${souqly.images.migration.interval-ms:60000}", initialDelay = 30000)
+    public synchronized void migratePending() {
+        if (!enabled) {
+            return;
+        }
+        long lastId = 0;
+        int migrated = 0;
+        int failed = 0;
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(PENDING_IDS_SQL, Long.class, lastId, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            for (Long id : ids) {
+                try {
+                    migrate(id);
+                    migrated++;
+                } catch (RuntimeException e) {
+                    failed++;
+                    log.warn("Migration de l'image {} vers le store échouée: {}", id, e.getMessage());
+                }
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+        if (migrated > 0 || failed > 0) {
+            log.info("Migration des images BYTEA: {} migrées, {} en échec", migrated, failed);
+        }
+    }
+
+    private void migrate(Long id) {
+        ImageStore.StoredBlob blob = jdbcTemplate.query("SELECT image_data FROM product_images WHERE id = ?", rs -> {
+            if (!rs.next()) {
+                return null;
+            }
+            try (InputStream content = rs.getBinaryStream(1)) {
+                return content != null ? imageStore.store(content) : null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, id);
+        if (blob != null) {
+            // Référence posée sous le verrou de la clé ; fichier supprimé entre-temps : ligne reprise au passage suivant
+            transactionTemplate.executeWithoutResult(status -> {
+                blobLocks.lock(List.of(blob.key()));
+                if (imageStore.load(blob.key()) == null) {
+                    throw new IllegalStateException("Fichier " + blob.key() + " supprimé avant sa référence");
+                }
+                jdbcTemplate.update(MARK_MIGRATED_SQL, blob.key(), blob.size(), id);
+            });
+        }
+    }
+}
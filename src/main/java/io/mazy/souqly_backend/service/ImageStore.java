@@ -0,0 +1,30 @@
+package io.mazy.souqly_backend.service;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stockage des fichiers image, hors de la base.
+ *
+ * Les clés sont dérivées du contenu (SHA-256) : deux envois identiques partagent le même fichier,
+ * et un fichier stocké n'est jamais modifié.
+ */
+public interface ImageStore {
+
+    /**
+     * Stocke le contenu lu en flux (jamais chargé entièrement en mémoire) et retourne sa clé
+     */
+    StoredBlob store(InputStream content) throws IOException;
+
+    /**
+     * Ressource lisible en flux, ou null si la clé est inconnue
+     */
+    Resource load(String key);
+
+    void delete(String key) throws IOException;
+
+    record StoredBlob(String key, long size) {
+    }
+}
@@ -0,0 +1,32 @@
+package io.mazy.souqly_backend.service;
+
+/**
+ * Déclinaisons générées pour chaque image : plus grand côté en pixels, sans jamais agrandir l'original
+ */
+public enum ImageVariant {
+    THUMB(150),
+    CARD(480),
+    FULL(1280);
+
+    private final int maxSize;
+
+    ImageVariant(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Variante désignée dans une URL (thumb, card, full), insensible à la casse
+     */
+    public static ImageVariant fromPath(String value) {
+        for (ImageVariant variant : values()) {
+            if (variant.name().equalsIgnoreCase(value)) {
+                return variant;
+            }
+        }
+        throw new IllegalArgumentException("Déclinaison d'image inconnue: " + value);
+    }
+}
@@ -0,0 +1,297 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.repository.ProductImageRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Génère une fois pour toutes les déclinaisons JPEG (thumb, card, full) d'une image stockée.
+ *
+ * Le travail tourne sur un pool borné (threads et file d'attente) pour que l'upload rende la main tout de suite.
+ * Quand la file est pleine, l'image est laissée de côté : le rattrapage périodique la reprendra,
+ * comme celles migrées depuis BYTEA ou restées en file lors d'un redémarrage. Chaque échec incrémente
+ * variant_attempts ; au-delà de souqly.images.variants.max-attempts, l'image n'est plus reprise.
+ * Redimensionnement en JDK pur (Java2D, réductions successives par moitié puis bilinéaire).
+ */
+@Slf4j
+@Service
+public class ImageVariantService {
+
+    private static final String SAVE_VARIANTS_SQL =
+        "UPDATE product_images SET thumb_key = ?, card_key = ?, full_key = ? WHERE id = ?";
+
+    private static final String RECORD_FAILURE_SQL =
+        "UPDATE product_images SET variant_attempts = variant_attempts + 1 WHERE id = ?";
+
+    // Garde-fou contre les images piégées (dimensions énormes pour un fichier minuscule)
+    private static final long MAX_PIXELS = 50_000_000L;
+
+    private final ImageStore imageStore;
+    private final ProductImageRepository productImageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ImageBlobLocks blobLocks;
+    private final ThreadPoolExecutor executor;
+    private final float jpegQuality;
+    private final int maxAttempts;
+
+    // Un seul rattrapage à la fois (en file ou en cours)
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+
+    public ImageVariantService(ImageStore imageStore, ProductImageRepository productImageRepository,
+                               JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                               ImageBlobLocks blobLocks,
+                               @Value("${souqly.images.variants.threads:2}") int threads,
+                               @Value("${souqly.images.variants.queue-size:200}") int queueSize,
+                               @Value("${souqly.images.variants.jpeg-quality:0.8}") float jpegQuality,
+                               @Value("${souqly.images.variants.max-attempts:3}") int maxAttempts) {
+        this.imageStore = imageStore;
+        this.productImageRepository = productImageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.blobLocks = blobLocks;
+        this.jpegQuality = jpegQuality;
+        this.maxAttempts = maxAttempts;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            runnable -> {
+                Thread thread = new Thread(runnable, "image-variants-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Planifie la génération des déclinaisons ; ne bloque jamais l'appelant
+     */
+    public void submit(Long imageId, String storageKey) {
+        try {
+            executor.execute(() -> generateQuietly(imageId, storageKey));
+        } catch (RejectedExecutionException e) {
+            log.warn("File des déclinaisons pleine, image {} reportée au rattrapage", imageId);
+        }
+    }
+
+    /**
+     * Rattrapage des images sans déclinaisons. Le planificateur ne fait que le confier au pool de génération :
+     * il ne bloque pas les autres tâches planifiées pendant le décodage des images.
+     */
+    @Scheduled(fixedDelayString = "${souqly.images.variants.backfill-interval-ms:300000}", initialDelay = 60000)
+    public void backfill() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    backfillPending();
+                } finally {
+                    backfillRunning.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            backfillRunning.set(false);
+            log.warn("File des déclinaisons pleine, rattrapage reporté");
+        }
+    }
+
+    private void backfillPending() {
+        long lastId = 0;
+        while (true) {
+            List<Long> ids = productImageRepository.findIdsWithoutVariants(lastId, maxAttempts, PageRequest.of(0, 50));
+            if (ids.isEmpty()) {
+                return;
+            }
+            for (Long id : ids) {
+                productImageRepository.findFileMetaById(id)
+                    .ifPresent(meta -> generateQuietly(id, meta.getStorageKey()));
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void generateQuietly(Long imageId, String storageKey) {
+        boolean generated;
+        try {
+            generated = generate(imageId, storageKey);
+        } catch (Exception e) {
+            log.warn("Déclinaisons de l'image {} non générées: {}", imageId, e.getMessage());
+            generated = false;
+        }
+        if (!generated) {
+            try {
+                jdbcTemplate.update(RECORD_FAILURE_SQL, imageId);
+            } catch (RuntimeException e) {
+                log.warn("Échec des déclinaisons de l'image {} non enregistré: {}", imageId, e.getMessage());
+            }
+        }
+    }
+
+    // false si l'image ne peut pas être déclinée (fichier absent, format non lu par ImageIO)
+    private boolean generate(Long imageId, String storageKey) throws IOException {
+        Resource original = imageStore.load(storageKey);
+        if (original == null) {
+            log.warn("Fichier de l'image {} absent du store, pas de déclinaisons", imageId);
+            return false;
+        }
+        BufferedImage source = decode(original);
+        if (source == null) {
+            log.warn("Image {} illisible par ImageIO, pas de déclinaisons", imageId);
+            return false;
+        }
+
+        Map<ImageVariant, String> keys = new EnumMap<>(ImageVariant.class);
+        Map<String, byte[]> contents = new HashMap<>();
+        for (ImageVariant variant : ImageVariant.values()) {
+            byte[] jpeg = encodeJpeg(resize(source, variant.getMaxSize()));
+            String key = imageStore.store(new ByteArrayInputStream(jpeg)).key();
+            keys.put(variant, key);
+            contents.put(key, jpeg);
+        }
+        // Références posées sous le verrou des clés : une suppression concurrente du même fichier
+        // (dernière image de même contenu supprimée entre-temps) est rattrapée en le réécrivant
+        transactionTemplate.executeWithoutResult(status -> {
+            blobLocks.lock(contents.keySet());
+            try {
+                for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+                    if (imageStore.load(content.getKey()) == null) {
+                        imageStore.store(new ByteArrayInputStream(content.getValue()));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            int saved = jdbcTemplate.update(SAVE_VARIANTS_SQL,
+                keys.get(ImageVariant.THUMB), keys.get(ImageVariant.CARD), keys.get(ImageVariant.FULL), imageId);
+            // Image supprimée pendant la génération : ses déclinaisons ne sont référencées par personne,
+            // les fichiers sont libérés sous les mêmes verrous (sauf contenu partagé avec une autre image)
+            if (saved == 0) {
+                log.info("Image {} supprimée pendant la génération, déclinaisons abandonnées", imageId);
+                deleteUnreferenced(contents.keySet());
+            }
+        });
+        return true;
+    }
+
+    private void deleteUnreferenced(Collection<String> keys) {
+        try {
+            for (String key : keys) {
+                if (productImageRepository.countReferences(key) == 0) {
+                    imageStore.delete(key);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private BufferedImage decode(Resource original) throws IOException {
+        try (InputStream in = original.getInputStream();
+             ImageInputStream imageInput = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                // Dimensions lues dans l'en-tête, avant de décoder les pixels
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+                    throw new IOException("Image trop grande pour être déclinée");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage resize(BufferedImage source, int maxSize) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxSize / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        // Réductions par moitié tant que possible : évite le crénelage d'une seule passe bilinéaire
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        return draw(current, targetWidth, targetHeight);
+    }
+
+    // Dessin en RGB sur fond blanc : le JPEG n'a pas de canal alpha
+    private BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOutput);
+            ImageWriteParam params = writer.getDefaultWriteParam();
+            params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            params.setCompressionQuality(jpegQuality);
+            params.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(image, null, null), params);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,148 @@
+package io.mazy.souqly_backend.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+
+/**
+ * Matrice creuse utilisateurs x produits des interactions d'intérêt, chargée en un parcours de user_interactions.
+ *
+ * Stockage CSR (compressed sparse row) sur tableaux primitifs : les produits de l'utilisateur u
+ * sont items[userOffsets[u] .. userOffsets[u + 1]), en index denses triés ; productIds[item] redonne l'id.
+ * Chaque utilisateur garde ses maxItemsPerUser produits distincts les plus récents.
+ * Non thread-safe pendant le chargement, en lecture seule ensuite.
+ */
+final class InteractionMatrix {
+
+    // Interactions qui traduisent un intérêt pour le produit
+    static final String INTEREST_TYPES =
+        "('VIEW', 'FAVORITE', 'CLICK', 'SHARE', 'CONTACT', 'PURCHASE', 'RATE', 'COMMENT')";
+
+    private static final String INTERACTIONS_SQL =
+        "SELECT user_id, product_id FROM user_interactions WHERE product_id IS NOT NULL " +
+        "AND interaction_type IN " + INTEREST_TYPES + " ORDER BY user_id, created_at DESC";
+
+    private static final int FETCH_SIZE = 10_000;
+
+    long[] userIds = new long[1024];
+    int[] userOffsets = new int[1025];
+    int[] items = new int[16_384];
+    int userCount;
+
+    long[] productIds = new long[1024];
+    int itemCount;
+
+    private final LongIntHashMap itemIndex = new LongIntHashMap(1024);
+
+    private InteractionMatrix() {
+    }
+
+    /**
+     * Parcours en flux (curseur serveur : fetch size dans une transaction), jamais toutes les lignes en mémoire
+     */
+    static InteractionMatrix load(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                  int maxItemsPerUser) {
+        InteractionMatrix matrix = new InteractionMatrix();
+        LongIntHashMap seen = new LongIntHashMap(maxItemsPerUser);
+        long[] basket = new long[maxItemsPerUser];
+        int[] basketSize = new int[1];
+        long[] currentUser = { -1 };
+
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(INTERACTIONS_SQL);
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            long userId = rs.getLong(1);
+            long productId = rs.getLong(2);
+            if (userId != currentUser[0]) {
+                matrix.addUser(currentUser[0], basket, basketSize[0]);
+                currentUser[0] = userId;
+                basketSize[0] = 0;
+                seen.clear();
+            }
+            if (basketSize[0] < maxItemsPerUser && seen.get(productId, 0) == 0) {
+                seen.put(productId, 1);
+                basket[basketSize[0]++] = productId;
+            }
+        }));
+        matrix.addUser(currentUser[0], basket, basketSize[0]);
+        return matrix;
+    }
+
+    /**
+     * Matrice construite directement depuis les paniers (id utilisateur croissant, produits distincts du plus récent
+     * au plus ancien), sans base : bancs d'essai
+     */
+    static InteractionMatrix of(long[] userIds, long[][] baskets, int maxItemsPerUser) {
+        InteractionMatrix matrix = new InteractionMatrix();
+        for (int u = 0; u < userIds.length; u++) {
+            long[] basket = baskets[u];
+            matrix.addUser(userIds[u], basket, Math.min(basket.length, maxItemsPerUser));
+        }
+        return matrix;
+    }
+
+    int itemsOf(int user) {
+        return userOffsets[user + 1] - userOffsets[user];
+    }
+
+    /**
+     * Index inversé produit -> utilisateurs : même format CSR, utilisateurs triés par index croissant.
+     * Renvoie { offsets, users }.
+     */
+    int[][] itemUsers() {
+        int[] offsets = new int[itemCount + 1];
+        int total = userOffsets[userCount];
+        for (int i = 0; i < total; i++) {
+            offsets[items[i] + 1]++;
+        }
+        for (int item = 0; item < itemCount; item++) {
+            offsets[item + 1] += offsets[item];
+        }
+        int[] cursor = Arrays.copyOf(offsets, itemCount);
+        int[] users = new int[total];
+        for (int user = 0; user < userCount; user++) {
+            for (int i = userOffsets[user]; i < userOffsets[user + 1]; i++) {
+                users[cursor[items[i]]++] = user;
+            }
+        }
+        return new int[][] { offsets, users };
+    }
+
+    private void addUser(long userId, long[] basket, int size) {
+        if (size == 0) {
+            return;
+        }
+        if (userCount + 1 == userIds.length) {
+            userIds = Arrays.copyOf(userIds, userIds.length * 2);
+            userOffsets = Arrays.copyOf(userOffsets, userOffsets.length * 2);
+        }
+        int start = userOffsets[userCount];
+        if (start + size > items.length) {
+            items = Arrays.copyOf(items, Math.max(items.length * 2, start + size));
+        }
+        for (int i = 0; i < size; i++) {
+            items[start + i] = indexOf(basket[i]);
+        }
+        Arrays.sort(items, start, start + size);
+        userIds[userCount] = userId;
+        userOffsets[userCount + 1] = start + size;
+        userCount++;
+    }
+
+    private int indexOf(long productId) {
+        int item = itemIndex.get(productId, -1);
+        if (item < 0) {
+            if (itemCount == productIds.length) {
+                productIds = Arrays.copyOf(productIds, itemCount * 2);
+            }
+            item = itemCount++;
+            itemIndex.put(productId, item);
+            productIds[item] = productId;
+        }
+        return item;
+    }
+}
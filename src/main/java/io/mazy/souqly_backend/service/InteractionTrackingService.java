@@ -20,6 +20,7 @@ public class InteractionTrackingService {
     
     private final UserInteractionRepository userInteractionRepository;
     private final UserRepository userRepository;
+    private final PrecomputedRecommendationService precomputedRecommendationService;
     
     /**
      * Enregistre une interaction utilisateur
@@ -46,6 +47,7 @@ public class InteractionTrackingService {
             interaction.setUserAgent(userAgent);
             
             userInteractionRepository.save(interaction);
+            precomputedRecommendationService.markDirty(user.getId());
             log.info("Interaction tracked: {} for user {} and product {}", type, user.getId(), product.getId());
         } catch (Exception e) {
             log.error("Error tracking interaction: {}", e.getMessage(), e);
@@ -0,0 +1,282 @@
+package io.mazy.souqly_backend.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Modèle de filtrage collaboratif item-item : pour chaque produit, ses K voisins les plus proches
+ * (cosinus sur la co-occurrence : deux produits sont proches si les mêmes utilisateurs s'y intéressent).
+ *
+ * Construction hors ligne (planifiée) sur la matrice des interactions ({@link InteractionMatrix}, un seul
+ * parcours de user_interactions) : chaque paire de produits du panier d'un utilisateur (ses produits distincts
+ * les plus récents, borné) incrémente un compteur dans une table primitive. Les voisins sont persistés
+ * dans item_neighbors, une ligne par produit (tableaux ids/scores).
+ *
+ * En ligne, une recommandation lit les voisins des derniers produits vus par l'utilisateur (une requête)
+ * et fusionne ces listes : aucune comparaison entre utilisateurs.
+ */
+@Slf4j
+@Service
+public class ItemSimilarityModel {
+
+    private static final String USER_ITEMS_SQL =
+        "SELECT product_id FROM user_interactions WHERE user_id = ? AND interaction_type IN " +
+        InteractionMatrix.INTEREST_TYPES +
+        " ORDER BY created_at DESC LIMIT ?";
+
+    private static final String NEIGHBORS_SQL =
+        "SELECT product_id, neighbor_ids, scores FROM item_neighbors WHERE product_id = ANY (?)";
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO item_neighbors (product_id, neighbor_ids, scores, built_at) VALUES (?, ?, ?, ?) " +
+        "ON CONFLICT (product_id) DO UPDATE SET neighbor_ids = EXCLUDED.neighbor_ids, " +
+        "scores = EXCLUDED.scores, built_at = EXCLUDED.built_at";
+
+    private static final String PURGE_SQL = "DELETE FROM item_neighbors WHERE built_at < ?";
+
+    private static final int WRITE_BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${souqly.recommendations.item-model.neighbors:50}")
+    private int neighbors;
+
+    // Un utilisateur (ou robot) aux milliers de vues ne doit pas faire exploser le nombre de paires
+    @Value("${souqly.recommendations.item-model.max-items-per-user:200}")
+    private int maxItemsPerUser;
+
+    // Co-occurrences en dessous de ce seuil : bruit (une seule personne a vu les deux produits)
+    @Value("${souqly.recommendations.item-model.min-co-occurrence:2}")
+    private int minCoOccurrence;
+
+    // Produits récents de l'utilisateur servant de points de départ en ligne
+    @Value("${souqly.recommendations.item-model.seed-items:20}")
+    private int seedItems;
+
+    // Reconstruction demandée par l'API d'administration
+    private final BackgroundJob buildJob = new BackgroundJob("item-model-build");
+
+    public ItemSimilarityModel(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Lance la reconstruction en arrière-plan. Retourne false si elle tourne déjà.
+     */
+    public boolean startBuild() {
+        return buildJob.start(this::build);
+    }
+
+    /**
+     * État de la dernière reconstruction lancée par {@link #startBuild()} (résultat : produits dotés de voisins)
+     */
+    public Map<String, Object> buildStatus() {
+        return buildJob.status();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildJob.shutdown();
+    }
+
+    /**
+     * Reconstruit tout le modèle ; renvoie le nombre de produits dotés de voisins
+     */
+    @Scheduled(cron = "${souqly.recommendations.item-model.cron:0 0 4 * * *}")
+    public synchronized int build() {
+        long start = System.currentTimeMillis();
+        LocalDateTime builtAt = LocalDateTime.now();
+
+        InteractionMatrix matrix = InteractionMatrix.load(jdbcTemplate, transactionTemplate, maxItemsPerUser);
+        LongIntHashMap pairs = countPairs(matrix);
+        TopKHeap[] heaps = topNeighbors(matrix, pairs);
+        int written = write(matrix.productIds, heaps, builtAt);
+        int purged = jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(builtAt));
+
+        log.info("Modèle item-item construit en {} ms: {} utilisateurs, {} produits, {} paires, {} listes écrites, {} purgées",
+            System.currentTimeMillis() - start, matrix.userCount, matrix.itemCount, pairs.size(), written, purged);
+        return written;
+    }
+
+    /**
+     * Produits recommandés à un utilisateur (ids, du plus au moins pertinent), hors produits déjà vus.
+     * Vide si l'utilisateur n'a pas d'historique ou si le modèle n'a pas encore été construit.
+     */
+    public List<Long> recommend(Long userId, int limit) {
+        List<Long> history = jdbcTemplate.queryForList(USER_ITEMS_SQL, Long.class, userId, maxItemsPerUser);
+        if (history.isEmpty()) {
+            return List.of();
+        }
+        long[] seen = history.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+        Long[] seeds = history.stream().distinct().limit(seedItems).toArray(Long[]::new);
+
+        // Fusion des listes de voisins : score d'un candidat = somme de ses similarités aux produits de départ
+        LongIntHashMap slots = new LongIntHashMap(seeds.length * neighbors);
+        long[] candidates = new long[seeds.length * neighbors];
+        float[] sums = new float[candidates.length];
+        int[] count = new int[1];
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(NEIGHBORS_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", seeds));
+            return ps;
+        }, rs -> {
+            Long[] neighborIds = (Long[]) rs.getArray("neighbor_ids").getArray();
+            Float[] scores = (Float[]) rs.getArray("scores").getArray();
+            for (int i = 0; i < neighborIds.length && i < neighbors; i++) {
+                long candidate = neighborIds[i];
+                if (Arrays.binarySearch(seen, candidate) >= 0) {
+                    continue;
+                }
+                int slot = slots.get(candidate, -1);
+                if (slot < 0) {
+                    if (count[0] == candidates.length) {
+                        continue;
+                    }
+                    slot = count[0]++;
+                    slots.put(candidate, slot);
+                    candidates[slot] = candidate;
+                }
+                sums[slot] += scores[i];
+            }
+        });
+
+        TopKHeap best = new TopKHeap(limit);
+        for (int slot = 0; slot < count[0]; slot++) {
+            best.offer(candidates[slot], sums[slot]);
+        }
+        long[] ids = new long[best.size()];
+        int size = best.drainDescending(ids, new float[ids.length]);
+        List<Long> recommended = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            recommended.add(ids[i]);
+        }
+        return recommended;
+    }
+
+    // (index a << 32 | index b), a < b -> nombre d'utilisateurs ayant les deux produits dans leur panier
+    private LongIntHashMap countPairs(InteractionMatrix matrix) {
+        LongIntHashMap pairs = new LongIntHashMap(1 << 16);
+        int[] items = matrix.items;
+        for (int user = 0; user < matrix.userCount; user++) {
+            int from = matrix.userOffsets[user];
+            int to = matrix.userOffsets[user + 1];
+            for (int i = from; i < to; i++) {
+                for (int j = i + 1; j < to; j++) {
+                    pairs.addTo(pairKey(items[i], items[j]), 1);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    // +1 sur le premier index : la clé 0 est réservée par LongIntHashMap
+    private static long pairKey(int a, int b) {
+        return ((long) (a + 1) << 32) | b;
+    }
+
+    private TopKHeap[] topNeighbors(InteractionMatrix matrix, LongIntHashMap pairs) {
+        TopKHeap[] heaps = new TopKHeap[matrix.itemCount];
+        // Nombre d'utilisateurs par produit
+        int[] itemUsers = new int[matrix.itemCount];
+        for (int i = 0; i < matrix.userOffsets[matrix.userCount]; i++) {
+            itemUsers[matrix.items[i]]++;
+        }
+        pairs.forEach((key, together) -> {
+            if (together < minCoOccurrence) {
+                return;
+            }
+            int a = (int) (key >>> 32) - 1;
+            int b = (int) key;
+            float cosine = (float) (together / Math.sqrt((double) itemUsers[a] * itemUsers[b]));
+            offer(heaps, a, b, cosine);
+            offer(heaps, b, a, cosine);
+        });
+        return heaps;
+    }
+
+    private void offer(TopKHeap[] heaps, int item, int neighbor, float score) {
+        TopKHeap heap = heaps[item];
+        if (heap == null) {
+            heap = heaps[item] = new TopKHeap(neighbors);
+        }
+        heap.offer(neighbor, score);
+    }
+
+    private int write(long[] productIds, TopKHeap[] heaps, LocalDateTime builtAt) {
+        Timestamp timestamp = Timestamp.valueOf(builtAt);
+        List<Integer> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        int written = 0;
+        for (int item = 0; item < heaps.length; item++) {
+            if (heaps[item] == null) {
+                continue;
+            }
+            batch.add(item);
+            if (batch.size() == WRITE_BATCH_SIZE) {
+                written += writeBatch(productIds, heaps, batch, timestamp);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            written += writeBatch(productIds, heaps, batch, timestamp);
+        }
+        return written;
+    }
+
+    private int writeBatch(long[] productIds, TopKHeap[] heaps, List<Integer> items, Timestamp builtAt) {
+        Map<Integer, Long[]> neighborIds = new HashMap<>(items.size());
+        Map<Integer, Float[]> neighborScores = new HashMap<>(items.size());
+        for (Integer item : items) {
+            TopKHeap heap = heaps[item];
+            long[] indexes = new long[heap.size()];
+            float[] scores = new float[heap.size()];
+            int size = heap.drainDescending(indexes, scores);
+            Long[] ids = new Long[size];
+            Float[] boxedScores = new Float[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = productIds[(int) indexes[i]];
+                boxedScores[i] = scores[i];
+            }
+            neighborIds.put(item, ids);
+            neighborScores.put(item, boxedScores);
+            heaps[item] = null;
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Integer item = items.get(i);
+                Array ids = ps.getConnection().createArrayOf("bigint", neighborIds.get(item));
+                Array scores = ps.getConnection().createArrayOf("real", neighborScores.get(item));
+                ps.setLong(1, productIds[item]);
+                ps.setArray(2, ids);
+                ps.setArray(3, scores);
+                ps.setTimestamp(4, builtAt);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return items.size();
+            }
+        });
+        return items.size();
+    }
+}
@@ -0,0 +1,94 @@
+package io.mazy.souqly_backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * ImageStore sur le système de fichiers local, adressé par contenu.
+ *
+ * Le flux est écrit dans un fichier temporaire pendant le calcul du SHA-256, puis déplacé atomiquement
+ * vers {@code <racine>/ab/cd/<sha256>}. Si ce fichier existe déjà, le temporaire est simplement supprimé.
+ */
+@Slf4j
+@Component
+public class LocalImageStore implements ImageStore {
+
+    private final Path root;
+    private final Path tmpDir;
+
+    public LocalImageStore(@Value("${souqly.images.storage-dir:./data/images}") String storageDir) throws IOException {
+        this.root = Paths.get(storageDir).toAbsolutePath().normalize();
+        this.tmpDir = root.resolve("tmp");
+        Files.createDirectories(tmpDir);
+    }
+
+    @Override
+    public StoredBlob store(InputStream content) throws IOException {
+        MessageDigest digest = newSha256();
+        Path tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+        try {
+            long size;
+            try (InputStream in = new DigestInputStream(content, digest);
+                 OutputStream out = Files.newOutputStream(tmp)) {
+                size = in.transferTo(out);
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+            Path target = pathFor(key);
+            if (Files.exists(target)) {
+                return new StoredBlob(key, size);
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Même contenu envoyé en parallèle : l'autre copie fait foi
+                log.debug("Image {} déjà stockée", key);
+            }
+            return new StoredBlob(key, size);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public Resource load(String key) {
+        Path path = pathFor(key);
+        return Files.isReadable(path) ? new FileSystemResource(path) : null;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(pathFor(key));
+    }
+
+    private Path pathFor(String key) {
+        if (key == null || !key.matches("[0-9a-f]{64}")) {
+            throw new IllegalArgumentException("Clé d'image invalide");
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.mazy.souqly_backend.service;
+
+import java.util.Arrays;
+
+/**
+ * Table de hachage long -> int à adressage ouvert (sondage linéaire), sans objet par entrée.
+ *
+ * Sert aux calculs hors ligne des recommandations (dictionnaire id produit -> index dense, comptes de paires),
+ * où des millions de Long/Integer boxés coûteraient plus que les données elles-mêmes.
+ * La clé 0 est réservée (case vide) : ids de base de données et paires d'index encodées sont strictement positifs.
+ * Non thread-safe.
+ */
+final class LongIntHashMap {
+
+    /**
+     * Visite des entrées
+     */
+    interface EntryConsumer {
+        void accept(long key, int value);
+    }
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(long key, int defaultValue) {
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    void put(long key, int value) {
+        int slot = findOrInsert(key);
+        values[slot] = value;
+    }
+
+    /**
+     * Ajoute delta à la valeur de la clé (0 si absente) et renvoie la nouvelle valeur
+     */
+    int addTo(long key, int delta) {
+        int slot = findOrInsert(key);
+        values[slot] += delta;
+        return values[slot];
+    }
+
+    /**
+     * Vide la table sans réallouer (réutilisation d'un utilisateur à l'autre)
+     */
+    void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    private int findOrInsert(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("La clé 0 est réservée");
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= resizeAt) {
+            grow();
+            return findOrInsert(key);
+        }
+        keys[slot] = key;
+        size++;
+        return slot;
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                int target = slot(oldKeys[slot]);
+                while (keys[target] != 0) {
+                    target = (target + 1) & mask;
+                }
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+        size = 0;
+    }
+}
@@ -8,6 +8,7 @@ import io.mazy.souqly_backend.repository.ProductBoostRepository;
 import io.mazy.souqly_backend.repository.UserProfileRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -29,6 +30,10 @@ public class OptimizationService {
     // Cache pour les recommandations
     private final Map<String, Object> recommendationCache = new ConcurrentHashMap<>();
     private final Map<String, Object> boostCache = new ConcurrentHashMap<>();
+
+    // Parcours horaire de tous les profils : désactivé par défaut (lit toute la table sans rien modifier)
+    @Value("${souqly.optimization.profiles.enabled:false}")
+    private boolean profileOptimizationEnabled;
     
     /**
      * Optimise les recommandations en utilisant le cache
@@ -87,6 +92,9 @@ public class OptimizationService {
      */
     @Scheduled(fixedRate = 3600000) // Toutes les heures
     public void optimizeUserProfiles() {
+        if (!profileOptimizationEnabled) {
+            return;
+        }
         try {
             log.info("Début de l'optimisation des profils utilisateur...");
             
@@ -0,0 +1,295 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.repository.ProductRepository;
+import io.mazy.souqly_backend.repository.UserInteractionRepository;
+import io.mazy.souqly_backend.service.RecommendationStore.Algorithm;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service des recommandations par listes précalculées ({@link RecommendationStore}).
+ *
+ * Les listes (content-based, collaborative, hybride) sont calculées hors requête : reconstruction complète
+ * planifiée, et rafraîchissement fréquent des utilisateurs marqués "à recalculer" (nouvelle interaction,
+ * utilisateur absent du store). En requête, la liste stockée est filtrée sur les produits encore actifs
+ * du {@link CatalogSnapshot} et tronquée à la limite, puis seuls ces produits sont chargés (une requête par
+ * clé primaire, entités complètes : c'est le coût dominant d'une réponse servie par le store).
+ * Un utilisateur sans liste (ou une limite au-delà de la taille stockée) est calculé à la volée comme avant.
+ *
+ * Les marques sont écrites dans recommendation_refresh_queue, partagée entre instances : chaque instance
+ * a son propre store et lit les lignes après son curseur, quelle que soit l'instance qui les a écrites.
+ * Le curseur est enregistré avec les listes publiées ({@link RecommendationStore#queueMark()}) : un redémarrage
+ * reprend après la dernière ligne prise en compte.
+ * Une ligne validée après une ligne d'id supérieur déjà lue est manquée, et rattrapée par la reconstruction
+ * complète. Les lignes sont purgées après queue-retention-hours.
+ *
+ * Métrique : recommendations.store (tags algorithm, result = hit ou miss).
+ */
+@Slf4j
+@Service
+public class PrecomputedRecommendationService {
+
+    private static final String ENQUEUE_SQL = "INSERT INTO recommendation_refresh_queue (user_id) VALUES (?)";
+
+    private static final String PENDING_SQL =
+        "SELECT id, user_id FROM recommendation_refresh_queue WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String PURGE_SQL = "DELETE FROM recommendation_refresh_queue WHERE created_at < ?";
+
+    private static final String LAST_QUEUE_ID_SQL = "SELECT COALESCE(MAX(id), 0) FROM recommendation_refresh_queue";
+
+    private final RecommendationStore store;
+    private final ContentBasedRecommendationService contentBasedService;
+    private final CollaborativeFilteringService collaborativeService;
+    private final UserInteractionRepository userInteractionRepository;
+    private final ProductRepository productRepository;
+    private final CatalogSnapshot catalogSnapshot;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService rebuildExecutor;
+    private final AtomicBoolean rebuildRunning = new AtomicBoolean();
+
+    // Utilisateurs marqués récemment par cette instance : une marque par intervalle de rafraîchissement suffit
+    private final Cache<Long, Boolean> recentlyMarked;
+
+    // Dernière ligne de recommendation_refresh_queue traitée par cette instance
+    private long lastQueueId;
+
+    // Taille des listes stockées
+    @Value("${souqly.recommendations.store.size:50}")
+    private int listSize;
+
+    // Lignes de recommendation_refresh_queue lues par rafraîchissement
+    @Value("${souqly.recommendations.store.refresh-batch:500}")
+    private int refreshBatch;
+
+    @Value("${souqly.recommendations.store.queue-retention-hours:48}")
+    private int queueRetentionHours;
+
+    public PrecomputedRecommendationService(RecommendationStore store,
+                                            ContentBasedRecommendationService contentBasedService,
+                                            CollaborativeFilteringService collaborativeService,
+                                            UserInteractionRepository userInteractionRepository,
+                                            ProductRepository productRepository,
+                                            CatalogSnapshot catalogSnapshot,
+                                            TransactionTemplate transactionTemplate,
+                                            JdbcTemplate jdbcTemplate,
+                                            MeterRegistry meterRegistry,
+                                            @Value("${souqly.recommendations.store.refresh-interval-ms:60000}")
+                                            long refreshIntervalMs) {
+        this.store = store;
+        this.contentBasedService = contentBasedService;
+        this.collaborativeService = collaborativeService;
+        this.userInteractionRepository = userInteractionRepository;
+        this.productRepository = productRepository;
+        this.catalogSnapshot = catalogSnapshot;
+        this.lastQueueId = store.queueMark();
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.recentlyMarked = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMillis(refreshIntervalMs))
+            .build();
+        this.rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recommendation-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Recommandations de l'utilisateur pour le type demandé ("content", "collaborative", "hybrid")
+     */
+    public List<Product> getRecommendations(Long userId, String type, int limit) {
+        Algorithm algorithm = Algorithm.fromType(type);
+        if (limit > listSize) {
+            // Liste stockée trop courte : rien à recalculer, seulement à calculer à la volée
+            count(algorithm, "miss");
+            return computeLive(algorithm, userId, limit);
+        }
+        RecommendationStore.Entry entry = store.get(algorithm, userId);
+        if (entry == null) {
+            count(algorithm, "miss");
+            markDirty(userId);
+            return computeLive(algorithm, userId, limit);
+        }
+        count(algorithm, "hit");
+
+        // Les produits désactivés depuis le calcul disparaissent ici, avant tout chargement
+        CatalogSnapshot.Columns columns = catalogSnapshot.columns();
+        List<Long> productIds = new ArrayList<>(limit);
+        for (long id : entry.productIds()) {
+            if (productIds.size() == limit) {
+                break;
+            }
+            if (columns.rowOf(id) >= 0) {
+                productIds.add(id);
+            }
+        }
+        // Le catalogue en colonnes peut avoir quelques secondes de retard : le filtre is_active reste en base
+        return productRepository.findActiveByIdsInOrder(productIds);
+    }
+
+    /**
+     * Demande le recalcul des listes de l'utilisateur au prochain rafraîchissement, sur toutes les instances
+     */
+    public void markDirty(Long userId) {
+        if (userId != null && recentlyMarked.asMap().putIfAbsent(userId, Boolean.TRUE) == null) {
+            try {
+                jdbcTemplate.update(ENQUEUE_SQL, userId);
+            } catch (RuntimeException e) {
+                recentlyMarked.invalidate(userId);
+                log.warn("Recalcul des recommandations de l'utilisateur {} non demandé: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Lance la reconstruction complète en arrière-plan. Retourne false si elle tourne déjà.
+     */
+    public boolean startRebuild() {
+        if (!rebuildRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    rebuildAll();
+                } catch (RuntimeException e) {
+                    log.error("Reconstruction des recommandations précalculées échouée: {}", e.getMessage(), e);
+                } finally {
+                    rebuildRunning.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rebuildRunning.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    public boolean isRebuildRunning() {
+        return rebuildRunning.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Recalcule les listes de tous les utilisateurs ayant des interactions ; renvoie le nombre d'utilisateurs
+     */
+    @Scheduled(cron = "${souqly.recommendations.store.cron:0 0 5 * * *}")
+    public synchronized int rebuildAll() {
+        long start = System.currentTimeMillis();
+        jdbcTemplate.update(PURGE_SQL, Timestamp.from(Instant.now().minus(Duration.ofHours(queueRetentionHours))));
+        // Les marques écrites pendant le calcul restent à rafraîchir
+        long queueMark = Math.max(lastQueueId, jdbcTemplate.queryForObject(LAST_QUEUE_ID_SQL, Long.class));
+        List<Long> userIds = userInteractionRepository.findDistinctUserIds();
+        RecommendationStore.Writer[] writers = compute(userIds);
+        for (Algorithm algorithm : Algorithm.values()) {
+            store.publish(algorithm, writers[algorithm.ordinal()], true, queueMark);
+        }
+        lastQueueId = queueMark;
+        log.info("Recommandations précalculées pour {} utilisateurs en {} ms",
+            writers[0].userCount(), System.currentTimeMillis() - start);
+        return writers[0].userCount();
+    }
+
+    /**
+     * Recalcule les utilisateurs marqués (par n'importe quelle instance) depuis le dernier passage
+     */
+    @Scheduled(fixedDelayString = "${souqly.recommendations.store.refresh-interval-ms:60000}")
+    public synchronized int refreshDirty() {
+        Set<Long> userIds = new LinkedHashSet<>();
+        long[] queueMark = { lastQueueId };
+        jdbcTemplate.query(PENDING_SQL, (RowCallbackHandler) rs -> {
+            queueMark[0] = Math.max(queueMark[0], rs.getLong("id"));
+            userIds.add(rs.getLong("user_id"));
+        }, lastQueueId, refreshBatch);
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        RecommendationStore.Writer[] writers = compute(new ArrayList<>(userIds));
+        for (Algorithm algorithm : Algorithm.values()) {
+            store.publish(algorithm, writers[algorithm.ordinal()], false, queueMark[0]);
+        }
+        // Curseur avancé une fois les listes publiées : un échec relit les mêmes lignes
+        lastQueueId = queueMark[0];
+        log.debug("Recommandations rafraîchies pour {} utilisateurs", writers[0].userCount());
+        return writers[0].userCount();
+    }
+
+    private RecommendationStore.Writer[] compute(List<Long> userIds) {
+        RecommendationStore.Writer[] writers = new RecommendationStore.Writer[Algorithm.values().length];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = new RecommendationStore.Writer();
+        }
+        for (Long userId : userIds) {
+            try {
+                // Une transaction par utilisateur : associations paresseuses hors requête HTTP
+                transactionTemplate.executeWithoutResult(status -> {
+                    List<Product> content = contentBasedService.getContentBasedRecommendations(userId, listSize);
+                    List<Product> collaborative = collaborativeService.getCollaborativeRecommendations(userId, listSize);
+                    List<Product> hybrid = collaborativeService.combineHybrid(content, collaborative, userId, listSize);
+                    add(writers[Algorithm.CONTENT.ordinal()], userId, content);
+                    add(writers[Algorithm.COLLABORATIVE.ordinal()], userId, collaborative);
+                    add(writers[Algorithm.HYBRID.ordinal()], userId, hybrid);
+                });
+            } catch (Exception e) {
+                log.warn("Recommandations non précalculées pour l'utilisateur {}: {}", userId, e.getMessage());
+            }
+        }
+        return writers;
+    }
+
+    // Score de rang : 1 pour le premier produit, décroissant linéairement
+    private void add(RecommendationStore.Writer writer, Long userId, List<Product> products) {
+        int size = Math.min(products.size(), listSize);
+        long[] ids = new long[size];
+        float[] scores = new float[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = products.get(i).getId();
+            scores[i] = (float) (size - i) / size;
+        }
+        writer.add(userId, ids, scores, size);
+    }
+
+    private List<Product> computeLive(Algorithm algorithm, Long userId, int limit) {
+        return switch (algorithm) {
+            case CONTENT -> contentBasedService.getContentBasedRecommendations(userId, limit);
+            case COLLABORATIVE -> collaborativeService.getCollaborativeRecommendations(userId, limit);
+            case HYBRID -> collaborativeService.getHybridRecommendations(userId, limit);
+        };
+    }
+
+    private void count(Algorithm algorithm, String result) {
+        meterRegistry.counter("recommendations.store", "algorithm", algorithm.name().toLowerCase(), "result", result)
+            .increment();
+    }
+}
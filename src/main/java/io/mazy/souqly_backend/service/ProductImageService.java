@@ -0,0 +1,138 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.config.CacheConfig;
+import io.mazy.souqly_backend.entity.ProductImage;
+import io.mazy.souqly_backend.repository.ProductImageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Upload et suppression des images produit.
+ *
+ * Le document Elasticsearch d'un produit liste ses ids d'image : toute suppression d'une image rattachée
+ * ajoute le produit à search_outbox dans la même transaction et vide son détail en cache.
+ * Une image uploadée n'appartient encore à aucun produit ; son rattachement passe par la création du produit,
+ * déjà relayée par {@link SearchOutboxListener}.
+ *
+ * Les fichiers sont partagés par contenu : la référence d'un upload et la suppression d'un fichier devenu
+ * orphelin passent par {@link ImageBlobLocks}, sans quoi un upload concurrent des mêmes octets pourrait
+ * référencer un fichier en cours de suppression.
+ */
+@Slf4j
+@Service
+public class ProductImageService {
+
+    private final ProductImageRepository productImageRepository;
+    private final ImageStore imageStore;
+    private final ImageVariantService imageVariantService;
+    private final ImageBlobLocks blobLocks;
+    private final SearchOutboxListener searchOutbox;
+    private final CacheManager cacheManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public ProductImageService(ProductImageRepository productImageRepository, ImageStore imageStore,
+                               ImageVariantService imageVariantService, ImageBlobLocks blobLocks,
+                               SearchOutboxListener searchOutbox,
+                               CacheManager cacheManager, TransactionTemplate transactionTemplate) {
+        this.productImageRepository = productImageRepository;
+        this.imageStore = imageStore;
+        this.imageVariantService = imageVariantService;
+        this.blobLocks = blobLocks;
+        this.searchOutbox = searchOutbox;
+        this.cacheManager = cacheManager;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Stocke le fichier (lu en flux, jamais copié entièrement en mémoire) et retourne l'id de l'image
+     */
+    public Long upload(MultipartFile file) throws IOException {
+        ImageStore.StoredBlob blob = store(file);
+        ProductImage image = new ProductImage();
+        image.setStorageKey(blob.key());
+        image.setSizeBytes(blob.size());
+        image.setContentType(file.getContentType());
+        image.setFileName(file.getOriginalFilename());
+        transactionTemplate.executeWithoutResult(status -> {
+            blobLocks.lock(List.of(blob.key()));
+            // Fichier déjà présent et supprimé avec la dernière image qui le référençait : réécrit sous le verrou
+            if (imageStore.load(blob.key()) == null) {
+                try {
+                    store(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            productImageRepository.save(image);
+        });
+        // Déclinaisons générées en arrière-plan, l'upload répond sans les attendre
+        imageVariantService.submit(image.getId(), blob.key());
+        return image.getId();
+    }
+
+    /**
+     * Supprime l'image, réindexe son produit et libère les fichiers qui ne sont plus référencés
+     */
+    public void delete(Long imageId) throws IOException {
+        List<String> keys = transactionTemplate.execute(status -> {
+            List<String> imageKeys = new ArrayList<>();
+            productImageRepository.findFileMetaById(imageId).ifPresent(meta -> {
+                imageKeys.add(meta.getStorageKey());
+                imageKeys.add(meta.getThumbKey());
+                imageKeys.add(meta.getCardKey());
+                imageKeys.add(meta.getFullKey());
+                if (meta.getProductId() != null) {
+                    productChanged(meta.getProductId());
+                }
+            });
+            productImageRepository.deleteById(imageId);
+            return imageKeys;
+        });
+        // Fichiers partagés par contenu : supprimés seulement quand plus aucune image ne les référence,
+        // compté sous le verrou de la clé (un upload concurrent a soit déjà validé sa référence, soit attend)
+        for (String key : new TreeSet<>(keys.stream().filter(Objects::nonNull).toList())) {
+            transactionTemplate.executeWithoutResult(status -> {
+                blobLocks.lock(List.of(key));
+                if (productImageRepository.countReferences(key) == 0) {
+                    try {
+                        imageStore.delete(key);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        }
+    }
+
+    private ImageStore.StoredBlob store(MultipartFile file) throws IOException {
+        try (InputStream content = file.getInputStream()) {
+            return imageStore.store(content);
+        }
+    }
+
+    // Évictions différées après le commit par le gestionnaire de cache transactionnel (CacheConfig)
+    private void productChanged(Long productId) {
+        searchOutbox.enqueueAll(Set.of(productId));
+        Cache detail = cacheManager.getCache(CacheConfig.PRODUCT_DETAIL);
+        if (detail != null) {
+            detail.evict(productId);
+        }
+        Cache listing = cacheManager.getCache(CacheConfig.PRODUCT_LISTING);
+        if (listing != null) {
+            listing.clear();
+        }
+    }
+}
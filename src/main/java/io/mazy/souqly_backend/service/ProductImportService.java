@@ -0,0 +1,165 @@
+package io.mazy.souqly_backend.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.mazy.souqly_backend.config.CacheConfig;
+import io.mazy.souqly_backend.dto.ProductCreateRequest;
+import io.mazy.souqly_backend.dto.ProductImportResult;
+import io.mazy.souqly_backend.entity.Category;
+import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.entity.User;
+import io.mazy.souqly_backend.repository.CategoryRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Import en masse de produits depuis un flux NDJSON (un ProductCreateRequest par ligne) ou un tableau JSON.
+ *
+ * Le flux est lu au fil de l'eau et écrit par lots de souqly.import.chunk-size produits, un lot par transaction :
+ * persist + flush profitent du batching JDBC de Hibernate (ids pré-alloués par séquence, inserts ordonnés),
+ * puis le contexte de persistance est vidé pour que la mémoire reste constante.
+ * Les images sont rattachées par un UPDATE en lot ; l'indexation Elasticsearch passe par search_outbox,
+ * alimentée dans la même transaction par {@link SearchOutboxListener}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+
+    private static final String LINK_IMAGE_SQL =
+        "UPDATE product_images SET product_id = ? WHERE id = ? AND product_id IS NULL";
+
+    private final ObjectMapper objectMapper;
+    private final CategoryRepository categoryRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${souqly.import.chunk-size:500}")
+    private int chunkSize;
+
+    @CacheEvict(value = CacheConfig.PRODUCT_LISTING, allEntries = true)
+    public ProductImportResult importProducts(InputStream input, Long sellerId) throws IOException {
+        ProductImportResult result = new ProductImportResult();
+        Set<Long> categoryIds = new HashSet<>();
+        categoryRepository.findAllEdges().forEach(edge -> categoryIds.add(edge.getId()));
+
+        List<ImportLine> chunk = new ArrayList<>(chunkSize);
+        int line = 0;
+        try (MappingIterator<ProductCreateRequest> requests =
+                 objectMapper.readerFor(ProductCreateRequest.class).readValues(input)) {
+            while (true) {
+                ProductCreateRequest req;
+                try {
+                    if (!requests.hasNextValue()) {
+                        break;
+                    }
+                    req = requests.nextValue();
+                } catch (IOException e) {
+                    // Position perdue dans le flux : on s'arrête, les lots déjà écrits restent acquis
+                    result.setAbortedReason("JSON illisible après la ligne " + line + ": " + e.getMessage());
+                    break;
+                }
+                line++;
+                result.setReceived(result.getReceived() + 1);
+
+                String error = validate(req, categoryIds);
+                if (error != null) {
+                    result.reject(line, error);
+                    continue;
+                }
+                chunk.add(new ImportLine(line, req));
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(chunk, sellerId, result);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, sellerId, result);
+        }
+
+        log.info("Import en masse vendeur {}: {} reçus, {} créés, {} rejetés",
+                 sellerId, result.getReceived(), result.getCreated(), result.getErrors().size());
+        return result;
+    }
+
+    private String validate(ProductCreateRequest req, Set<Long> categoryIds) {
+        if (req == null) {
+            return "Ligne vide";
+        }
+        if (req.title == null || req.title.isBlank() || req.title.length() > 120) {
+            return "Titre obligatoire (120 caractères max)";
+        }
+        if (req.description == null || req.description.isBlank() || req.description.length() > 4000) {
+            return "Description obligatoire (4000 caractères max)";
+        }
+        if (req.price == null || req.price <= 0) {
+            return "Prix invalide";
+        }
+        if (req.condition == null || req.condition.isBlank()) {
+            return "État obligatoire";
+        }
+        if (req.categoryId == null || !categoryIds.contains(req.categoryId)) {
+            return "Catégorie non trouvée";
+        }
+        return null;
+    }
+
+    private void writeChunk(List<ImportLine> chunk, Long sellerId, ProductImportResult result) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                User seller = entityManager.getReference(User.class, sellerId);
+                List<Product> products = new ArrayList<>(chunk.size());
+                List<Object[]> imageLinks = new ArrayList<>();
+                for (ImportLine importLine : chunk) {
+                    ProductCreateRequest req = importLine.request();
+                    Category category = entityManager.getReference(Category.class, req.categoryId);
+                    Product product = ProductService.buildProduct(req, category, seller);
+                    entityManager.persist(product);
+                    products.add(product);
+                }
+                entityManager.flush();
+
+                for (int i = 0; i < products.size(); i++) {
+                    List<Long> imageIds = chunk.get(i).request().imageIds;
+                    if (imageIds != null) {
+                        for (Long imageId : imageIds) {
+                            imageLinks.add(new Object[] { products.get(i).getId(), imageId });
+                        }
+                    }
+                }
+                if (!imageLinks.isEmpty()) {
+                    jdbcTemplate.batchUpdate(LINK_IMAGE_SQL, imageLinks);
+                }
+                entityManager.clear();
+            });
+        } catch (RuntimeException e) {
+            log.error("Import en masse: échec du lot de {} produits: {}", chunk.size(), e.getMessage());
+            for (ImportLine importLine : chunk) {
+                result.reject(importLine.line(), "Échec d'écriture du lot: " + e.getMessage());
+            }
+            return;
+        }
+        result.setCreated(result.getCreated() + chunk.size());
+    }
+
+    private record ImportLine(int line, ProductCreateRequest request) {
+    }
+}
@@ -0,0 +1,202 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.config.CacheConfig;
+import io.mazy.souqly_backend.dto.CursorPage;
+import io.mazy.souqly_backend.dto.PageCursor;
+import io.mazy.souqly_backend.dto.ProductListDTO;
+import io.mazy.souqly_backend.dto.ProductListRow;
+import io.mazy.souqly_backend.dto.ProductListingFilter;
+import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
+import io.mazy.souqly_backend.repository.CategoryRepository;
+import io.mazy.souqly_backend.repository.ProductImageRepository;
+import io.mazy.souqly_backend.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chemin de lecture dédié au listing des produits.
+ *
+ * Une page coûte deux requêtes (plus le count de la pagination) : les lignes projetées
+ * en {@link ProductListRow}, puis les métadonnées d'images de toute la page en un seul lot.
+ * Aucune entité Product n'est hydratée, donc ni images BYTEA, ni arbre de catégories, ni vendeur.
+ * Les filtres du catalogue (catégorie et sous-catégories, prix, état, marque, taille) et le tri
+ * sont appliqués en base via {@link ProductRepository#findListingRows}.
+ * Les premières pages sont servies depuis le cache {@link CacheConfig#PRODUCT_LISTING},
+ * vidé par ProductService à chaque écriture sur un produit.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ProductListingService {
+
+    private final ProductRepository productRepository;
+    private final ProductImageRepository productImageRepository;
+    private final CategoryRepository categoryRepository;
+    private final FavoriteCounter favoriteCounter;
+
+    /**
+     * Page du fil principal (produits actifs et vendus, du plus récent au plus ancien)
+     */
+    @Cacheable(value = CacheConfig.PRODUCT_LISTING,
+               key = "'feed:' + #pageable.pageNumber + ':' + #pageable.pageSize",
+               condition = "#pageable.pageNumber < T(io.mazy.souqly_backend.config.CacheConfig).LISTING_CACHED_PAGES")
+    public Page<ProductListDTO> getActiveAndSoldPage(Pageable pageable) {
+        Page<ProductListRow> rows = productRepository.findActiveAndSoldListingRows(pageable);
+        return new PageImpl<>(toListDTOs(rows.getContent()), pageable, rows.getTotalElements());
+    }
+
+    /**
+     * Page du catalogue filtrée et triée en base. Une catégorie inclut toutes ses sous-catégories.
+     */
+    @Cacheable(value = CacheConfig.PRODUCT_LISTING,
+               key = "'filtered:' + #filter.cacheKey() + ':' + #pageable.pageNumber + ':' + #pageable.pageSize",
+               condition = "#pageable.pageNumber < T(io.mazy.souqly_backend.config.CacheConfig).LISTING_CACHED_PAGES")
+    public Page<ProductListDTO> getFilteredPage(ProductListingFilter filter, Pageable pageable) {
+        Set<Long> categoryIds = filter.getCategoryId() != null ? expandCategory(filter.getCategoryId()) : null;
+        Page<ProductListRow> rows = productRepository.findListingRows(filter, categoryIds, pageable);
+        return new PageImpl<>(toListDTOs(rows.getContent()), pageable, rows.getTotalElements());
+    }
+
+    /**
+     * Identifiants de la catégorie et de toutes ses descendantes, à partir des seules arêtes (id, parent).
+     */
+    Set<Long> expandCategory(Long categoryId) {
+        Map<Long, List<Long>> childrenByParent = new HashMap<>();
+        for (CategoryRepository.CategoryEdge edge : categoryRepository.findAllEdges()) {
+            if (edge.getParentId() != null) {
+                childrenByParent.computeIfAbsent(edge.getParentId(), id -> new ArrayList<>()).add(edge.getId());
+            }
+        }
+
+        Set<Long> subtree = new HashSet<>();
+        Deque<Long> toVisit = new ArrayDeque<>();
+        toVisit.add(categoryId);
+        while (!toVisit.isEmpty()) {
+            Long current = toVisit.poll();
+            // Le Set protège aussi d'un éventuel cycle dans parent_id
+            if (subtree.add(current)) {
+                toVisit.addAll(childrenByParent.getOrDefault(current, List.of()));
+            }
+        }
+        return subtree;
+    }
+
+    /**
+     * Tranche du fil principal paginée par curseur (createdAt, id), sans count(*).
+     * Une ligne de plus que demandé est lue pour savoir s'il existe une suite.
+     */
+    @Cacheable(value = CacheConfig.PRODUCT_LISTING, key = "'feed-slice:' + #size",
+               condition = "#cursor == null || #cursor.isBlank()")
+    public CursorPage<ProductListDTO> getActiveAndSoldSlice(String cursor, int size) {
+        PageCursor position = PageCursor.decode(cursor);
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<ProductListRow> rows = position == null
+            ? productRepository.findActiveAndSoldListingRowsFirst(limit)
+            : productRepository.findActiveAndSoldListingRowsBefore(position.getTimestamp(), position.getId(), limit);
+
+        boolean hasNext = rows.size() > size;
+        String nextCursor = null;
+        if (hasNext) {
+            rows = rows.subList(0, size);
+            ProductListRow last = rows.get(rows.size() - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPage<>(toListDTOs(rows), nextCursor, hasNext, size);
+    }
+
+    /**
+     * Tous les produits d'un vendeur, du plus récent au plus ancien
+     */
+    public List<ProductListDTO> getSellerListing(Long sellerId) {
+        return toListDTOs(productRepository.findListingRowsBySellerId(sellerId));
+    }
+
+    /**
+     * Produits donnés par id (résultats de recherche), dans l'ordre des ids ; les ids disparus de la base sont ignorés
+     */
+    public List<ProductListDTO> getListingByIds(List<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, ProductListRow> rowsById = new HashMap<>();
+        for (ProductListRow row : productRepository.findListingRowsByIds(productIds)) {
+            rowsById.put(row.getId(), row);
+        }
+        List<ProductListRow> ordered = new ArrayList<>(rowsById.size());
+        for (Long productId : productIds) {
+            ProductListRow row = rowsById.get(productId);
+            if (row != null) {
+                ordered.add(row);
+            }
+        }
+        return toListDTOs(ordered);
+    }
+
+    /**
+     * Recherche de secours en base quand Elasticsearch est indisponible : plein texte Postgres (titre, marque,
+     * catégorie), les ids de la page puis les colonnes du listing, dans l'ordre de pertinence
+     */
+    public Page<ProductListDTO> searchFullText(String query, Pageable pageable) {
+        Page<Long> ids = productRepository.searchActiveIdsFullText(query, pageable);
+        return new PageImpl<>(getListingByIds(ids.getContent()), pageable, ids.getTotalElements());
+    }
+
+    /**
+     * Résultats Elasticsearch en DTO, dans l'ordre des hits, sans requête sur products.
+     * Les compteurs de favoris viennent de {@link FavoriteCounter} (le document peut avoir du retard).
+     */
+    public List<ProductListDTO> fromDocuments(List<ProductDocument> documents) {
+        List<Long> productIds = new ArrayList<>(documents.size());
+        for (ProductDocument document : documents) {
+            productIds.add(Long.valueOf(document.getId()));
+        }
+        Map<Long, Long> favoriteCounts = favoriteCounter.counts(productIds);
+        List<ProductListDTO> dtos = new ArrayList<>(documents.size());
+        for (ProductDocument document : documents) {
+            long favorites = favoriteCounts.getOrDefault(Long.valueOf(document.getId()), 0L);
+            dtos.add(new ProductListDTO(document, (int) favorites));
+        }
+        return dtos;
+    }
+
+    /**
+     * Convertit des lignes projetées en DTO en chargeant les images de toutes les lignes en une requête.
+     * L'ordre des lignes est conservé.
+     */
+    public List<ProductListDTO> toListDTOs(List<ProductListRow> rows) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> productIds = new ArrayList<>(rows.size());
+        for (ProductListRow row : rows) {
+            productIds.add(row.getId());
+        }
+
+        Map<Long, List<ProductListDTO.ImageMeta>> imagesByProduct = new HashMap<>();
+        for (ProductImageRepository.ProductImageMeta meta : productImageRepository.findMetaByProductIdIn(productIds)) {
+            imagesByProduct.computeIfAbsent(meta.getProductId(), id -> new ArrayList<>())
+                .add(new ProductListDTO.ImageMeta(meta.getId(), meta.getFileName(), meta.getContentType()));
+        }
+
+        List<ProductListDTO> dtos = new ArrayList<>(rows.size());
+        for (ProductListRow row : rows) {
+            dtos.add(new ProductListDTO(row, imagesByProduct.getOrDefault(row.getId(), new ArrayList<>())));
+        }
+        return dtos;
+    }
+}
@@ -0,0 +1,485 @@
+package io.mazy.souqly_backend.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.UpdateAliasesRequest;
+import io.mazy.souqly_backend.dto.ProductIndexRow;
+import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
+import io.mazy.souqly_backend.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHitsIterator;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilterBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Réindexation complète du catalogue dans un nouvel index versionné (products_v&lt;horodatage&gt;),
+ * puis bascule atomique de l'alias "products" lu par la recherche.
+ *
+ * Les produits sont lus par tranches d'id croissants (projection, sans entités), convertis sur un pool fork-join
+ * dédié et envoyés en bulk avec au plus souqly.search.reindex.concurrency requêtes en vol.
+ * Le dernier id dont tout le préfixe est indexé est enregistré dans search_reindex_jobs après chaque bulk :
+ * un job interrompu (crash, redémarrage) reprend là où il s'était arrêté, dans le même index.
+ *
+ * Pendant la copie, le relais écrit dans l'alias, donc dans l'ancien index. Les produits créés ou modifiés
+ * depuis le début du job (created_at / updated_at, ou products.search_version au-delà de la valeur de séquence
+ * relevée au démarrage) sont rejoués deux fois : avant la bascule, pour ne pas publier un index en retard,
+ * puis juste après, pour les modifications relayées vers l'ancien index entre ce rattrapage et la bascule.
+ * Les écritures portent la version externe du document : rejouer un produit déjà à jour est sans effet.
+ * Les suppressions, elles, ne laissent pas de ligne à rejouer : après la bascule, les ids du nouvel index sont
+ * comparés à la table products et les absents supprimés en bulk ; les suppressions postérieures passent par
+ * le relais, qui écrit alors dans le nouvel index.
+ */
+@Slf4j
+@Service
+public class ProductReindexer {
+
+    public static final String ALIAS = "products";
+    private static final String INDEX_PREFIX = "products_v";
+    private static final DateTimeFormatter INDEX_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    // Marge sur le début du job pour le rattrapage (horloges base / application)
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(1);
+
+    private static final String CREATE_JOB_SQL =
+        "INSERT INTO search_reindex_jobs (index_name, status, last_product_id, indexed_count, total_count, " +
+        "start_version, started_at, updated_at) VALUES (?, 'RUNNING', 0, 0, ?, ?, ?, ?) RETURNING id";
+
+    // Consomme une valeur : toute modification ultérieure reçoit une version supérieure
+    private static final String NEXT_VERSION_SQL =
+        "SELECT nextval(pg_get_serial_sequence('search_outbox', 'id'))";
+
+    private static final String RESUME_JOB_SQL =
+        "UPDATE search_reindex_jobs SET status = 'RUNNING', error = NULL, updated_at = ? WHERE id = ?";
+
+    private static final String CHECKPOINT_SQL =
+        "UPDATE search_reindex_jobs SET last_product_id = ?, indexed_count = ?, updated_at = ? WHERE id = ?";
+
+    private static final String FINISH_JOB_SQL =
+        "UPDATE search_reindex_jobs SET status = ?, error = ?, finished_at = ?, updated_at = ? WHERE id = ?";
+
+    private static final String UNFINISHED_JOB_SQL =
+        "SELECT * FROM search_reindex_jobs WHERE status IN ('RUNNING', 'FAILED') ORDER BY id DESC LIMIT 1";
+
+    private static final String LATEST_JOB_SQL =
+        "SELECT * FROM search_reindex_jobs ORDER BY id DESC LIMIT 1";
+
+    private static final RowMapper<ReindexJob> JOB_MAPPER = (rs, rowNum) -> new ReindexJob(
+        rs.getLong("id"),
+        rs.getString("index_name"),
+        rs.getString("status"),
+        rs.getLong("last_product_id"),
+        rs.getLong("indexed_count"),
+        rs.getLong("total_count"),
+        rs.getLong("start_version"),
+        toLocalDateTime(rs.getTimestamp("started_at")),
+        toLocalDateTime(rs.getTimestamp("finished_at")),
+        rs.getString("error"));
+
+    private final ProductRepository productRepository;
+    private final ElasticsearchService elasticsearchService;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchClient elasticsearchClient;
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService jobExecutor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Value("${souqly.search.reindex.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${souqly.search.reindex.concurrency:4}")
+    private int concurrency;
+
+    @Value("${souqly.search.reindex.conversion-threads:2}")
+    private int conversionThreads;
+
+    @Value("${souqly.search.reindex.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+
+    // Avancement du job en cours, pour le calcul du débit
+    private volatile long runStartNanos;
+    private volatile long runIndexed;
+
+    public ProductReindexer(ProductRepository productRepository, ElasticsearchService elasticsearchService,
+                            ElasticsearchOperations elasticsearchOperations, ElasticsearchClient elasticsearchClient,
+                            JdbcTemplate jdbcTemplate) {
+        this.productRepository = productRepository;
+        this.elasticsearchService = elasticsearchService;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.elasticsearchClient = elasticsearchClient;
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-reindex");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Lance (ou reprend) la réindexation en arrière-plan. Retourne false si un job tourne déjà.
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        jobExecutor.execute(this::runExclusive);
+        return true;
+    }
+
+    /**
+     * Réindexation synchrone, pour /api/search/sync
+     */
+    public void reindex() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Une réindexation est déjà en cours");
+        }
+        try {
+            run();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Reprend au démarrage un job resté RUNNING (arrêt brutal pendant la réindexation)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        if (!resumeOnStartup) {
+            return;
+        }
+        try {
+            Optional<ReindexJob> job = findJob(UNFINISHED_JOB_SQL);
+            if (job.isPresent() && "RUNNING".equals(job.get().status())) {
+                log.info("Réindexation {} interrompue, reprise après le produit {}",
+                         job.get().indexName(), job.get().lastProductId());
+                start();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Impossible de vérifier les réindexations interrompues: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * État du dernier job : avancement, débit du passage en cours, erreur éventuelle
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        findJob(LATEST_JOB_SQL).ifPresent(job -> {
+            status.put("jobId", job.id());
+            status.put("index", job.indexName());
+            status.put("status", job.status());
+            status.put("lastProductId", job.lastProductId());
+            status.put("indexed", job.indexedCount());
+            status.put("total", job.totalCount());
+            status.put("startedAt", job.startedAt());
+            status.put("finishedAt", job.finishedAt());
+            status.put("error", job.error());
+        });
+        if (running.get() && runStartNanos > 0) {
+            double seconds = (System.nanoTime() - runStartNanos) / 1_000_000_000.0;
+            status.put("docsPerSecond", seconds > 0 ? Math.round(runIndexed / seconds) : 0);
+        }
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Le checkpoint est en base : un arrêt en plein job sera repris au prochain démarrage
+        jobExecutor.shutdownNow();
+    }
+
+    private void runExclusive() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            // Déjà consigné dans search_reindex_jobs par run()
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void run() {
+        ReindexJob job = findJob(UNFINISHED_JOB_SQL)
+            .filter(unfinished -> elasticsearchOperations.indexOps(IndexCoordinates.of(unfinished.indexName())).exists())
+            .map(this::resumeJob)
+            .orElseGet(this::createJob);
+        IndexCoordinates target = IndexCoordinates.of(job.indexName());
+        runStartNanos = System.nanoTime();
+        runIndexed = 0;
+
+        ForkJoinPool conversionPool = new ForkJoinPool(conversionThreads);
+        AtomicInteger bulkThreadCount = new AtomicInteger();
+        ExecutorService bulkPool = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "search-reindex-bulk-" + bulkThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            long indexed = copyAll(job, target, conversionPool, bulkPool);
+            long caughtUp = catchUp(job, target, conversionPool);
+            putRefreshInterval(job.indexName(), "1s");
+            elasticsearchOperations.indexOps(target).refresh();
+            Set<String> previous = swapAlias(job.indexName());
+            // Modifications relayées vers l'ancien index entre le rattrapage et la bascule
+            caughtUp += catchUp(job, target, conversionPool);
+            long purged = purgeDeleted(target);
+            finishJob(job.id(), "DONE", null);
+            log.info("Réindexation {} terminée: {} produits, {} rattrapés, {} supprimés, alias basculé",
+                     job.indexName(), indexed, caughtUp, purged);
+            deletePrevious(previous);
+        } catch (RuntimeException e) {
+            log.error("Réindexation {} échouée: {}", job.indexName(), e.getMessage(), e);
+            finishJob(job.id(), "FAILED", e.getMessage());
+            throw e;
+        } finally {
+            bulkPool.shutdownNow();
+            conversionPool.shutdownNow();
+        }
+    }
+
+    // Copie principale. Les bulks sont acquittés dans l'ordre : le checkpoint ne dépasse jamais un trou
+    private long copyAll(ReindexJob job, IndexCoordinates target, ForkJoinPool conversionPool,
+                         ExecutorService bulkPool) {
+        long indexed = job.indexedCount();
+        long afterId = job.lastProductId();
+        Deque<PendingBulk> inFlight = new ArrayDeque<>();
+        while (true) {
+            List<ProductIndexRow> rows = productRepository.findIndexRowsAfter(afterId, PageRequest.of(0, chunkSize));
+            if (rows.isEmpty()) {
+                break;
+            }
+            afterId = rows.get(rows.size() - 1).getId();
+            List<ElasticsearchService.VersionedWrite> documents = convert(rows, conversionPool);
+
+            while (inFlight.size() >= concurrency || (!inFlight.isEmpty() && inFlight.peekFirst().result().isDone())) {
+                indexed = acknowledge(job.id(), inFlight.removeFirst(), indexed);
+            }
+            inFlight.addLast(new PendingBulk(afterId, documents.size(),
+                bulkPool.submit(() -> bulkIndex(documents, target))));
+        }
+        while (!inFlight.isEmpty()) {
+            indexed = acknowledge(job.id(), inFlight.removeFirst(), indexed);
+        }
+        return indexed;
+    }
+
+    // Produits créés ou modifiés pendant la copie (ou depuis le premier démarrage d'un job repris)
+    private long catchUp(ReindexJob job, IndexCoordinates target, ForkJoinPool conversionPool) {
+        LocalDateTime since = job.startedAt().minus(CATCH_UP_MARGIN);
+        long caughtUp = 0;
+        long afterId = 0;
+        while (true) {
+            List<ProductIndexRow> rows = productRepository.findIndexRowsModifiedSince(since, job.startVersion(),
+                afterId, PageRequest.of(0, chunkSize));
+            if (rows.isEmpty()) {
+                return caughtUp;
+            }
+            afterId = rows.get(rows.size() - 1).getId();
+            bulkIndex(convert(rows, conversionPool), target);
+            caughtUp += rows.size();
+        }
+    }
+
+    // Produits supprimés de la base depuis leur copie : à appeler après la bascule (voir l'en-tête)
+    private long purgeDeleted(IndexCoordinates target) {
+        NativeQuery query = NativeQuery.builder()
+            .withQuery(q -> q.matchAll(m -> m))
+            .withSourceFilter(new FetchSourceFilterBuilder().withIncludes("id").build())
+            .withPageable(PageRequest.of(0, chunkSize))
+            .build();
+        // Version supérieure à celle de tout document déjà écrit : la suppression l'emporte
+        long version = jdbcTemplate.queryForObject(NEXT_VERSION_SQL, Long.class);
+        long purged = 0;
+        try (SearchHitsIterator<ProductDocument> hits =
+                 elasticsearchOperations.searchForStream(query, ProductDocument.class, target)) {
+            List<Long> ids = new ArrayList<>(chunkSize);
+            while (hits.hasNext()) {
+                ids.add(Long.valueOf(hits.next().getId()));
+                if (ids.size() == chunkSize || !hits.hasNext()) {
+                    Set<Long> existing = new HashSet<>(productRepository.findExistingIds(ids));
+                    List<ElasticsearchService.VersionedWrite> deletes = new ArrayList<>();
+                    for (Long id : ids) {
+                        if (!existing.contains(id)) {
+                            deletes.add(new ElasticsearchService.VersionedWrite(id.toString(), version, null));
+                        }
+                    }
+                    bulkIndex(deletes, target);
+                    purged += deletes.size();
+                    ids.clear();
+                }
+            }
+        }
+        return purged;
+    }
+
+    // Documents avec leur version externe, comme ceux du relais : un état plus ancien n'écrase jamais un plus récent
+    private List<ElasticsearchService.VersionedWrite> convert(List<ProductIndexRow> rows,
+                                                              ForkJoinPool conversionPool) {
+        ElasticsearchService.RowRelations relations = elasticsearchService.loadRelations(rows);
+        try {
+            return conversionPool.submit(() -> rows.parallelStream()
+                .map(row -> new ElasticsearchService.VersionedWrite(row.getId().toString(), row.getSearchVersion(),
+                    elasticsearchService.toDocument(row, relations)))
+                .toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Réindexation interrompue", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Conversion des documents échouée", e.getCause());
+        }
+    }
+
+    private Void bulkIndex(List<ElasticsearchService.VersionedWrite> documents, IndexCoordinates target) {
+        Map<String, String> rejected = elasticsearchService.writeVersioned(target, documents, false);
+        if (!rejected.isEmpty()) {
+            Map.Entry<String, String> first = rejected.entrySet().iterator().next();
+            throw new IllegalStateException(rejected.size() + " documents refusés, dont " + first.getKey() + ": "
+                + first.getValue());
+        }
+        return null;
+    }
+
+    private long acknowledge(long jobId, PendingBulk bulk, long indexed) {
+        try {
+            bulk.result().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Réindexation interrompue", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Bulk Elasticsearch échoué", e.getCause());
+        }
+        long total = indexed + bulk.size();
+        runIndexed += bulk.size();
+        jdbcTemplate.update(CHECKPOINT_SQL, bulk.lastProductId(), total, Timestamp.valueOf(LocalDateTime.now()), jobId);
+        return total;
+    }
+
+    private ReindexJob createJob() {
+        String indexName = INDEX_PREFIX + LocalDateTime.now().format(INDEX_SUFFIX);
+        IndexOperations template = elasticsearchOperations.indexOps(ProductDocument.class);
+        Settings settings = template.createSettings();
+        elasticsearchOperations.indexOps(IndexCoordinates.of(indexName)).create(settings, template.createMapping());
+        // Pas de refresh pendant le chargement, rétabli avant la bascule
+        putRefreshInterval(indexName, "-1");
+
+        long total = productRepository.count();
+        long startVersion = jdbcTemplate.queryForObject(NEXT_VERSION_SQL, Long.class);
+        LocalDateTime now = LocalDateTime.now();
+        Long id = jdbcTemplate.queryForObject(CREATE_JOB_SQL, Long.class, indexName, total, startVersion,
+            Timestamp.valueOf(now), Timestamp.valueOf(now));
+        log.info("Réindexation {} démarrée: {} produits", indexName, total);
+        return new ReindexJob(id, indexName, "RUNNING", 0, 0, total, startVersion, now, null, null);
+    }
+
+    private ReindexJob resumeJob(ReindexJob job) {
+        jdbcTemplate.update(RESUME_JOB_SQL, Timestamp.valueOf(LocalDateTime.now()), job.id());
+        log.info("Reprise de la réindexation {} après le produit {} ({} déjà indexés)",
+                 job.indexName(), job.lastProductId(), job.indexedCount());
+        return job;
+    }
+
+    private void finishJob(long jobId, String status, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update(FINISH_JOB_SQL, status, error,
+            "DONE".equals(status) ? Timestamp.valueOf(now) : null, Timestamp.valueOf(now), jobId);
+    }
+
+    /**
+     * Bascule atomique : l'alias quitte les anciens index et rejoint le nouveau en une seule requête.
+     * Un ancien index concret nommé "products" (avant l'introduction des alias) est supprimé dans la même action.
+     */
+    private Set<String> swapAlias(String indexName) {
+        try {
+            Set<String> previous = elasticsearchClient.indices().existsAlias(e -> e.name(ALIAS)).value()
+                ? Set.copyOf(elasticsearchClient.indices().getAlias(g -> g.name(ALIAS)).result().keySet())
+                : Set.of();
+            boolean concreteIndex = previous.isEmpty()
+                && elasticsearchClient.indices().exists(e -> e.index(ALIAS)).value();
+
+            UpdateAliasesRequest.Builder request = new UpdateAliasesRequest.Builder();
+            request.actions(action -> action.add(add -> add.index(indexName).alias(ALIAS)));
+            for (String oldIndex : previous) {
+                if (!oldIndex.equals(indexName)) {
+                    request.actions(action -> action.remove(remove -> remove.index(oldIndex).alias(ALIAS)));
+                }
+            }
+            if (concreteIndex) {
+                request.actions(action -> action.removeIndex(remove -> remove.index(ALIAS)));
+            }
+            elasticsearchClient.indices().updateAliases(request.build());
+            return previous;
+        } catch (IOException e) {
+            throw new IllegalStateException("Bascule de l'alias " + ALIAS + " échouée", e);
+        }
+    }
+
+    private void deletePrevious(Set<String> previous) {
+        for (String oldIndex : previous) {
+            if (oldIndex.startsWith(INDEX_PREFIX)) {
+                try {
+                    elasticsearchClient.indices().delete(d -> d.index(oldIndex));
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Ancien index {} non supprimé: {}", oldIndex, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void putRefreshInterval(String indexName, String interval) {
+        try {
+            elasticsearchClient.indices().putSettings(p -> p.index(indexName)
+                .settings(s -> s.refreshInterval(t -> t.time(interval))));
+        } catch (IOException e) {
+            throw new IllegalStateException("Réglage de l'index " + indexName + " échoué", e);
+        }
+    }
+
+    private Optional<ReindexJob> findJob(String sql) {
+        return jdbcTemplate.query(sql, JOB_MAPPER).stream().findFirst();
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private record PendingBulk(long lastProductId, int size, Future<Void> result) {
+    }
+
+    private record ReindexJob(long id, String indexName, String status, long lastProductId, long indexedCount,
+                              long totalCount, long startVersion, LocalDateTime startedAt, LocalDateTime finishedAt, String error) {
+    }
+}
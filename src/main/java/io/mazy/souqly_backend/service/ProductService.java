@@ -1,18 +1,21 @@
 package io.mazy.souqly_backend.service;
 
 import io.mazy.souqly_backend.dto.ProductCreateRequest;
+import io.mazy.souqly_backend.dto.ProductDetailDTO;
 import io.mazy.souqly_backend.entity.Category;
 import io.mazy.souqly_backend.entity.Product;
 import io.mazy.souqly_backend.entity.ProductImage;
 import io.mazy.souqly_backend.entity.User;
-import io.mazy.souqly_backend.entity.ProductView;
 import io.mazy.souqly_backend.repository.CategoryRepository;
 import io.mazy.souqly_backend.repository.ProductImageRepository;
 import io.mazy.souqly_backend.repository.ProductRepository;
 import io.mazy.souqly_backend.repository.UserRepository;
+import io.mazy.souqly_backend.config.CacheConfig;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
@@ -23,11 +26,15 @@ import java.util.List;
 import java.util.Optional;
 import java.util.ArrayList;
 import io.mazy.souqly_backend.dto.ProductListDTO;
+import io.mazy.souqly_backend.dto.ProductListingFilter;
 import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
 import java.util.stream.Collectors;
 import org.springframework.data.domain.PageImpl;
-import io.mazy.souqly_backend.repository.ProductViewRepository;
 import io.mazy.souqly_backend.dto.ProductMyProductsDTO;
+import io.mazy.souqly_backend.dto.CursorPage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 
 @Service
 public class ProductService {
@@ -47,7 +54,23 @@ public class ProductService {
     private ElasticsearchService elasticsearchService;
     
     @Autowired
-    private ProductViewRepository productViewRepository;
+    private ViewCountBuffer viewCountBuffer;
+
+    @Autowired
+    private ProductListingService productListingService;
+
+    @Autowired
+    private SellerProductService sellerProductService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SuggestionService suggestionService;
+
+    // "document" : listing de recherche servi depuis Elasticsearch ; "database" : réhydraté en base (comparaison)
+    @Value("${souqly.search.hydration:document}")
+    private String searchHydration;
 
     public List<Product> findProductsByImage(MultipartFile image) {
         // TODO: Logique de similarité d'image
@@ -55,6 +78,7 @@ public class ProductService {
         return productRepository.findByIsActiveTrue();
     }
 
+    @CacheEvict(value = CacheConfig.PRODUCT_LISTING, allEntries = true)
     @Transactional
     public Product createProduct(ProductCreateRequest req, Long sellerId) {
         Category category = categoryRepository.findById(req.categoryId)
@@ -62,6 +86,24 @@ public class ProductService {
         User seller = userRepository.findById(sellerId)
             .orElseThrow(() -> new IllegalArgumentException("Vendeur non trouvé"));
 
+        Product product = productRepository.save(buildProduct(req, category, seller));
+
+        // Associer les images au produit
+        if (req.imageIds != null && !req.imageIds.isEmpty()) {
+            List<ProductImage> images = productImageRepository.findAllById(req.imageIds);
+            for (ProductImage image : images) {
+                image.setProduct(product);
+                productImageRepository.save(image);
+            }
+        }
+
+        return product;
+    }
+
+    /**
+     * Nouveau produit actif à partir d'une demande de création (partagé avec l'import en masse)
+     */
+    static Product buildProduct(ProductCreateRequest req, Category category, User seller) {
         Product product = new Product();
         product.setTitle(req.title);
         product.setDescription(req.description);
@@ -75,192 +117,127 @@ public class ProductService {
         product.setCategory(category);
         product.setSeller(seller);
         product.setStatus(Product.ProductStatus.ACTIVE);
-
-        product = productRepository.save(product);
-
-        // Associer les images au produit
-        if (req.imageIds != null && !req.imageIds.isEmpty()) {
-            List<ProductImage> images = productImageRepository.findAllById(req.imageIds);
-            for (ProductImage image : images) {
-                image.setProduct(product);
-                productImageRepository.save(image);
-            }
-        }
-
         return product;
     }
 
-
-
-    public Page<Product> getProductsForListing(Pageable pageable, Long categoryId, Double minPrice, 
+    public Page<ProductListDTO> getProductsForListing(Pageable pageable, Long categoryId, Double minPrice, 
                                              Double maxPrice, String condition, String brand, 
                                              String size, String search, String sortBy, String sortOrder) {
         System.out.println("[ProductService] Recherche search = '" + search + "'");
+        ProductListingFilter filter = new ProductListingFilter(categoryId, minPrice, maxPrice, condition,
+                                                               brand, size, sortBy, sortOrder);
         
         // Utiliser Elasticsearch pour la recherche
         try {
             if (search != null && !search.trim().isEmpty()) {
                 System.out.println("[ProductService] Utilisation d'Elasticsearch pour la recherche !");
-                // Recherche avec Elasticsearch
-                Page<ProductDocument> elasticResults = elasticsearchService.searchProducts(search.trim(), pageable);
-                
-                // Convertir les ProductDocument en Product
-                List<Long> productIds = elasticResults.getContent().stream()
-                    .map(doc -> Long.parseLong(doc.getId()))
-                    .collect(Collectors.toList());
-                
-                if (!productIds.isEmpty()) {
-                    List<Product> products = productRepository.findAllById(productIds);
-                    
-                    // Créer une Page<Product> avec les résultats d'Elasticsearch
-                    return new PageImpl<>(products, pageable, elasticResults.getTotalElements());
-                } else {
-                    return new PageImpl<>(new ArrayList<>(), pageable, 0);
-                }
+                return searchListing(search.trim(), pageable);
             } else {
                 System.out.println("[ProductService] Recherche sans filtre textuel - utilisation de la base de données.");
-                return productRepository.findActiveAndSoldProducts(pageable);
+                return getFilteredListing(pageable, filter);
             }
         } catch (Exception e) {
             System.out.println("[ProductService] Erreur Elasticsearch, fallback vers la recherche basique: " + e.getMessage());
-            // Fallback vers la recherche basique
+            // Fallback vers la recherche plein texte Postgres (index GIN, pas de LIKE séquentiel)
             if (search != null && !search.trim().isEmpty()) {
-                return productRepository.findByIsActiveAndTitleContainingIgnoreCase(true, search.trim(), pageable);
+                return productListingService.searchFullText(search.trim(), pageable);
             } else {
-                return productRepository.findActiveAndSoldProducts(pageable);
+                return getFilteredListing(pageable, filter);
             }
         }
     }
 
-    public Optional<Product> getProduct(Long id) {
-        return productRepository.findByIdWithImages(id);
-    }
-
-    public List<Product> getProductsBySeller(Long sellerId) {
-        List<Product> products = productRepository.findBySellerId(sellerId);
-        
-        // Charger explicitement les relations lazy pour éviter les erreurs de sérialisation
-        for (Product product : products) {
-            // Forcer le chargement de la catégorie
-            if (product.getCategory() != null) {
-                product.getCategory().getId();
-                // Charger les sous-catégories si elles existent
-                if (product.getCategory().getChildren() != null) {
-                    product.getCategory().getChildren().size();
-                }
-            }
-            // Forcer le chargement du vendeur
-            if (product.getSeller() != null) {
-                product.getSeller().getId();
+    /**
+     * Page de résultats Elasticsearch, dans l'ordre de pertinence.
+     * Mesurée par le timer search.listing (tag hydration) pour comparer les deux modes.
+     */
+    private Page<ProductListDTO> searchListing(String query, Pageable pageable) {
+        boolean fromDatabase = "database".equalsIgnoreCase(searchHydration);
+        if (pageable.getPageNumber() == 0) {
+            suggestionService.recordQuery(query);
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            if (fromDatabase) {
+                // Ids seuls (depuis le cache de résultats si possible), colonnes du listing lues en base
+                SearchResultCache.ResultIds hits = elasticsearchService.searchProductIds(query, pageable);
+                List<Long> productIds = hits.ids().stream()
+                    .map(Long::parseLong)
+                    .collect(Collectors.toList());
+                return new PageImpl<>(productListingService.getListingByIds(productIds), pageable, hits.total());
             }
-            // Charger les images
-            product.setImages(productImageRepository.findByProductId(product.getId()));
+            Page<ProductDocument> hits = elasticsearchService.searchProducts(query, pageable);
+            List<ProductListDTO> products = productListingService.fromDocuments(hits.getContent());
+            return new PageImpl<>(products, pageable, hits.getTotalElements());
+        } finally {
+            sample.stop(Timer.builder("search.listing")
+                .description("Recherche de produits, de la requête Elasticsearch aux DTO")
+                .tag("hydration", fromDatabase ? "database" : "document")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry));
         }
-        
-        return products;
     }
 
-    public List<Product> getProductsBySellerAndStatus(Long sellerId, String status) {
-        System.out.println("[ProductService] getProductsBySellerAndStatus appelé - sellerId: " + sellerId + ", status: " + status);
-        
-        List<Product> products;
-        
-        if (status == null || status.isEmpty()) {
-            System.out.println("[ProductService] Aucun statut spécifié, retour de tous les produits");
-            products = productRepository.findBySellerId(sellerId);
-        } else {
-            try {
-                // Gérer le cas spécial TERMINATED
-                if ("TERMINATED".equals(status.toUpperCase())) {
-                    System.out.println("[ProductService] Récupération des produits terminés (INACTIVE, SOLD, DELETED)");
-                    products = productRepository.findBySellerIdAndTerminatedStatus(sellerId);
-                } else {
-                    Product.ProductStatus productStatus = Product.ProductStatus.valueOf(status.toUpperCase());
-                    System.out.println("[ProductService] Statut valide: " + productStatus);
-                    products = productRepository.findBySellerIdAndStatus(sellerId, productStatus);
-                }
-            } catch (IllegalArgumentException e) {
-                System.out.println("[ProductService] Statut invalide: " + status + ", retour de tous les produits");
-                // Si le statut n'est pas valide, retourner tous les produits du vendeur
-                products = productRepository.findBySellerId(sellerId);
-            }
+    private Page<ProductListDTO> getFilteredListing(Pageable pageable, ProductListingFilter filter) {
+        if (filter.isUnfiltered()) {
+            return productListingService.getActiveAndSoldPage(pageable);
         }
-        
-        System.out.println("[ProductService] Produits trouvés: " + products.size());
-        
-        // Charger explicitement les relations lazy pour éviter les erreurs de sérialisation
-        for (Product product : products) {
-            // Forcer le chargement de la catégorie
-            if (product.getCategory() != null) {
-                product.getCategory().getId();
-                // Charger les sous-catégories si elles existent
-                if (product.getCategory().getChildren() != null) {
-                    product.getCategory().getChildren().size();
-                }
-            }
-            // Forcer le chargement du vendeur
-            if (product.getSeller() != null) {
-                product.getSeller().getId();
-            }
-            // Charger les images
-            product.setImages(productImageRepository.findByProductId(product.getId()));
-        }
-        
-        return products;
+        return productListingService.getFilteredPage(filter, pageable);
     }
 
-    private void initializeCategoryChildren(io.mazy.souqly_backend.entity.Category category) {
-        if (category != null && category.getChildren() != null) {
-            // Force le chargement de la liste des enfants
-            category.getChildren().size();
-            
-            // Force le chargement de chaque enfant et de ses propres enfants
-            for (io.mazy.souqly_backend.entity.Category child : category.getChildren()) {
-                // Force le chargement de tous les champs de l'enfant
-                child.getId();
-                child.getKey();
-                child.getLabel();
-                child.getIconName();
-                child.getBadgeText();
-                child.isActive();
-                child.getSortOrder();
-                
-                // Force le chargement récursif des enfants de cet enfant
-                initializeCategoryChildren(child);
-            }
-        }
+    /**
+     * Détail d'un produit, mis en cache sous forme de DTO immuable : les lecteurs concurrents partagent
+     * la même instance sans risque de la modifier. Les collections lazy sont copiées dans la session.
+     */
+    @Cacheable(value = CacheConfig.PRODUCT_DETAIL, key = "#id", unless = "#result == null")
+    @Transactional(readOnly = true)
+    public Optional<ProductDetailDTO> getProductDetail(Long id) {
+        return productRepository.findByIdWithImages(id).map(ProductDetailDTO::from);
+    }
+
+    /**
+     * Entité produit, hors cache, pour les appelants qui la rattachent à une autre entité (boost, interaction)
+     */
+    public Optional<Product> getProduct(Long id) {
+        return productRepository.findById(id);
+    }
+
+    /**
+     * Vitrine publique d'un vendeur (tous statuts), au format du listing
+     */
+    public List<ProductListDTO> getProductsBySeller(Long sellerId) {
+        return productListingService.getSellerListing(sellerId);
     }
 
     public List<ProductMyProductsDTO> getProductsBySellerAndStatusDTO(Long sellerId, String status) {
-        System.out.println("[ProductService] getProductsBySellerAndStatusDTO ENTRÉE - sellerId: " + sellerId + ", status: " + status);
-        List<Product> products = getProductsBySellerAndStatus(sellerId, status);
-        List<ProductMyProductsDTO> dtos = new ArrayList<>();
-        System.out.println("[ProductService] getProductsBySellerAndStatusDTO - Nombre de produits: " + products.size());
-        
-        for (Product product : products) {
-            System.out.println("[ProductService] Traitement du produit ID: " + product.getId() + ", Title: " + product.getTitle());
-            if (product.getCategory() != null) {
-                initializeCategoryChildren(product.getCategory());
-            }
-            ProductMyProductsDTO dto = new ProductMyProductsDTO(product);
-            System.out.println("[ProductService] DTO créé - ID: " + dto.getId() + ", Title: " + dto.getTitle());
-            dtos.add(dto);
+        return sellerProductService.getSellerProducts(sellerId, resolveSellerStatuses(status));
+    }
+
+    /**
+     * Variante paginée par curseur (createdAt, id) de getProductsBySellerAndStatusDTO, sans count(*)
+     */
+    public CursorPage<ProductMyProductsDTO> getProductsBySellerAndStatusDTO(Long sellerId, String status,
+                                                                           String cursor, int size) {
+        return sellerProductService.getSellerProductsSlice(sellerId, resolveSellerStatuses(status), cursor, size);
+    }
+
+    // Statut absent ou invalide = tous ; TERMINATED = INACTIVE, SOLD et DELETED
+    private List<Product.ProductStatus> resolveSellerStatuses(String status) {
+        if (status == null || status.isEmpty()) {
+            return List.of(Product.ProductStatus.values());
+        }
+        if ("TERMINATED".equals(status.toUpperCase())) {
+            return List.of(Product.ProductStatus.INACTIVE, Product.ProductStatus.SOLD, Product.ProductStatus.DELETED);
+        }
+        try {
+            return List.of(Product.ProductStatus.valueOf(status.toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            return List.of(Product.ProductStatus.values());
         }
-        
-        System.out.println("[ProductService] Nombre de DTOs créés: " + dtos.size());
-        return dtos;
     }
 
     public List<ProductMyProductsDTO> getProductsBySellerDTO(Long sellerId) {
-        List<Product> products = getProductsBySeller(sellerId);
-        List<ProductMyProductsDTO> dtos = new ArrayList<>();
-        for (Product product : products) {
-            if (product.getCategory() != null) {
-                initializeCategoryChildren(product.getCategory());
-            }
-            dtos.add(new ProductMyProductsDTO(product));
-        }
-        return dtos;
+        return sellerProductService.getSellerProducts(sellerId, List.of(Product.ProductStatus.values()));
     }
 
     public List<Product> getFavoriteProducts(Long userId) {
@@ -272,12 +249,20 @@ public class ProductService {
     /**
      * Vide le cache et force le rechargement des données
      */
+    @Caching(evict = {
+        @CacheEvict(value = CacheConfig.PRODUCT_DETAIL, allEntries = true),
+        @CacheEvict(value = CacheConfig.PRODUCT_LISTING, allEntries = true)
+    })
     public void clearCache() {
         // Éviter le cache Hibernate pour forcer le rechargement depuis la base
         productRepository.flush();
         System.out.println("[ProductService] Cache vidé - données rechargées depuis la base");
     }
 
+    @Caching(evict = {
+        @CacheEvict(value = CacheConfig.PRODUCT_DETAIL, key = "#productId"),
+        @CacheEvict(value = CacheConfig.PRODUCT_LISTING, allEntries = true)
+    })
     @Transactional
     public void deleteProduct(Long productId, Long sellerId) {
         Product product = productRepository.findById(productId)
@@ -290,6 +275,10 @@ public class ProductService {
         productRepository.delete(product);
     }
 
+    @Caching(evict = {
+        @CacheEvict(value = CacheConfig.PRODUCT_DETAIL, key = "#productId"),
+        @CacheEvict(value = CacheConfig.PRODUCT_LISTING, allEntries = true)
+    })
     @Transactional
     public Product updateProduct(Long productId, ProductCreateRequest req, Long sellerId) {
         Product product = productRepository.findById(productId)
@@ -328,6 +317,10 @@ public class ProductService {
         productRepository.save(product);
     }
 
+    @Caching(evict = {
+        @CacheEvict(value = CacheConfig.PRODUCT_DETAIL, key = "#productId"),
+        @CacheEvict(value = CacheConfig.PRODUCT_LISTING, allEntries = true)
+    })
     @Transactional
     public Product toggleProductStatus(Long productId, Long sellerId) {
         Product product = productRepository.findById(productId)
@@ -349,6 +342,10 @@ public class ProductService {
         return productRepository.save(product);
     }
 
+    @Caching(evict = {
+        @CacheEvict(value = CacheConfig.PRODUCT_DETAIL, key = "#productId"),
+        @CacheEvict(value = CacheConfig.PRODUCT_LISTING, allEntries = true)
+    })
     @Transactional
     public Product updateProductStatus(Long productId, String status, Long sellerId) {
         Product product = productRepository.findById(productId)
@@ -377,29 +374,25 @@ public class ProductService {
         }
     }
 
+    public CursorPage<ProductListDTO> getProductsForListingSlice(String cursor, int size) {
+        return productListingService.getActiveAndSoldSlice(cursor, size);
+    }
+
     public Page<ProductListDTO> getProductsForListingCacheable(Pageable pageable) {
-        Page<Product> productPage = productRepository.findActiveAndSoldProducts(pageable);
-        return productPage.map(product -> new ProductListDTO(product, product.getFavoriteCount()));
+        return productListingService.getActiveAndSoldPage(pageable);
     }
 
-    @Transactional
+    /**
+     * Vue d'un produit : dédoublonnée et comptée en mémoire, écrite en lot par {@link ViewCountBuffer}
+     */
     public void incrementViewCount(Long productId, Long userId) {
-        Product product = productRepository.findById(productId)
-            .orElseThrow(() -> new IllegalArgumentException("Produit non trouvé"));
-        
-        // Vérifier si l'utilisateur a déjà vu ce produit
-        if (!productViewRepository.existsByProductIdAndUserId(productId, userId)) {
-            // Créer une nouvelle vue
-            ProductView productView = new ProductView(product, userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("Utilisateur non trouvé")));
-            productViewRepository.save(productView);
-            
-            // Incrémenter le compteur de vues du produit
-            product.setViewCount(product.getViewCount() + 1);
-            productRepository.save(product);
-        }
+        viewCountBuffer.record(productId, userId);
     }
 
+    @Caching(evict = {
+        @CacheEvict(value = CacheConfig.PRODUCT_DETAIL, key = "#productId"),
+        @CacheEvict(value = CacheConfig.PRODUCT_LISTING, allEntries = true)
+    })
     @Transactional
     public Product markAsSold(Long productId, Long sellerId) {
         Product product = productRepository.findById(productId)
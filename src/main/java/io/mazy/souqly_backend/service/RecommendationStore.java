@@ -0,0 +1,441 @@
+package io.mazy.souqly_backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Listes de recommandations précalculées (ids produit + scores, du meilleur au moins bon), une par utilisateur
+ * et par algorithme, servies sans calcul ni requête.
+ *
+ * Chaque algorithme a son fichier {@code <dir>/<algorithme>.bin}, projeté en mémoire (hors tas) :
+ * en-tête, ids utilisateur triés, offsets, puis ids produit et scores à plat (format CSR).
+ * Une lecture est une recherche dichotomique dans les ids utilisateur puis une copie de la tranche.
+ *
+ * Les rafraîchissements partiels ne réécrivent pas ce fichier : ils vont dans un segment delta
+ * ({@code <algorithme>.delta.bin}, même format) lu avant la base. Quand le delta dépasse compaction-ratio
+ * fois le nombre d'utilisateurs de la base, il y est fusionné et remis à zéro.
+ *
+ * Une nouvelle version est écrite dans un fichier temporaire puis substituée atomiquement ;
+ * les lecteurs en cours gardent l'ancienne projection. Les fichiers sont rechargés au démarrage.
+ * L'en-tête porte aussi la marque de file ({@code queueMark}) jusqu'à laquelle les listes sont à jour,
+ * pour reprendre la lecture de recommendation_refresh_queue au redémarrage.
+ */
+@Slf4j
+@Component
+public class RecommendationStore {
+
+    /**
+     * Algorithmes servis par le store
+     */
+    public enum Algorithm {
+        CONTENT, COLLABORATIVE, HYBRID;
+
+        /**
+         * Type demandé par l'API ("content", "collaborative", "hybrid") ; hybride par défaut
+         */
+        public static Algorithm fromType(String type) {
+            return switch (type == null ? "" : type.toLowerCase(Locale.ROOT)) {
+                case "content" -> CONTENT;
+                case "collaborative" -> COLLABORATIVE;
+                default -> HYBRID;
+            };
+        }
+
+        String fileName() {
+            return name().toLowerCase(Locale.ROOT) + ".bin";
+        }
+
+        String deltaFileName() {
+            return name().toLowerCase(Locale.ROOT) + ".delta.bin";
+        }
+    }
+
+    /**
+     * Liste d'un utilisateur : ids[i] a le score scores[i], ordre décroissant
+     */
+    public record Entry(long[] productIds, float[] scores) {
+    }
+
+    private static final int MAGIC = 0x53515243; // "SQRC"
+    private static final int VERSION = 2;
+    // magic, version, userCount, entryCount, builtAt, queueMark (absent en version 1)
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 8 + 8;
+    private static final int HEADER_BYTES_V1 = 4 + 4 + 4 + 4 + 8;
+
+    /**
+     * Base et delta publiés ensemble : un lecteur ne voit jamais l'un sans l'autre
+     */
+    private record Segments(Snapshot base, Snapshot delta) {
+
+        long queueMark() {
+            return Math.max(base.queueMark, delta.queueMark);
+        }
+    }
+
+    private final Path dir;
+    private final double compactionRatio;
+    // Version courante par algorithme (indice = ordinal) : lecture sans verrou
+    private final AtomicReferenceArray<Segments> segments = new AtomicReferenceArray<>(Algorithm.values().length);
+
+    public RecommendationStore(@Value("${souqly.recommendations.store.dir:./data/recommendations}") String dir,
+                               @Value("${souqly.recommendations.store.compaction-ratio:0.1}") double compactionRatio)
+            throws IOException {
+        this.dir = Paths.get(dir).toAbsolutePath().normalize();
+        this.compactionRatio = compactionRatio;
+        Files.createDirectories(this.dir);
+        for (Algorithm algorithm : Algorithm.values()) {
+            Snapshot base = load(this.dir.resolve(algorithm.fileName()));
+            Snapshot delta = load(this.dir.resolve(algorithm.deltaFileName()));
+            log.info("Recommandations {} chargées: {} utilisateurs (+{} en delta)",
+                     algorithm, base.userCount, delta.userCount);
+            segments.set(algorithm.ordinal(), new Segments(base, delta));
+        }
+    }
+
+    /**
+     * Liste précalculée de l'utilisateur, ou null s'il n'en a pas (jamais calculée)
+     */
+    public Entry get(Algorithm algorithm, long userId) {
+        Segments current = segments(algorithm);
+        Entry entry = current.delta().get(userId);
+        return entry != null ? entry : current.base().get(userId);
+    }
+
+    public int userCount(Algorithm algorithm) {
+        Segments current = segments(algorithm);
+        int count = current.base().userCount;
+        for (int i = 0; i < current.delta().userCount; i++) {
+            if (current.base().get(current.delta().userIds.get(i)) == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Marque de file commune à tous les algorithmes : les lignes de recommendation_refresh_queue
+     * jusqu'à cet id sont prises en compte dans les listes publiées (0 si inconnue)
+     */
+    public long queueMark() {
+        long mark = Long.MAX_VALUE;
+        for (Algorithm algorithm : Algorithm.values()) {
+            mark = Math.min(mark, segments(algorithm).queueMark());
+        }
+        return mark;
+    }
+
+    /**
+     * Nouvelle version d'un algorithme : la version courante, dont les utilisateurs de {@code updates}
+     * sont remplacés (ou ajoutés). Avec {@code replaceAll}, la version courante est ignorée et la base réécrite ;
+     * sinon seul le delta l'est, et la base seulement au-delà du seuil de compaction.
+     * Un seul écrivain à la fois par algorithme (appelant synchronisé).
+     */
+    public void publish(Algorithm algorithm, Writer updates, boolean replaceAll, long queueMark) {
+        Segments current = segments(algorithm);
+        Path baseFile = dir.resolve(algorithm.fileName());
+        Path deltaFile = dir.resolve(algorithm.deltaFileName());
+        try {
+            if (replaceAll) {
+                Snapshot base = writeFile(algorithm, baseFile, Snapshot.EMPTY, updates, queueMark);
+                segments.set(algorithm.ordinal(), new Segments(base, Snapshot.EMPTY));
+                Files.deleteIfExists(deltaFile);
+                return;
+            }
+            Snapshot delta = writeFile(algorithm, deltaFile, current.delta(), updates, queueMark);
+            if (delta.userCount <= current.base().userCount * compactionRatio) {
+                segments.set(algorithm.ordinal(), new Segments(current.base(), delta));
+                return;
+            }
+            // Compaction : un arrêt entre les deux étapes relit au démarrage un delta déjà fusionné, sans effet
+            Snapshot base = writeFile(algorithm, baseFile, current.base(), Writer.of(delta), queueMark);
+            segments.set(algorithm.ordinal(), new Segments(base, Snapshot.EMPTY));
+            Files.deleteIfExists(deltaFile);
+            log.debug("Recommandations {} compactées: {} utilisateurs", algorithm, base.userCount);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Écriture des recommandations " + algorithm + " impossible", e);
+        }
+    }
+
+    private Segments segments(Algorithm algorithm) {
+        return segments.get(algorithm.ordinal());
+    }
+
+    private static Snapshot load(Path file) {
+        if (!Files.isReadable(file)) {
+            return Snapshot.EMPTY;
+        }
+        try {
+            return Snapshot.map(file);
+        } catch (IOException | IllegalStateException e) {
+            log.warn("Fichier de recommandations {} illisible, ignoré: {}", file, e.getMessage());
+            return Snapshot.EMPTY;
+        }
+    }
+
+    private Snapshot writeFile(Algorithm algorithm, Path target, Snapshot current, Writer updates, long queueMark)
+            throws IOException {
+        Path tmp = Files.createTempFile(dir, algorithm.name().toLowerCase(Locale.ROOT) + "-", ".part");
+        try {
+            write(tmp, current, updates, queueMark);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return Snapshot.map(target);
+    }
+
+    // Fusion triée des utilisateurs de la version courante et des mises à jour (prioritaires)
+    private static void write(Path file, Snapshot current, Writer updates, long queueMark) throws IOException {
+        long[] updatedUsers = updates.sortedUsers();
+        int userCount = 0;
+        int entryCount = 0;
+        {
+            int i = 0;
+            int j = 0;
+            while (i < current.userCount || j < updatedUsers.length) {
+                long fromCurrent = i < current.userCount ? current.userIds.get(i) : Long.MAX_VALUE;
+                long fromUpdates = j < updatedUsers.length ? updatedUsers[j] : Long.MAX_VALUE;
+                if (fromUpdates <= fromCurrent) {
+                    entryCount += updates.sizeOf(fromUpdates);
+                    j++;
+                    if (fromUpdates == fromCurrent) {
+                        i++;
+                    }
+                } else {
+                    entryCount += current.sizeOf(i);
+                    i++;
+                }
+                userCount++;
+            }
+        }
+
+        long usersAt = HEADER_BYTES;
+        long offsetsAt = usersAt + 8L * userCount;
+        long productsAt = align8(offsetsAt + 4L * (userCount + 1));
+        long scoresAt = productsAt + 8L * entryCount;
+        long size = scoresAt + 4L * entryCount;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.order(ByteOrder.nativeOrder());
+            out.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, userCount).putInt(12, entryCount)
+                .putLong(16, System.currentTimeMillis()).putLong(24, queueMark);
+
+            int i = 0;
+            int j = 0;
+            int user = 0;
+            int entry = 0;
+            out.putInt((int) offsetsAt, 0);
+            while (i < current.userCount || j < updatedUsers.length) {
+                long fromCurrent = i < current.userCount ? current.userIds.get(i) : Long.MAX_VALUE;
+                long fromUpdates = j < updatedUsers.length ? updatedUsers[j] : Long.MAX_VALUE;
+                long userId;
+                if (fromUpdates <= fromCurrent) {
+                    userId = fromUpdates;
+                    int slot = updates.slotOf(userId);
+                    for (int k = updates.offsets[slot]; k < updates.offsets[slot] + updates.sizes[slot]; k++, entry++) {
+                        out.putLong((int) (productsAt + 8L * entry), updates.productIds[k]);
+                        out.putFloat((int) (scoresAt + 4L * entry), updates.scores[k]);
+                    }
+                    j++;
+                    if (fromUpdates == fromCurrent) {
+                        i++;
+                    }
+                } else {
+                    userId = fromCurrent;
+                    for (int k = current.offsets.get(i); k < current.offsets.get(i + 1); k++, entry++) {
+                        out.putLong((int) (productsAt + 8L * entry), current.productIds.get(k));
+                        out.putFloat((int) (scoresAt + 4L * entry), current.scores.get(k));
+                    }
+                    i++;
+                }
+                out.putLong((int) (usersAt + 8L * user), userId);
+                user++;
+                out.putInt((int) (offsetsAt + 4L * user), entry);
+            }
+            out.force();
+        }
+    }
+
+    private static long align8(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Version projetée en mémoire d'un fichier ; lecture seule, accès absolus (thread-safe)
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot();
+
+        final int userCount;
+        final long queueMark;
+        final LongBuffer userIds;
+        final IntBuffer offsets;
+        final LongBuffer productIds;
+        final FloatBuffer scores;
+
+        private Snapshot() {
+            this.userCount = 0;
+            this.queueMark = 0;
+            this.userIds = LongBuffer.allocate(0);
+            this.offsets = IntBuffer.wrap(new int[] { 0 });
+            this.productIds = LongBuffer.allocate(0);
+            this.scores = FloatBuffer.allocate(0);
+        }
+
+        private Snapshot(ByteBuffer buffer) {
+            int version = buffer.getInt(4);
+            if (buffer.getInt(0) != MAGIC || (version != VERSION && version != 1)) {
+                throw new IllegalStateException("Format de fichier inconnu");
+            }
+            this.userCount = buffer.getInt(8);
+            int entryCount = buffer.getInt(12);
+            // Fichier de version 1 : marque inconnue, la file est relue depuis le début
+            this.queueMark = version == 1 ? 0 : buffer.getLong(24);
+            int usersAt = version == 1 ? HEADER_BYTES_V1 : HEADER_BYTES;
+            int offsetsAt = usersAt + 8 * userCount;
+            int productsAt = (int) align8(offsetsAt + 4L * (userCount + 1));
+            int scoresAt = productsAt + 8 * entryCount;
+            this.userIds = slice(buffer, usersAt, 8 * userCount).asLongBuffer();
+            this.offsets = slice(buffer, offsetsAt, 4 * (userCount + 1)).asIntBuffer();
+            this.productIds = slice(buffer, productsAt, 8 * entryCount).asLongBuffer();
+            this.scores = slice(buffer, scoresAt, 4 * entryCount).asFloatBuffer();
+        }
+
+        static Snapshot map(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                // La projection reste valide après fermeture du canal
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.nativeOrder());
+                return new Snapshot(buffer);
+            }
+        }
+
+        private static ByteBuffer slice(ByteBuffer buffer, int index, int length) {
+            return buffer.slice(index, length).order(ByteOrder.nativeOrder());
+        }
+
+        int sizeOf(int user) {
+            return offsets.get(user + 1) - offsets.get(user);
+        }
+
+        Entry get(long userId) {
+            int low = 0;
+            int high = userCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midId = userIds.get(mid);
+                if (midId < userId) {
+                    low = mid + 1;
+                } else if (midId > userId) {
+                    high = mid - 1;
+                } else {
+                    int from = offsets.get(mid);
+                    int size = offsets.get(mid + 1) - from;
+                    long[] ids = new long[size];
+                    float[] values = new float[size];
+                    productIds.get(from, ids);
+                    scores.get(from, values);
+                    return new Entry(ids, values);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Listes calculées à publier, accumulées dans des tableaux primitifs. Un utilisateur ajouté deux fois
+     * garde sa dernière liste. Non thread-safe.
+     */
+    public static final class Writer {
+
+        private final LongIntHashMap slots = new LongIntHashMap(1024);
+        private long[] users = new long[1024];
+        private int[] offsets = new int[1024];
+        private int[] sizes = new int[1024];
+        private long[] productIds = new long[16_384];
+        private float[] scores = new float[16_384];
+        private int userCount;
+        private int entryCount;
+
+        /**
+         * Listes d'une version publiée, pour la fusionner dans une autre
+         */
+        static Writer of(Snapshot snapshot) {
+            Writer writer = new Writer();
+            for (int i = 0; i < snapshot.userCount; i++) {
+                int from = snapshot.offsets.get(i);
+                int size = snapshot.offsets.get(i + 1) - from;
+                long[] ids = new long[size];
+                float[] values = new float[size];
+                snapshot.productIds.get(from, ids);
+                snapshot.scores.get(from, values);
+                writer.add(snapshot.userIds.get(i), ids, values, size);
+            }
+            return writer;
+        }
+
+        public void add(long userId, long[] ids, float[] values, int size) {
+            int slot = slots.get(userId, -1);
+            if (slot < 0) {
+                if (userCount == users.length) {
+                    users = Arrays.copyOf(users, userCount * 2);
+                    offsets = Arrays.copyOf(offsets, userCount * 2);
+                    sizes = Arrays.copyOf(sizes, userCount * 2);
+                }
+                slot = userCount++;
+                slots.put(userId, slot);
+                users[slot] = userId;
+            }
+            if (entryCount + size > productIds.length) {
+                int capacity = Math.max(productIds.length * 2, entryCount + size);
+                productIds = Arrays.copyOf(productIds, capacity);
+                scores = Arrays.copyOf(scores, capacity);
+            }
+            System.arraycopy(ids, 0, productIds, entryCount, size);
+            System.arraycopy(values, 0, scores, entryCount, size);
+            offsets[slot] = entryCount;
+            sizes[slot] = size;
+            entryCount += size;
+        }
+
+        public int userCount() {
+            return userCount;
+        }
+
+        long[] sortedUsers() {
+            long[] sorted = Arrays.copyOf(users, userCount);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        int slotOf(long userId) {
+            return slots.get(userId, -1);
+        }
+
+        int sizeOf(long userId) {
+            return sizes[slotOf(userId)];
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.entity.Product;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Listener Hibernate de Product : chaque insertion, modification ou suppression ajoute une ligne à search_outbox.
+ * Il est enregistré auprès de la SessionFactory par {@link io.mazy.souqly_backend.config.SearchOutboxConfig},
+ * l'entité n'en dépend pas.
+ *
+ * L'INSERT passe par la connexion de la transaction JPA en cours (flush Hibernate) : il est validé ou annulé
+ * avec la modification elle-même, sans appel à Elasticsearch sur le chemin d'écriture.
+ * {@link SearchOutboxRelay} se charge ensuite de l'indexation.
+ * Les écritures qui ne passent pas par l'entité (SQL direct, images) appellent {@link #enqueueAll}.
+ * Les flush des compteurs (vues, favoris) appellent {@link #enqueueCounterChanges} : un produit n'est réindexé
+ * que quand son compteur franchit un palier de souqly.search.outbox.counter-step sur l'échelle logarithmique
+ * du classement, pas à chaque vue.
+ *
+ * Une modification pose aussi products.search_version, la version externe du document : l'UPDATE verrouille
+ * le produit avant de prendre la valeur de séquence, si bien que deux modifications d'un même produit
+ * reçoivent des versions dans l'ordre de leurs commits. Une création garde la version 0 ; une suppression
+ * a pour version l'id de sa ligne, pris après toutes les versions précédentes.
+ */
+@Component
+public class SearchOutboxListener
+        implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final String ENQUEUE_SQL = "INSERT INTO search_outbox (product_id) VALUES (?)";
+
+    private static final String ENQUEUE_VERSIONED_SQL =
+        "WITH bumped AS (UPDATE products SET search_version = nextval(pg_get_serial_sequence('search_outbox', 'id')) " +
+        "WHERE id = ? RETURNING id, search_version) " +
+        "INSERT INTO search_outbox (id, product_id) SELECT search_version, id FROM bumped";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final double counterStep;
+
+    public SearchOutboxListener(JdbcTemplate jdbcTemplate,
+                                @Value("${souqly.search.outbox.counter-step:0.1}") double counterStep) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.counterStep = counterStep;
+    }
+
+    // L'INSERT du produit peut encore attendre dans le batch JDBC d'Hibernate : pas de version à poser
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Product && event.getId() != null) {
+            jdbcTemplate.update(ENQUEUE_SQL, event.getId());
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Product && event.getId() != null) {
+            jdbcTemplate.update(ENQUEUE_SQL, event.getId());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Product && event.getId() != null) {
+            jdbcTemplate.update(ENQUEUE_VERSIONED_SQL, event.getId());
+        }
+    }
+
+    // Écriture dans la transaction de la modification, pas après son commit
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Ajoute des produits existants à search_outbox, dans la transaction en cours s'il y en a une
+     */
+    public void enqueueAll(Collection<Long> productIds) {
+        List<Object[]> rows = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            if (productId != null) {
+                rows.add(new Object[]{productId});
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(ENQUEUE_VERSIONED_SQL, rows);
+        }
+    }
+
+    /**
+     * Ajoute à search_outbox les produits dont le compteur vient de changer de palier, après l'UPDATE
+     * des deltas dans la transaction en cours. Les signaux du classement sont en ln(1 + compteur) :
+     * les paliers sont espacés d'un facteur (1 + counter-step), chaque unité compte pour un petit compteur,
+     * une vue de plus sur un produit très vu ne change pas son rang. Avec counter-step à 0, tout est ajouté.
+     */
+    public void enqueueCounterChanges(RankingCounter counter, Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        if (counterStep <= 0) {
+            enqueueAll(deltas.keySet());
+            return;
+        }
+        List<Long> changed = new ArrayList<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                "SELECT id, COALESCE(" + counter.column + ", 0) AS count FROM products WHERE id = ANY(?)");
+            ps.setArray(1, con.createArrayOf("bigint", deltas.keySet().toArray()));
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            long productId = rs.getLong("id");
+            long current = rs.getLong("count");
+            long previous = Math.max(0, current - deltas.get(productId));
+            if (tier(previous) != tier(current)) {
+                changed.add(productId);
+            }
+        });
+        enqueueAll(changed);
+    }
+
+    private long tier(long count) {
+        return (long) Math.floor(Math.log1p(count) / Math.log1p(counterStep));
+    }
+
+    /**
+     * Compteurs de products utilisés par le classement et écrits hors entité
+     */
+    public enum RankingCounter {
+        VIEWS("view_count"),
+        FAVORITES("favorite_count");
+
+        private final String column;
+
+        RankingCounter(String column) {
+            this.column = column;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.dto.ProductIndexRow;
+import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
+import io.mazy.souqly_backend.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relais de search_outbox vers Elasticsearch.
+ *
+ * À chaque passage, un lot de lignes est réservé en une instruction autovalidée (FOR UPDATE SKIP LOCKED puis
+ * available_at repoussé d'un bail) : aucun verrou n'est tenu pendant l'appel à Elasticsearch, et une instance
+ * arrêtée en cours de lot rend ses lignes à l'expiration du bail. Les lignes sont regroupées par produit :
+ * dix modifications d'un même produit donnent une seule indexation, avec l'état lu en base au moment du relais.
+ *
+ * Plusieurs instances peuvent relayer en même temps deux lignes d'un même produit et écrire deux états lus
+ * à des instants différents : les écritures portent la version externe du document (products.search_version,
+ * lue avec les colonnes ; id de la ligne pour une suppression), et Elasticsearch refuse une version plus
+ * ancienne que celle indexée. Le dernier état gagne quel que soit l'ordre d'arrivée des bulks.
+ *
+ * Les lignes dont le document est accepté (ou écarté comme plus ancien) sont supprimées. Un document refusé
+ * remet ses lignes en attente avec un délai croissant (attempts, last_error) ; au-delà de max-attempts, elles
+ * restent en table sans plus être réservées (lettres mortes, métrique search.outbox.dead) et ne bloquent pas
+ * les suivantes. Un bulk qui échoue en entier (cluster injoignable) rend le lot sans compter d'essai.
+ * Les résultats de recherche en cache touchés par ces produits sont ensuite invalidés ({@link SearchResultCache})
+ * et le catalogue en colonnes des recommandations mis à jour ({@link CatalogSnapshot}).
+ *
+ * Métriques : search.outbox.lag (âge en secondes de la plus ancienne ligne en attente),
+ * search.outbox.pending (lignes en attente) et search.outbox.dead, relevés à chaque passage.
+ */
+@Slf4j
+@Component
+public class SearchOutboxRelay {
+
+    private static final String CLAIM_SQL =
+        "UPDATE search_outbox SET available_at = now() + ? * interval '1 millisecond' WHERE id IN (" +
+        "SELECT id FROM search_outbox WHERE available_at <= now() AND attempts < ? ORDER BY id LIMIT ? " +
+        "FOR UPDATE SKIP LOCKED) RETURNING id, product_id";
+
+    private static final String DELETE_SQL = "DELETE FROM search_outbox WHERE id = ?";
+
+    // Délai doublé à chaque essai, plafonné
+    private static final String RETRY_SQL =
+        "UPDATE search_outbox SET attempts = attempts + 1, last_error = ?, " +
+        "available_at = now() + LEAST(? * power(2, attempts), ?) * interval '1 millisecond' WHERE id = ?";
+
+    private static final String RELEASE_SQL =
+        "UPDATE search_outbox SET available_at = now() + ? * interval '1 millisecond' WHERE id = ?";
+
+    private static final String BACKLOG_SQL =
+        "SELECT COUNT(*) FILTER (WHERE attempts < ?) AS pending, " +
+        "MIN(created_at) FILTER (WHERE attempts < ?) AS oldest, " +
+        "COUNT(*) FILTER (WHERE attempts >= ?) AS dead FROM search_outbox";
+
+    private static final IndexCoordinates TARGET = IndexCoordinates.of(ProductReindexer.ALIAS);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+    private final ElasticsearchService elasticsearchService;
+    private final SearchResultCache searchResultCache;
+    private final CatalogSnapshot catalogSnapshot;
+
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong dead = new AtomicLong();
+
+    @Value("${souqly.search.outbox.batch-size:500}")
+    private int batchSize;
+
+    // Durée de réservation d'un lot : au-delà, une autre instance peut le reprendre
+    @Value("${souqly.search.outbox.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${souqly.search.outbox.retry-delay-ms:5000}")
+    private long retryDelayMs;
+
+    @Value("${souqly.search.outbox.max-retry-delay-ms:600000}")
+    private long maxRetryDelayMs;
+
+    @Value("${souqly.search.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    public SearchOutboxRelay(JdbcTemplate jdbcTemplate, ProductRepository productRepository,
+                             ElasticsearchService elasticsearchService, SearchResultCache searchResultCache,
+                             CatalogSnapshot catalogSnapshot, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productRepository = productRepository;
+        this.elasticsearchService = elasticsearchService;
+        this.searchResultCache = searchResultCache;
+        this.catalogSnapshot = catalogSnapshot;
+        Gauge.builder("search.outbox.lag", lagSeconds, AtomicLong::get)
+            .description("Âge de la plus ancienne modification non indexée")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        Gauge.builder("search.outbox.pending", pending, AtomicLong::get)
+            .description("Modifications de produits en attente d'indexation")
+            .register(meterRegistry);
+        Gauge.builder("search.outbox.dead", dead, AtomicLong::get)
+            .description("Modifications abandonnées après max-attempts refus d'Elasticsearch")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${souqly.search.outbox.relay-interval-ms:1000}")
+    public void relay() {
+        // Produits indexés pendant le passage : le catalogue en colonnes n'est mis à jour qu'une fois, à la fin
+        Set<Long> relayedProducts = new HashSet<>();
+        try {
+            // Lots successifs tant que la file est pleine, pour résorber un pic (import en masse)
+            int relayed;
+            do {
+                relayed = relayBatch(relayedProducts);
+            } while (relayed >= batchSize);
+        } catch (RuntimeException e) {
+            log.warn("Relais outbox -> Elasticsearch échoué: {}", e.getMessage());
+        } finally {
+            if (!relayedProducts.isEmpty()) {
+                catalogSnapshot.apply(relayedProducts);
+            }
+            refreshBacklog();
+        }
+    }
+
+    /**
+     * Réserve, indexe et solde un lot ; renvoie le nombre de lignes réservées
+     */
+    int relayBatch(Set<Long> relayedProducts) {
+        List<Long> outboxIds = new ArrayList<>();
+        Map<Long, List<Long>> rowsByProduct = new LinkedHashMap<>();
+        jdbcTemplate.query(CLAIM_SQL, (RowCallbackHandler) rs -> {
+            long outboxId = rs.getLong("id");
+            outboxIds.add(outboxId);
+            rowsByProduct.computeIfAbsent(rs.getLong("product_id"), id -> new ArrayList<>()).add(outboxId);
+        }, leaseMs, maxAttempts, batchSize);
+        if (outboxIds.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, String> rejected;
+        try {
+            rejected = push(rowsByProduct);
+        } catch (RuntimeException e) {
+            // Rien n'est imputé aux lignes : elles repartent après le délai de base
+            List<Object[]> releases = new ArrayList<>(outboxIds.size());
+            for (Long id : outboxIds) {
+                releases.add(new Object[] { retryDelayMs, id });
+            }
+            jdbcTemplate.batchUpdate(RELEASE_SQL, releases);
+            throw e;
+        }
+
+        List<Object[]> deletes = new ArrayList<>(outboxIds.size());
+        List<Object[]> retries = new ArrayList<>();
+        for (Map.Entry<Long, List<Long>> product : rowsByProduct.entrySet()) {
+            String error = rejected.get(product.getKey());
+            for (Long id : product.getValue()) {
+                if (error == null) {
+                    deletes.add(new Object[] { id });
+                } else {
+                    retries.add(new Object[] { truncate(error), retryDelayMs, maxRetryDelayMs, id });
+                }
+            }
+            if (error == null) {
+                relayedProducts.add(product.getKey());
+            } else {
+                log.warn("Produit {} refusé par Elasticsearch: {}", product.getKey(), error);
+            }
+        }
+        jdbcTemplate.batchUpdate(DELETE_SQL, deletes);
+        if (!retries.isEmpty()) {
+            jdbcTemplate.batchUpdate(RETRY_SQL, retries);
+        }
+        return outboxIds.size();
+    }
+
+    /**
+     * Indexe l'état courant des produits (ou les supprime) ; renvoie les produits refusés, avec l'erreur
+     */
+    private Map<Long, String> push(Map<Long, List<Long>> rowsByProduct) {
+        List<ProductIndexRow> rows = productRepository.findIndexRowsByIds(rowsByProduct.keySet());
+        ElasticsearchService.RowRelations relations = elasticsearchService.loadRelations(rows);
+        List<ElasticsearchService.VersionedWrite> writes = new ArrayList<>(rowsByProduct.size());
+        Set<Long> found = new HashSet<>();
+        Set<Long> categoryIds = new HashSet<>();
+        for (ProductIndexRow row : rows) {
+            writes.add(new ElasticsearchService.VersionedWrite(row.getId().toString(), row.getSearchVersion(),
+                elasticsearchService.toDocument(row, relations)));
+            found.add(row.getId());
+            if (row.getCategoryId() != null) {
+                categoryIds.add(row.getCategoryId());
+            }
+        }
+        for (Map.Entry<Long, List<Long>> product : rowsByProduct.entrySet()) {
+            if (!found.contains(product.getKey())) {
+                // Produit supprimé : la ligne de la suppression est la plus récente du produit
+                writes.add(new ElasticsearchService.VersionedWrite(product.getKey().toString(),
+                    Collections.max(product.getValue()), null));
+            }
+        }
+
+        // Invalidation une fois les écritures visibles : une recherche relancée ne relit pas l'état précédent
+        Map<Long, String> rejected = new HashMap<>();
+        elasticsearchService.writeVersioned(TARGET, writes, true)
+            .forEach((id, error) -> rejected.put(Long.valueOf(id), error));
+        searchResultCache.invalidate(rowsByProduct.keySet(), categoryIds);
+        return rejected;
+    }
+
+    private static String truncate(String error) {
+        return error != null && error.length() > 1000 ? error.substring(0, 1000) : error;
+    }
+
+    private void refreshBacklog() {
+        try {
+            jdbcTemplate.query(BACKLOG_SQL, rs -> {
+                pending.set(rs.getLong("pending"));
+                dead.set(rs.getLong("dead"));
+                Timestamp oldest = rs.getTimestamp("oldest");
+                lagSeconds.set(oldest != null
+                    ? Math.max(0, Duration.between(oldest.toLocalDateTime(), LocalDateTime.now()).toSeconds())
+                    : 0);
+            }, maxAttempts, maxAttempts, maxAttempts);
+        } catch (RuntimeException e) {
+            log.debug("Mesure du retard de l'outbox impossible: {}", e.getMessage());
+        }
+    }
+}
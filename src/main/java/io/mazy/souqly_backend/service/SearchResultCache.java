@@ -0,0 +1,258 @@
+package io.mazy.souqly_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.mazy.souqly_backend.dto.ProductSearchCriteria;
+import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache des ids de résultats de recherche, par requête normalisée + filtres + page.
+ *
+ * Seuls les ids et le total sont gardés (quelques centaines d'octets par page) ; l'appelant réhydrate
+ * les documents par id. Les entrées vivent peu (souqly.cache.search-results.ttl) et sont invalidées plus tôt
+ * par les modifications de produits relayées vers Elasticsearch : une entrée est étiquetée par les catégories
+ * qu'elle filtre, les catégories de ses résultats et les produits qu'elle contient.
+ * Une modification qui ferait entrer un produit dans une recherche sans filtre de catégorie, sur une catégorie
+ * absente de ses résultats, n'apparaît qu'à l'expiration de l'entrée.
+ *
+ * Une invalidation qui arrive pendant une recherche ne trouve pas encore ses étiquettes : chaque invalidation
+ * prend un numéro de génération et le note sur ses étiquettes, et une recherche dont l'une des étiquettes a été
+ * invalidée après son départ rend son résultat sans le mettre en cache (il a pu être lu avant l'écriture).
+ * Le relais n'invalide qu'une fois ses écritures visibles (refresh=wait_for).
+ *
+ * Requêtes concurrentes identiques coalescées (single-flight) : la première exécute la recherche,
+ * les suivantes attendent son résultat au lieu d'interroger Elasticsearch à leur tour.
+ *
+ * Métrique : search.results.cache (tag result = hit, miss ou coalesced).
+ */
+@Component
+public class SearchResultCache {
+
+    /**
+     * Page de résultats mise en cache : ids dans l'ordre des hits, total des hits
+     */
+    public record ResultIds(List<String> ids, long total) {
+    }
+
+    private record Key(ProductSearchCriteria criteria, int page, int size) {
+    }
+
+    private final Cache<Key, CompletableFuture<ResultIds>> cache;
+
+    // Génération de la dernière invalidation, globale et par étiquette ; une étiquette oubliée après la durée
+    // de vie des entrées ne concerne plus aucune recherche en cours
+    private final AtomicLong generation = new AtomicLong();
+    private final Cache<String, Long> invalidatedAt;
+
+    // Étiquette (c:<catégorie> ou p:<produit>) -> entrées concernées ; nettoyé à l'éviction des entrées
+    private final ConcurrentHashMap<String, Set<Key>> keysByTag = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Key, Set<String>> tagsByKey = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+
+    public SearchResultCache(@Value("${souqly.cache.search-results.max-size:5000}") long maxSize,
+                             @Value("${souqly.cache.search-results.ttl:30s}") Duration ttl,
+                             MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttl)
+            .<Key, CompletableFuture<ResultIds>>removalListener((key, value, cause) -> {
+                if (key != null && cause != RemovalCause.REPLACED) {
+                    untag(key);
+                }
+            })
+            .build();
+        this.invalidatedAt = Caffeine.newBuilder()
+            .expireAfterWrite(ttl)
+            .build();
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+        this.coalesced = counter(meterRegistry, "coalesced");
+    }
+
+    /**
+     * Ids de la page en cache, ou exécute la recherche (une seule fois pour des appels concurrents identiques).
+     * Une recherche en échec n'est pas mise en cache ; l'exception est relancée à tous les appelants en attente.
+     *
+     * @param categoryIds catégories filtrées (sous-catégories comprises), null sans filtre de catégorie
+     */
+    public ResultIds get(ProductSearchCriteria criteria, Collection<Long> categoryIds, Pageable pageable,
+                         Supplier<Page<ProductDocument>> search) {
+        Key key = new Key(normalize(criteria), pageable.getPageNumber(), pageable.getPageSize());
+        CompletableFuture<ResultIds> existing = cache.getIfPresent(key);
+        if (existing != null) {
+            (existing.isDone() ? hits : coalesced).increment();
+            return join(existing);
+        }
+
+        CompletableFuture<ResultIds> created = new CompletableFuture<>();
+        existing = cache.asMap().putIfAbsent(key, created);
+        if (existing != null) {
+            (existing.isDone() ? hits : coalesced).increment();
+            return join(existing);
+        }
+
+        misses.increment();
+        long startedAt = generation.get();
+        try {
+            Page<ProductDocument> page = search.get();
+            List<String> ids = new ArrayList<>(page.getNumberOfElements());
+            Set<String> tags = new HashSet<>();
+            if (categoryIds != null) {
+                categoryIds.forEach(categoryId -> tags.add("c:" + categoryId));
+            }
+            for (ProductDocument document : page.getContent()) {
+                ids.add(document.getId());
+                tags.add("p:" + document.getId());
+                if (document.getCategoryId() != null) {
+                    tags.add("c:" + document.getCategoryId());
+                }
+            }
+            // Étiquettes posées avant de relire les générations : une invalidation concurrente voit l'une ou l'autre
+            tag(key, tags);
+            ResultIds result = new ResultIds(ids, page.getTotalElements());
+            if (invalidatedSince(tags, startedAt)) {
+                cache.asMap().remove(key, created);
+            }
+            // Invalidée pendant la recherche : l'entrée n'est plus en cache, ses étiquettes ne doivent pas rester
+            if (cache.asMap().get(key) != created) {
+                untag(key);
+            }
+            created.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            cache.asMap().remove(key, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Invalide les entrées touchées par des produits modifiés : celles qui contiennent l'un de ces produits,
+     * filtrent sur l'une de ces catégories ou en affichent des résultats
+     */
+    public void invalidate(Collection<Long> productIds, Collection<Long> categoryIds) {
+        Long current = generation.incrementAndGet();
+        Set<String> tags = new HashSet<>();
+        productIds.forEach(productId -> tags.add("p:" + productId));
+        categoryIds.forEach(categoryId -> tags.add("c:" + categoryId));
+        tags.forEach(tag -> invalidatedAt.put(tag, current));
+
+        Set<Key> keys = new HashSet<>();
+        tags.forEach(tag -> collect(tag, keys));
+        if (!keys.isEmpty()) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    private boolean invalidatedSince(Set<String> tags, long startedAt) {
+        if (generation.get() == startedAt) {
+            return false;
+        }
+        for (String tag : tags) {
+            Long invalidated = invalidatedAt.getIfPresent(tag);
+            if (invalidated != null && invalidated > startedAt) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void collect(String tag, Set<Key> keys) {
+        Set<Key> tagged = keysByTag.remove(tag);
+        if (tagged != null) {
+            keys.addAll(tagged);
+        }
+    }
+
+    private void tag(Key key, Set<String> tags) {
+        tagsByKey.put(key, tags);
+        for (String tag : tags) {
+            keysByTag.computeIfAbsent(tag, t -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private void untag(Key key) {
+        Set<String> tags = tagsByKey.remove(key);
+        if (tags == null) {
+            return;
+        }
+        for (String tag : tags) {
+            keysByTag.computeIfPresent(tag, (t, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    // Les appelants en attente reçoivent l'exception d'origine (le repli sur Postgres l'intercepte)
+    private static ResultIds join(CompletableFuture<ResultIds> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Même recherche, même entrée : texte en minuscules aux espaces normalisés, valeurs de filtre triées
+    private static ProductSearchCriteria normalize(ProductSearchCriteria criteria) {
+        String query = criteria.getQuery() == null ? null
+            : criteria.getQuery().trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return new ProductSearchCriteria(
+            query == null || query.isEmpty() ? null : query,
+            criteria.getCategoryId(),
+            normalize(criteria.getBrands()),
+            normalize(criteria.getSizes()),
+            normalize(criteria.getConditions()),
+            normalize(criteria.getCities()),
+            criteria.getCountry() == null || criteria.getCountry().isBlank() ? null : criteria.getCountry(),
+            criteria.getMinPrice(),
+            criteria.getMaxPrice(),
+            criteria.getSortBy(),
+            criteria.getSortOrder() == null ? null : criteria.getSortOrder().toLowerCase(Locale.ROOT));
+    }
+
+    private static List<String> normalize(List<String> values) {
+        if (values == null) {
+            return null;
+        }
+        List<String> normalized = values.stream()
+            .filter(value -> value != null && !value.isBlank())
+            .distinct()
+            .sorted()
+            .toList();
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("search.results.cache")
+            .description("Recherches servies par le cache d'ids de résultats")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
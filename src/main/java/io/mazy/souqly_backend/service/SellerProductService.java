@@ -0,0 +1,144 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.dto.CursorPage;
+import io.mazy.souqly_backend.dto.PageCursor;
+import io.mazy.souqly_backend.dto.ProductMyProductsDTO;
+import io.mazy.souqly_backend.dto.SellerProductRow;
+import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.repository.CategoryRepository;
+import io.mazy.souqly_backend.repository.ProductImageRepository;
+import io.mazy.souqly_backend.repository.ProductRepository;
+import io.mazy.souqly_backend.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chemin de lecture de l'écran "mes produits" du vendeur.
+ *
+ * Le nombre de requêtes est constant, quel que soit le nombre d'annonces : les lignes projetées,
+ * les métadonnées d'images de toutes les lignes, l'arbre des catégories, puis le vendeur.
+ * Les DTO sont assemblés en mémoire, sans hydrater d'entité Product.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class SellerProductService {
+
+    private final ProductRepository productRepository;
+    private final ProductImageRepository productImageRepository;
+    private final CategoryRepository categoryRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * Tous les produits du vendeur dont le statut est dans la liste, du plus récent au plus ancien
+     */
+    public List<ProductMyProductsDTO> getSellerProducts(Long sellerId, List<Product.ProductStatus> statuses) {
+        return toDTOs(sellerId, productRepository.findSellerRows(sellerId, statuses));
+    }
+
+    /**
+     * Tranche paginée par curseur (createdAt, id), sans count(*)
+     */
+    public CursorPage<ProductMyProductsDTO> getSellerProductsSlice(Long sellerId, List<Product.ProductStatus> statuses,
+                                                                   String cursor, int size) {
+        PageCursor position = PageCursor.decode(cursor);
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<SellerProductRow> rows = position == null
+            ? productRepository.findSellerRowsFirst(sellerId, statuses, limit)
+            : productRepository.findSellerRowsBefore(sellerId, statuses, position.getTimestamp(), position.getId(), limit);
+
+        boolean hasNext = rows.size() > size;
+        String nextCursor = null;
+        if (hasNext) {
+            rows = rows.subList(0, size);
+            SellerProductRow last = rows.get(rows.size() - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPage<>(toDTOs(sellerId, rows), nextCursor, hasNext, size);
+    }
+
+    private List<ProductMyProductsDTO> toDTOs(Long sellerId, List<SellerProductRow> rows) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Long> productIds = new ArrayList<>(rows.size());
+        for (SellerProductRow row : rows) {
+            productIds.add(row.getId());
+        }
+        Map<Long, List<ProductMyProductsDTO.ProductImageDTO>> imagesByProduct = new HashMap<>();
+        for (ProductImageRepository.ProductImageMeta meta : productImageRepository.findMetaByProductIdIn(productIds)) {
+            imagesByProduct.computeIfAbsent(meta.getProductId(), id -> new ArrayList<>())
+                .add(new ProductMyProductsDTO.ProductImageDTO(meta.getId(), meta.getFileName(), meta.getContentType(), null));
+        }
+
+        CategoryTree categories = new CategoryTree(categoryRepository.findAllNodes());
+
+        ProductMyProductsDTO.UserDTO seller = userRepository.findById(sellerId)
+            .map(ProductMyProductsDTO.UserDTO::new)
+            .orElse(null);
+
+        List<ProductMyProductsDTO> dtos = new ArrayList<>(rows.size());
+        for (SellerProductRow row : rows) {
+            dtos.add(new ProductMyProductsDTO(row,
+                imagesByProduct.getOrDefault(row.getId(), new ArrayList<>()),
+                categories.toDTO(row.getCategoryId()),
+                seller));
+        }
+        return dtos;
+    }
+
+    /**
+     * Arbre des catégories reconstruit depuis les projections ; chaque sous-arbre n'est converti qu'une fois.
+     */
+    private static class CategoryTree {
+        private final Map<Long, CategoryRepository.CategoryNode> nodes = new HashMap<>();
+        private final Map<Long, List<CategoryRepository.CategoryNode>> childrenByParent = new HashMap<>();
+        private final Map<Long, ProductMyProductsDTO.CategoryDTO> converted = new HashMap<>();
+
+        CategoryTree(List<CategoryRepository.CategoryNode> allNodes) {
+            for (CategoryRepository.CategoryNode node : allNodes) {
+                nodes.put(node.getId(), node);
+                if (node.getParentId() != null) {
+                    childrenByParent.computeIfAbsent(node.getParentId(), id -> new ArrayList<>()).add(node);
+                }
+            }
+            Comparator<CategoryRepository.CategoryNode> bySortOrder = Comparator
+                .comparing((CategoryRepository.CategoryNode node) -> node.getSortOrder() != null ? node.getSortOrder() : 0)
+                .thenComparing(CategoryRepository.CategoryNode::getId);
+            childrenByParent.values().forEach(children -> children.sort(bySortOrder));
+        }
+
+        ProductMyProductsDTO.CategoryDTO toDTO(Long categoryId) {
+            if (categoryId == null || !nodes.containsKey(categoryId)) {
+                return null;
+            }
+            ProductMyProductsDTO.CategoryDTO dto = converted.get(categoryId);
+            if (dto == null) {
+                CategoryRepository.CategoryNode node = nodes.get(categoryId);
+                // Comme CategoryDTO(Category) : null plutôt qu'une liste vide quand il n'y a pas d'enfants
+                List<ProductMyProductsDTO.CategoryDTO> children = null;
+                List<CategoryRepository.CategoryNode> childNodes = childrenByParent.get(categoryId);
+                if (childNodes != null) {
+                    children = new ArrayList<>(childNodes.size());
+                    for (CategoryRepository.CategoryNode child : childNodes) {
+                        children.add(toDTO(child.getId()));
+                    }
+                }
+                dto = new ProductMyProductsDTO.CategoryDTO(node.getId(), node.getKey(), node.getLabel(),
+                    node.getIconName(), node.getBadgeText(), node.getActive(), node.getSortOrder(), children);
+                converted.put(categoryId, dto);
+            }
+            return dto;
+        }
+    }
+}
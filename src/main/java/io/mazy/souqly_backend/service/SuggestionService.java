@@ -0,0 +1,356 @@
+package io.mazy.souqly_backend.service;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldValueFactorModifier;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionBoostMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.Operator;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.CompletionSuggestOption;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.Suggestion;
+import co.elastic.clients.json.JsonData;
+import io.mazy.souqly_backend.config.CacheConfig;
+import io.mazy.souqly_backend.dto.SuggestionDTO;
+import io.mazy.souqly_backend.entity.elasticsearch.SuggestionDocument;
+import io.mazy.souqly_backend.repository.ProductRepository;
+import io.mazy.souqly_backend.repository.elasticsearch.SuggestionSearchRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.suggest.Completion;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Autocomplétion de la barre de recherche, sur un index dédié (product_suggestions) au lieu d'un
+ * phrase_prefix sur l'index produits à chaque frappe.
+ *
+ * L'index est reconstruit périodiquement à partir des titres, marques et catégories des produits actifs
+ * et des recherches fréquentes (comptées en mémoire par {@link #recordQuery}, une fois par utilisateur ou
+ * adresse IP entre deux reconstructions, hors termes bloqués). Une requête passe d'abord
+ * par le completion suggester (FST en mémoire) ; s'il ne remplit pas la liste, un match sur le champ
+ * en edge n-grams complète avec les entrées dont un mot, pas seulement le premier, commence par le préfixe.
+ * Les préfixes les plus tapés sont servis depuis le cache {@link CacheConfig#SEARCH_SUGGESTIONS}.
+ *
+ * Chaque instance reconstruit l'index : les entrées issues de la base (titres, marques, catégories) sont identiques
+ * partout et purgées dès qu'une reconstruction ne les réécrit pas ; les recherches fréquentes, propres à chaque
+ * instance, ne sont purgées qu'une fois plus réécrites par aucune instance depuis queries-ttl-ms.
+ */
+@Slf4j
+@Service
+public class SuggestionService {
+
+    private static final String INDEX = "product_suggestions";
+    private static final String COMPLETION = "complete";
+    private static final int MAX_PREFIX_LENGTH = 60;
+    private static final int MAX_INPUT_WORDS = 4;
+    private static final int BATCH_SIZE = 1000;
+    private static final int MAX_TRACKED_QUERIES = 50_000;
+    private static final int MAX_TRACKED_REQUESTERS = 500_000;
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final SuggestionSearchRepository suggestionSearchRepository;
+    private final ProductRepository productRepository;
+    private final Timer suggestTimer;
+
+    // Recherches tapées depuis la dernière reconstruction (comptes divisés par deux à chaque reconstruction)
+    private final ConcurrentHashMap<String, LongAdder> queryCounts = new ConcurrentHashMap<>();
+
+    // Couples (recherche, utilisateur ou IP) déjà comptés depuis la dernière reconstruction, par empreinte
+    private final Set<Long> countedRequesters = ConcurrentHashMap.newKeySet();
+
+    @Value("${souqly.search.suggestions.popular-queries:500}")
+    private int popularQueries;
+
+    @Value("${souqly.search.suggestions.min-query-count:3}")
+    private int minQueryCount;
+
+    // Durée de vie d'une recherche fréquente qu'aucune instance ne réécrit plus
+    @Value("${souqly.search.suggestions.queries-ttl-ms:3600000}")
+    private long queriesTtlMs;
+
+    // Termes qui écartent une recherche des suggestions (liste séparée par des virgules)
+    @Value("${souqly.search.suggestions.blocked-terms:}")
+    private List<String> blockedTerms;
+
+    public SuggestionService(ElasticsearchClient elasticsearchClient,
+                             SuggestionSearchRepository suggestionSearchRepository,
+                             ProductRepository productRepository, MeterRegistry meterRegistry) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.suggestionSearchRepository = suggestionSearchRepository;
+        this.productRepository = productRepository;
+        this.suggestTimer = Timer.builder("search.autocomplete")
+            .description("Autocomplétion hors cache (requêtes Elasticsearch)")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Suggestions pour un préfixe, les plus pertinentes d'abord
+     */
+    @Cacheable(value = CacheConfig.SEARCH_SUGGESTIONS,
+               key = "T(io.mazy.souqly_backend.service.SuggestionService).normalize(#prefix) + ':' + #size")
+    public List<SuggestionDTO> suggest(String prefix, int size) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        return suggestTimer.record(() -> {
+            Map<String, SuggestionDTO> suggestions = new LinkedHashMap<>();
+            try {
+                complete(normalized, size, suggestions);
+                if (suggestions.size() < size) {
+                    matchEdgeNgrams(normalized, size, suggestions);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Autocomplétion indisponible", e);
+            }
+            return new ArrayList<>(suggestions.values());
+        });
+    }
+
+    /**
+     * Compte une recherche effectuée, candidate aux suggestions si elle revient souvent.
+     * Une même personne (utilisateur connecté, sinon adresse IP) ne compte qu'une fois par recherche
+     * entre deux reconstructions : un seul client ne peut pas pousser une chaîne dans l'autocomplétion.
+     */
+    public void recordQuery(String query) {
+        String normalized = normalize(query);
+        if (normalized.length() < 2 || isBlocked(normalized)) {
+            return;
+        }
+        String requester = currentRequester();
+        if (requester == null || countedRequesters.size() >= MAX_TRACKED_REQUESTERS
+            || !countedRequesters.add(((long) normalized.hashCode() << 32) | (requester.hashCode() & 0xFFFFFFFFL))) {
+            return;
+        }
+        LongAdder counter = queryCounts.get(normalized);
+        if (counter == null) {
+            if (queryCounts.size() >= MAX_TRACKED_QUERIES) {
+                return;
+            }
+            counter = queryCounts.computeIfAbsent(normalized, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Réécrit toutes les entrées puis purge celles qui n'ont pas été réécrites (produit retiré, marque disparue...),
+     * et les recherches fréquentes plus réécrites depuis queries-ttl-ms
+     */
+    @Scheduled(fixedDelayString = "${souqly.search.suggestions.rebuild-interval-ms:900000}", initialDelay = 30000)
+    @CacheEvict(value = CacheConfig.SEARCH_SUGGESTIONS, allEntries = true)
+    public synchronized void rebuild() {
+        long refreshedAt = System.currentTimeMillis();
+        List<SuggestionDocument> batch = new ArrayList<>(BATCH_SIZE);
+        int written = 0;
+        try {
+            for (ProductRepository.SuggestionSource brand : productRepository.findBrandSuggestionSources()) {
+                written += add(batch, SuggestionDocument.BRAND, brand.getText(), brand.getWeight(), refreshedAt);
+            }
+            for (ProductRepository.SuggestionSource category : productRepository.findCategorySuggestionSources()) {
+                written += add(batch, SuggestionDocument.CATEGORY, category.getText(), category.getWeight(), refreshedAt);
+            }
+            for (Map.Entry<String, Long> query : popularQueries()) {
+                written += add(batch, SuggestionDocument.QUERY, query.getKey(), query.getValue(), refreshedAt);
+            }
+            long afterId = 0;
+            while (true) {
+                List<ProductRepository.TitleSuggestionSource> titles =
+                    productRepository.findTitleSuggestionSources(afterId, PageRequest.of(0, BATCH_SIZE));
+                if (titles.isEmpty()) {
+                    break;
+                }
+                for (ProductRepository.TitleSuggestionSource title : titles) {
+                    long favorites = title.getWeight() != null ? title.getWeight() : 0;
+                    written += add(batch, SuggestionDocument.TITLE, title.getText(), favorites + 1, refreshedAt);
+                }
+                afterId = titles.get(titles.size() - 1).getId();
+            }
+            flush(batch);
+
+            elasticsearchClient.deleteByQuery(d -> d
+                .index(INDEX)
+                .query(q -> q.bool(b -> b
+                    .should(s -> s.bool(fromDatabase -> fromDatabase
+                        .mustNot(m -> m.term(t -> t.field("type").value(SuggestionDocument.QUERY)))
+                        .filter(f -> f.range(r -> r.field("refreshedAt").lt(JsonData.of(refreshedAt))))))
+                    .should(s -> s.bool(queries -> queries
+                        .filter(f -> f.term(t -> t.field("type").value(SuggestionDocument.QUERY)))
+                        .filter(f -> f.range(r -> r.field("refreshedAt")
+                            .lt(JsonData.of(refreshedAt - queriesTtlMs))))))
+                    .minimumShouldMatch("1"))));
+            decayQueryCounts();
+            log.info("Index d'autocomplétion reconstruit: {} entrées", written);
+        } catch (IOException | RuntimeException e) {
+            // Les entrées déjà écrites restent valables ; les anciennes seront purgées au prochain passage
+            log.warn("Reconstruction de l'index d'autocomplétion échouée: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Forme canonique d'un préfixe ou d'une recherche : minuscules, espaces normalisés, longueur bornée
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return normalized.length() > MAX_PREFIX_LENGTH ? normalized.substring(0, MAX_PREFIX_LENGTH) : normalized;
+    }
+
+    private void complete(String prefix, int size, Map<String, SuggestionDTO> suggestions) throws IOException {
+        SearchResponse<SuggestionDocument> response = elasticsearchClient.search(s -> s
+            .index(INDEX)
+            .size(0)
+            .source(src -> src.filter(f -> f.includes("text", "type")))
+            .suggest(sg -> sg.suggesters(COMPLETION, fs -> fs
+                .prefix(prefix)
+                .completion(c -> c.field("suggest").size(size).skipDuplicates(true)))),
+            SuggestionDocument.class);
+
+        for (Suggestion<SuggestionDocument> suggestion : response.suggest().getOrDefault(COMPLETION, List.of())) {
+            for (CompletionSuggestOption<SuggestionDocument> option : suggestion.completion().options()) {
+                if (option.source() != null) {
+                    put(suggestions, option.source(), size);
+                }
+            }
+        }
+    }
+
+    private void matchEdgeNgrams(String prefix, int size, Map<String, SuggestionDTO> suggestions) throws IOException {
+        SearchResponse<SuggestionDocument> response = elasticsearchClient.search(s -> s
+            .index(INDEX)
+            .size(size)
+            .source(src -> src.filter(f -> f.includes("text", "type")))
+            .query(q -> q.functionScore(fs -> fs
+                .query(inner -> inner.match(m -> m.field("text").query(prefix).operator(Operator.And)))
+                .functions(f -> f.fieldValueFactor(v -> v
+                    .field("weight")
+                    .modifier(FieldValueFactorModifier.Log1p)
+                    .missing(1.0)))
+                .boostMode(FunctionBoostMode.Multiply))),
+            SuggestionDocument.class);
+
+        for (Hit<SuggestionDocument> hit : response.hits().hits()) {
+            if (hit.source() != null) {
+                put(suggestions, hit.source(), size);
+            }
+        }
+    }
+
+    // Une même chaîne peut venir d'un titre et d'une recherche : première occurrence gardée
+    private void put(Map<String, SuggestionDTO> suggestions, SuggestionDocument document, int size) {
+        if (suggestions.size() < size && document.getText() != null) {
+            suggestions.putIfAbsent(normalize(document.getText()),
+                new SuggestionDTO(document.getText(), document.getType()));
+        }
+    }
+
+    private int add(List<SuggestionDocument> batch, String type, String text, long weight, long refreshedAt) {
+        if (text == null || text.isBlank()) {
+            return 0;
+        }
+        String display = text.trim().replaceAll("\\s+", " ");
+        if (display.length() > MAX_PREFIX_LENGTH) {
+            display = display.substring(0, MAX_PREFIX_LENGTH);
+        }
+        int clampedWeight = (int) Math.max(1, Math.min(Integer.MAX_VALUE, weight));
+        Completion completion = new Completion(inputs(display));
+        completion.setWeight(clampedWeight);
+        batch.add(new SuggestionDocument(type + ":" + normalize(display), display, type, clampedWeight,
+                                         completion, refreshedAt));
+        if (batch.size() >= BATCH_SIZE) {
+            flush(batch);
+        }
+        return 1;
+    }
+
+    // Le texte entier puis chaque fin de texte commençant à un mot suivant : "robe rouge zara" répond aussi à "zar"
+    private static String[] inputs(String text) {
+        String[] words = text.split(" ");
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < words.length && i < MAX_INPUT_WORDS; i++) {
+            inputs.add(String.join(" ", Arrays.copyOfRange(words, i, words.length)));
+        }
+        return inputs.toArray(new String[0]);
+    }
+
+    private void flush(List<SuggestionDocument> batch) {
+        if (!batch.isEmpty()) {
+            suggestionSearchRepository.saveAll(batch);
+            batch.clear();
+        }
+    }
+
+    private List<Map.Entry<String, Long>> popularQueries() {
+        List<Map.Entry<String, Long>> popular = new ArrayList<>();
+        queryCounts.forEach((query, counter) -> {
+            long count = counter.sum();
+            if (count >= minQueryCount) {
+                popular.add(Map.entry(query, count));
+            }
+        });
+        popular.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return popular.size() > popularQueries ? popular.subList(0, popularQueries) : popular;
+    }
+
+    private boolean isBlocked(String normalized) {
+        for (String term : blockedTerms) {
+            String blocked = term.trim().toLowerCase(Locale.ROOT);
+            if (!blocked.isEmpty() && normalized.contains(blocked)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Utilisateur connecté, sinon adresse du client (les en-têtes X-Forwarded-* ne sont pris en compte
+    // que via server.forward-headers-strategy) ; null hors requête HTTP
+    private static String currentRequester() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+            && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            return "ip:" + attributes.getRequest().getRemoteAddr();
+        }
+        return null;
+    }
+
+    // Vieillissement : une recherche qui n'est plus tapée finit par sortir des suggestions ;
+    // chaque personne peut de nouveau compter une fois jusqu'à la prochaine reconstruction
+    private void decayQueryCounts() {
+        countedRequesters.clear();
+        queryCounts.forEach((query, counter) -> {
+            long count = counter.sumThenReset();
+            if (count > 1) {
+                counter.add(count / 2);
+            } else {
+                queryCounts.remove(query, counter);
+            }
+        });
+    }
+}
@@ -0,0 +1,85 @@
+package io.mazy.souqly_backend.service;
+
+/**
+ * Les k meilleurs (id, score) d'un flux, en tas minimum borné sur tableaux primitifs :
+ * O(log k) par candidat retenu, aucune allocation après construction. Non thread-safe.
+ */
+final class TopKHeap {
+
+    private final long[] ids;
+    private final float[] scores;
+    private int size;
+
+    TopKHeap(int capacity) {
+        this.ids = new long[capacity];
+        this.scores = new float[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Plus petit score retenu, ou -infini tant que le tas n'est pas plein (tout candidat passe)
+     */
+    float threshold() {
+        return size < ids.length ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    void offer(long id, float score) {
+        if (size < ids.length) {
+            int child = size++;
+            // Remontée
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (scores[parent] <= score) {
+                    break;
+                }
+                ids[child] = ids[parent];
+                scores[child] = scores[parent];
+                child = parent;
+            }
+            ids[child] = id;
+            scores[child] = score;
+        } else if (ids.length > 0 && score > scores[0]) {
+            siftDown(id, score);
+        }
+    }
+
+    /**
+     * Vide le tas dans ids et scores, du meilleur au moins bon ; renvoie le nombre d'éléments écrits
+     */
+    int drainDescending(long[] idsOut, float[] scoresOut) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            idsOut[i] = ids[0];
+            scoresOut[i] = scores[0];
+            size--;
+            if (size > 0) {
+                siftDown(ids[size], scores[size]);
+            }
+        }
+        return count;
+    }
+
+    private void siftDown(long id, float score) {
+        int parent = 0;
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            ids[parent] = ids[child];
+            scores[parent] = scores[child];
+            parent = child;
+        }
+        ids[parent] = id;
+        scores[parent] = score;
+    }
+}
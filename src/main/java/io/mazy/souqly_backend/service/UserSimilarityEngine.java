@@ -0,0 +1,402 @@
+package io.mazy.souqly_backend.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Similarités utilisateur-utilisateur (Jaccard sur les produits d'intérêt), persistées dans user_similarities.
+ *
+ * Reconstruction complète sur la matrice des interactions ({@link InteractionMatrix}) : pour chaque utilisateur,
+ * l'index inversé produit -> utilisateurs n'énumère que les utilisateurs partageant au moins un produit,
+ * et les tailles d'intersection s'accumulent dans un tableau d'entiers (aucun ensemble construit par paire).
+ *
+ * Pré-filtre MinHash/LSH (activable) : signature de bands × rows minima par utilisateur, découpée en bandes ;
+ * seuls les utilisateurs tombant dans un même seau qu'au moins une bande sont comparés. Probabilité de retenir
+ * une paire de similarité s : 1 - (1 - s^rows)^bands, soit ~95 % à 0.3 et ~27 % à 0.1 avec 32 × 2 :
+ * les paires faibles sont en partie perdues, les paires exploitées par les recommandations (> 0.3) conservées.
+ *
+ * Les lignes sont réécrites par lots JDBC (suppression des anciennes lignes du groupe d'utilisateurs,
+ * puis insertion en batch), dans une transaction par groupe. La transaction du dernier groupe supprime aussi
+ * les lignes non réécrites par la reconstruction : utilisateurs sortis de la matrice (plus d'interaction
+ * d'intérêt, compte supprimé), dont les voisins ne seraient sinon jamais remplacés.
+ */
+@Slf4j
+@Service
+public class UserSimilarityEngine {
+
+    // Jaccard exact d'un utilisateur contre tous ceux qui partagent un produit avec lui (index produit_id en base)
+    private static final String USER_SIMILARITIES_SQL =
+        "WITH mine AS (" +
+        "  SELECT DISTINCT product_id FROM user_interactions" +
+        "  WHERE user_id = ? AND product_id IS NOT NULL AND interaction_type IN " + InteractionMatrix.INTEREST_TYPES +
+        "), shared AS (" +
+        "  SELECT ui.user_id, COUNT(DISTINCT ui.product_id) AS common FROM user_interactions ui" +
+        "  JOIN mine m ON m.product_id = ui.product_id" +
+        "  WHERE ui.user_id <> ? AND ui.interaction_type IN " + InteractionMatrix.INTEREST_TYPES +
+        "  GROUP BY ui.user_id" +
+        "), scored AS (" +
+        "  SELECT s.user_id, s.common::float8 / ((SELECT COUNT(*) FROM mine) - s.common +" +
+        "    (SELECT COUNT(DISTINCT o.product_id) FROM user_interactions o" +
+        "     WHERE o.user_id = s.user_id AND o.interaction_type IN " + InteractionMatrix.INTEREST_TYPES + ")) AS score" +
+        "  FROM shared s" +
+        ") SELECT user_id, score FROM scored WHERE score >= ? ORDER BY score DESC LIMIT ?";
+
+    private static final String DELETE_SQL = "DELETE FROM user_similarities WHERE user_id_1 = ANY (?)";
+
+    // Lignes antérieures à la reconstruction ; un recompute() pendant celle-ci écrit une date ultérieure
+    private static final String PURGE_SQL = "DELETE FROM user_similarities WHERE last_calculated < ?";
+
+    private static final String INSERT_SQL =
+        "INSERT INTO user_similarities (user_id_1, user_id_2, similarity_score, last_calculated) VALUES (?, ?, ?, ?)";
+
+    // Utilisateurs réécrits par transaction
+    private static final int WRITE_BATCH_USERS = 200;
+
+    // Graine fixe : mêmes fonctions de hachage d'une reconstruction à l'autre
+    private static final long MINHASH_SEED = 0x5EEDL;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${souqly.recommendations.user-similarity.min-similarity:0.1}")
+    private float minSimilarity;
+
+    @Value("${souqly.recommendations.user-similarity.max-neighbors:100}")
+    private int maxNeighbors;
+
+    @Value("${souqly.recommendations.user-similarity.max-items-per-user:200}")
+    private int maxItemsPerUser;
+
+    @Value("${souqly.recommendations.user-similarity.lsh.enabled:true}")
+    private boolean lshEnabled;
+
+    @Value("${souqly.recommendations.user-similarity.lsh.bands:32}")
+    private int bands;
+
+    @Value("${souqly.recommendations.user-similarity.lsh.rows:2}")
+    private int rows;
+
+    // Seau trop peuplé (profil très générique) : ignoré pour cette bande, les autres bandes restent comparées
+    @Value("${souqly.recommendations.user-similarity.lsh.max-bucket-size:1000}")
+    private int maxBucketSize;
+
+    // Au-delà, un produit n'est plus parcouru : chaque candidat LSH y est cherché par dichotomie
+    @Value("${souqly.recommendations.user-similarity.heavy-item-postings:5000}")
+    private int heavyItemPostings;
+
+    // Reconstruction demandée par l'API d'administration
+    private final BackgroundJob rebuildJob = new BackgroundJob("user-similarity-rebuild");
+
+    public UserSimilarityEngine(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Lance la reconstruction en arrière-plan. Retourne false si elle tourne déjà.
+     */
+    public boolean startRebuild() {
+        return rebuildJob.start(this::rebuild);
+    }
+
+    /**
+     * État de la dernière reconstruction lancée par {@link #startRebuild()} (résultat : paires écrites)
+     */
+    public Map<String, Object> rebuildStatus() {
+        return rebuildJob.status();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildJob.shutdown();
+    }
+
+    /**
+     * Recalcule les voisins d'un seul utilisateur (Jaccard exact, en une requête) ; renvoie le nombre de voisins écrits
+     */
+    public int recompute(Long userId) {
+        long[] neighborIds = new long[maxNeighbors];
+        float[] scores = new float[maxNeighbors];
+        int[] size = new int[1];
+        jdbcTemplate.query(USER_SIMILARITIES_SQL, rs -> {
+            neighborIds[size[0]] = rs.getLong(1);
+            scores[size[0]++] = rs.getFloat(2);
+        }, userId, userId, minSimilarity, maxNeighbors);
+
+        Batch batch = new Batch(1, maxNeighbors);
+        batch.add(userId, neighborIds, scores, size[0]);
+        flush(batch, Timestamp.valueOf(LocalDateTime.now()), false);
+        return size[0];
+    }
+
+    /**
+     * Recalcule toutes les similarités ; renvoie le nombre de paires écrites
+     */
+    @Scheduled(cron = "${souqly.recommendations.user-similarity.cron:0 30 4 * * *}")
+    public synchronized long rebuild() {
+        InteractionMatrix matrix = InteractionMatrix.load(jdbcTemplate, transactionTemplate, maxItemsPerUser);
+        return rebuild(matrix, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Calcul et réécriture des similarités d'une matrice déjà chargée
+     */
+    long rebuild(InteractionMatrix matrix, Timestamp calculatedAt) {
+        long start = System.currentTimeMillis();
+        int[][] inverted = matrix.itemUsers();
+        int[] signatures = lshEnabled ? signatures(matrix) : null;
+        long[] buckets = lshEnabled ? buckets(matrix.userCount, signatures) : null;
+
+        int[] counts = new int[matrix.userCount];
+        int[] stamps = new int[matrix.userCount];
+        int[] candidates = new int[matrix.userCount];
+        long[] neighborIds = new long[maxNeighbors];
+        float[] scores = new float[maxNeighbors];
+        Batch batch = new Batch(WRITE_BATCH_USERS, WRITE_BATCH_USERS * maxNeighbors);
+        long written = 0;
+        long compared = 0;
+
+        for (int user = 0; user < matrix.userCount; user++) {
+            int candidateCount = lshEnabled
+                ? lshCandidates(matrix.userCount, signatures, buckets, user, stamps, candidates)
+                : 0;
+            candidateCount = countIntersections(matrix, inverted, user, candidateCount, counts, stamps, candidates);
+            compared += candidateCount;
+
+            TopKHeap best = new TopKHeap(maxNeighbors);
+            int size = matrix.itemsOf(user);
+            for (int i = 0; i < candidateCount; i++) {
+                int candidate = candidates[i];
+                int common = counts[candidate];
+                counts[candidate] = 0;
+                if (common == 0) {
+                    continue;
+                }
+                float jaccard = (float) common / (size + matrix.itemsOf(candidate) - common);
+                if (jaccard >= minSimilarity) {
+                    best.offer(matrix.userIds[candidate], jaccard);
+                }
+            }
+
+            int neighbors = best.drainDescending(neighborIds, scores);
+            batch.add(matrix.userIds[user], neighborIds, scores, neighbors);
+            if (batch.userCount == WRITE_BATCH_USERS && user < matrix.userCount - 1) {
+                written += flush(batch, calculatedAt, false);
+            }
+        }
+        // Dernier groupe (éventuellement vide) et purge des utilisateurs sortis, dans la même transaction
+        written += flush(batch, calculatedAt, true);
+
+        log.info("Similarités utilisateur recalculées en {} ms: {} utilisateurs, {} comparaisons, {} paires écrites (LSH {})",
+            System.currentTimeMillis() - start, matrix.userCount, compared, written, lshEnabled ? "actif" : "inactif");
+        return written;
+    }
+
+    /**
+     * Ajoute counts[v] = |items(user) ∩ items(v)| pour les candidats ; renvoie le nombre de candidats.
+     * Avec LSH, candidates[0 .. candidateCount) est fixé et marqué (stamps[v] == user + 1) ;
+     * sans LSH, chaque utilisateur rencontré dans l'index inversé devient candidat.
+     */
+    private int countIntersections(InteractionMatrix matrix, int[][] inverted, int user, int candidateCount,
+                                   int[] counts, int[] stamps, int[] candidates) {
+        int stamp = user + 1;
+        int[] offsets = inverted[0];
+        int[] postings = inverted[1];
+        for (int i = matrix.userOffsets[user]; i < matrix.userOffsets[user + 1]; i++) {
+            int item = matrix.items[i];
+            int from = offsets[item];
+            int to = offsets[item + 1];
+            if (lshEnabled && to - from > heavyItemPostings) {
+                for (int c = 0; c < candidateCount; c++) {
+                    if (Arrays.binarySearch(postings, from, to, candidates[c]) >= 0) {
+                        counts[candidates[c]]++;
+                    }
+                }
+                continue;
+            }
+            for (int p = from; p < to; p++) {
+                int other = postings[p];
+                if (other == user) {
+                    continue;
+                }
+                if (stamps[other] != stamp) {
+                    if (lshEnabled) {
+                        continue;
+                    }
+                    stamps[other] = stamp;
+                    candidates[candidateCount++] = other;
+                }
+                counts[other]++;
+            }
+        }
+        return candidateCount;
+    }
+
+    private int[] signatures(InteractionMatrix matrix) {
+        int hashes = bands * rows;
+        long[] seeds = new long[hashes];
+        SplittableRandom random = new SplittableRandom(MINHASH_SEED);
+        for (int h = 0; h < hashes; h++) {
+            seeds[h] = random.nextLong();
+        }
+
+        int[] signatures = new int[matrix.userCount * hashes];
+        Arrays.fill(signatures, Integer.MAX_VALUE);
+        for (int user = 0; user < matrix.userCount; user++) {
+            int base = user * hashes;
+            for (int i = matrix.userOffsets[user]; i < matrix.userOffsets[user + 1]; i++) {
+                long productId = matrix.productIds[matrix.items[i]];
+                for (int h = 0; h < hashes; h++) {
+                    int value = (int) mix(productId ^ seeds[h]);
+                    if (value < signatures[base + h]) {
+                        signatures[base + h] = value;
+                    }
+                }
+            }
+        }
+        return signatures;
+    }
+
+    /**
+     * Seaux LSH : pour chaque bande, un segment de userCount clés (hash de bande << 32 | utilisateur) triées,
+     * les utilisateurs d'un même seau y sont contigus
+     */
+    private long[] buckets(int userCount, int[] signatures) {
+        long[] buckets = new long[bands * userCount];
+        for (int band = 0; band < bands; band++) {
+            int segment = band * userCount;
+            for (int user = 0; user < userCount; user++) {
+                buckets[segment + user] = ((long) bandHash(signatures, user, band) << 32) | user;
+            }
+            Arrays.sort(buckets, segment, segment + userCount);
+        }
+        return buckets;
+    }
+
+    private int lshCandidates(int userCount, int[] signatures, long[] buckets, int user,
+                              int[] stamps, int[] candidates) {
+        int stamp = user + 1;
+        int candidateCount = 0;
+        for (int band = 0; band < bands; band++) {
+            long hash = Integer.toUnsignedLong(bandHash(signatures, user, band));
+            int from = band * userCount;
+            int to = from + userCount;
+            int first = Arrays.binarySearch(buckets, from, to, hash << 32);
+            if (first < 0) {
+                first = -first - 1;
+            }
+            int last = first;
+            while (last < to && buckets[last] >>> 32 == hash) {
+                last++;
+            }
+            if (last - first > maxBucketSize) {
+                continue;
+            }
+            for (int k = first; k < last; k++) {
+                int other = (int) buckets[k];
+                if (other != user && stamps[other] != stamp) {
+                    stamps[other] = stamp;
+                    candidates[candidateCount++] = other;
+                }
+            }
+        }
+        return candidateCount;
+    }
+
+    private int bandHash(int[] signatures, int user, int band) {
+        int base = user * bands * rows + band * rows;
+        long hash = band;
+        for (int r = 0; r < rows; r++) {
+            hash = hash * 31 + signatures[base + r];
+        }
+        return (int) mix(hash);
+    }
+
+    // Finaliseur de MurmurHash3 (64 bits)
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private long flush(Batch batch, Timestamp calculatedAt, boolean purgeStale) {
+        Long[] users = Arrays.copyOf(batch.users, batch.userCount);
+        int rowCount = batch.rowCount;
+        transactionTemplate.executeWithoutResult(status -> {
+            if (purgeStale) {
+                int purged = jdbcTemplate.update(PURGE_SQL, calculatedAt);
+                log.debug("{} similarités d'utilisateurs sortis de la matrice supprimées", purged);
+            }
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(DELETE_SQL);
+                ps.setArray(1, con.createArrayOf("bigint", users));
+                return ps;
+            });
+            jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setLong(1, batch.user1[i]);
+                    ps.setLong(2, batch.user2[i]);
+                    ps.setBigDecimal(3, BigDecimal.valueOf(batch.scores[i]).setScale(4, RoundingMode.HALF_UP));
+                    ps.setTimestamp(4, calculatedAt);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return rowCount;
+                }
+            });
+        });
+        batch.userCount = 0;
+        batch.rowCount = 0;
+        return rowCount;
+    }
+
+    /**
+     * Lignes à réécrire pour un groupe d'utilisateurs, en tableaux réutilisés d'un groupe à l'autre
+     */
+    private static final class Batch {
+
+        final Long[] users;
+        final long[] user1;
+        final long[] user2;
+        final float[] scores;
+        int userCount;
+        int rowCount;
+
+        Batch(int maxUsers, int maxRows) {
+            this.users = new Long[maxUsers];
+            this.user1 = new long[maxRows];
+            this.user2 = new long[maxRows];
+            this.scores = new float[maxRows];
+        }
+
+        void add(long userId, long[] neighborIds, float[] neighborScores, int size) {
+            users[userCount++] = userId;
+            for (int i = 0; i < size; i++) {
+                user1[rowCount] = userId;
+                user2[rowCount] = neighborIds[i];
+                scores[rowCount++] = neighborScores[i];
+            }
+        }
+    }
+}
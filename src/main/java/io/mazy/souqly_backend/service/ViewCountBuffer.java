@@ -0,0 +1,194 @@
+package io.mazy.souqly_backend.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import io.mazy.souqly_backend.config.CacheConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tampon d'ingestion des vues produit.
+ *
+ * Une vue ne touche plus la base dans la requête HTTP : le couple (produit, utilisateur) est dédoublonné
+ * en mémoire, le delta du produit est incrémenté en mémoire, et un flush périodique écrit
+ * les vues nouvelles puis un seul UPDATE view_count = view_count + delta par produit, en lot.
+ * Le flush retire de la map chaque produit qu'il prend : elle ne garde que les produits vus depuis.
+ *
+ * La table product_views reste la référence : l'insertion est conditionnelle (NOT EXISTS), et une vue
+ * refusée (déjà en base, produit ou utilisateur supprimé) est retirée du delta avant l'UPDATE.
+ * Les produits dont le compteur change de palier sont ajoutés à search_outbox dans la même transaction
+ * (signal viewCount du classement, voir {@link SearchOutboxListener#enqueueCounterChanges}),
+ * et leur détail est retiré de PRODUCT_DETAIL après le commit pour ne pas servir un viewCount figé jusqu'au TTL.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ViewCountBuffer {
+
+    private static final String INSERT_VIEW_SQL =
+        "INSERT INTO product_views (product_id, user_id, viewed_at) SELECT ?, ?, CURRENT_TIMESTAMP " +
+        "WHERE EXISTS (SELECT 1 FROM products WHERE id = ?) " +
+        "AND EXISTS (SELECT 1 FROM users WHERE id = ?) " +
+        "AND NOT EXISTS (SELECT 1 FROM product_views WHERE product_id = ? AND user_id = ?)";
+
+    private static final String UPDATE_COUNT_SQL =
+        "UPDATE products SET view_count = GREATEST(COALESCE(view_count, 0) + ?, 0) WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SearchOutboxListener searchOutbox;
+    private final CacheManager cacheManager;
+
+    // Deltas par produit, modifiés uniquement par des opérations atomiques de la map (merge, remove) :
+    // le flush peut retirer une entrée sans perdre un incrément concurrent
+    private final ConcurrentHashMap<Long, Long> pendingDeltas = new ConcurrentHashMap<>();
+
+    // Vues à insérer dans product_views au prochain flush
+    private final ConcurrentLinkedQueue<ViewKey> pendingViews = new ConcurrentLinkedQueue<>();
+
+    // Dédoublonnage sur deux fenêtres glissantes : un couple est reconnu pendant une à deux fenêtres
+    private volatile Set<ViewKey> currentWindow = ConcurrentHashMap.newKeySet();
+    private volatile Set<ViewKey> previousWindow = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Enregistre une vue. Non bloquant, aucune requête SQL.
+     */
+    public void record(Long productId, Long userId) {
+        ViewKey key = new ViewKey(productId, userId);
+        if (previousWindow.contains(key) || !currentWindow.add(key)) {
+            return;
+        }
+        pendingViews.add(key);
+        pendingDeltas.merge(productId, 1L, Long::sum);
+    }
+
+    @Scheduled(fixedDelayString = "${souqly.views.dedup-window-ms:3600000}",
+               initialDelayString = "${souqly.views.dedup-window-ms:3600000}")
+    public void rotateWindow() {
+        previousWindow = currentWindow;
+        currentWindow = ConcurrentHashMap.newKeySet();
+    }
+
+    @Scheduled(fixedDelayString = "${souqly.views.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        List<ViewKey> views = new ArrayList<>();
+        for (ViewKey view; (view = pendingViews.poll()) != null; ) {
+            views.add(view);
+        }
+
+        // TreeMap : UPDATE dans l'ordre des ids, pour éviter les interblocages entre instances
+        Map<Long, Long> drained = new TreeMap<>();
+        for (Long productId : pendingDeltas.keySet()) {
+            Long delta = pendingDeltas.remove(productId);
+            if (delta != null && delta != 0) {
+                drained.put(productId, delta);
+            }
+        }
+
+        if (views.isEmpty() && drained.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(views, drained));
+        } catch (RuntimeException e) {
+            // Transaction annulée : tout est remis en attente pour le prochain flush
+            log.error("Flush des vues produit échoué ({} vues, {} produits), nouvel essai au prochain cycle: {}",
+                      views.size(), drained.size(), e.getMessage());
+            pendingViews.addAll(views);
+            drained.forEach((productId, delta) -> pendingDeltas.merge(productId, delta, ViewCountBuffer::sumOrRemove));
+        }
+    }
+
+    private void write(List<ViewKey> views, Map<Long, Long> drained) {
+        Map<Long, Long> deltas = new TreeMap<>(drained);
+
+        if (!views.isEmpty()) {
+            int[][] results = jdbcTemplate.batchUpdate(INSERT_VIEW_SQL, views, 500, (ps, view) -> {
+                ps.setLong(1, view.productId());
+                ps.setLong(2, view.userId());
+                ps.setLong(3, view.productId());
+                ps.setLong(4, view.userId());
+                ps.setLong(5, view.productId());
+                ps.setLong(6, view.userId());
+            });
+            int index = 0;
+            Map<Long, Long> rejected = new HashMap<>();
+            for (int[] batch : results) {
+                for (int inserted : batch) {
+                    if (!isInserted(inserted)) {
+                        rejected.merge(views.get(index).productId(), 1L, Long::sum);
+                    }
+                    index++;
+                }
+            }
+            rejected.forEach((productId, count) -> deltas.merge(productId, -count, Long::sum));
+        }
+
+        List<Object[]> updates = new ArrayList<>();
+        Map<Long, Long> written = new TreeMap<>();
+        deltas.forEach((productId, delta) -> {
+            if (delta != 0) {
+                updates.add(new Object[] { delta, productId });
+                written.put(productId, delta);
+            }
+        });
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_COUNT_SQL, updates);
+            searchOutbox.enqueueCounterChanges(SearchOutboxListener.RankingCounter.VIEWS, written);
+            // Éviction différée après le commit par le gestionnaire de cache transactionnel (CacheConfig)
+            Cache detail = cacheManager.getCache(CacheConfig.PRODUCT_DETAIL);
+            if (detail != null) {
+                written.keySet().forEach(detail::evict);
+            }
+        }
+        log.debug("Flush des vues produit: {} vues, {} compteurs", views.size(), updates.size());
+    }
+
+    /**
+     * Rien n'est perdu à l'arrêt : dernier flush avant la fermeture de la DataSource
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        if (!pendingViews.isEmpty()) {
+            log.warn("{} vues produit non écrites à l'arrêt", pendingViews.size());
+        }
+    }
+
+    /**
+     * Nombre de produits dont le delta attend le prochain flush
+     */
+    int pendingProductCount() {
+        return pendingDeltas.size();
+    }
+
+    private record ViewKey(long productId, long userId) {
+    }
+
+    // Somme nulle : l'entrée est retirée plutôt que gardée à zéro
+    private static Long sumOrRemove(Long current, Long delta) {
+        long sum = current + delta;
+        return sum != 0 ? sum : null;
+    }
+
+    // Un pilote en mode batch réécrit peut renvoyer SUCCESS_NO_INFO au lieu du nombre de lignes
+    private static boolean isInserted(int updateCount) {
+        return updateCount > 0 || updateCount == Statement.SUCCESS_NO_INFO;
+    }
+}
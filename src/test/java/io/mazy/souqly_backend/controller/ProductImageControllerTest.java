@@ -0,0 +1,113 @@
+package io.mazy.souqly_backend.controller;
+
+import io.mazy.souqly_backend.repository.ProductImageRepository;
+import io.mazy.souqly_backend.service.ImageStore;
+import io.mazy.souqly_backend.service.ProductImageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Requêtes conditionnelles sur les images : un 304 ne lit jamais le contenu (fichier ou colonne image_data)
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductImageControllerTest {
+
+    private static final String KEY = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+    @Mock
+    private ProductImageRepository productImageRepository;
+
+    @Mock
+    private ImageStore imageStore;
+
+    @Mock
+    private ProductImageService productImageService;
+
+    @InjectMocks
+    private ProductImageController controller;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void notModifiedStoredImageNeverLoadsContent() throws Exception {
+        when(productImageRepository.findFileMetaById(1L)).thenReturn(Optional.of(meta(KEY, null)));
+
+        mockMvc.perform(get("/api/products/image/1").header(HttpHeaders.IF_NONE_MATCH, "\"" + KEY + "\""))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + KEY + "\""));
+
+        verify(imageStore, never()).load(any());
+        verify(productImageRepository, never()).findLegacyDataById(anyLong());
+    }
+
+    @Test
+    void notModifiedLegacyImageNeverReadsImageData() throws Exception {
+        when(productImageRepository.findFileMetaById(2L)).thenReturn(Optional.of(meta(null, null)));
+
+        mockMvc.perform(get("/api/products/image/2").header(HttpHeaders.IF_NONE_MATCH, "\"image-2\""))
+            .andExpect(status().isNotModified());
+
+        verify(productImageRepository, never()).findLegacyDataById(anyLong());
+        verify(imageStore, never()).load(any());
+    }
+
+    @Test
+    void notModifiedVariantNeverLoadsContent() throws Exception {
+        when(productImageRepository.findFileMetaById(3L)).thenReturn(Optional.of(meta(KEY, "thumb-" + KEY)));
+
+        mockMvc.perform(get("/api/products/image/3/thumb").header(HttpHeaders.IF_NONE_MATCH, "\"thumb-" + KEY + "\""))
+            .andExpect(status().isNotModified());
+
+        verify(imageStore, never()).load(any());
+    }
+
+    @Test
+    void staleEtagServesContent() throws Exception {
+        when(productImageRepository.findFileMetaById(1L)).thenReturn(Optional.of(meta(KEY, null)));
+        when(imageStore.load(KEY)).thenReturn(new ByteArrayResource(new byte[] { 1, 2, 3 }));
+
+        mockMvc.perform(get("/api/products/image/1").header(HttpHeaders.IF_NONE_MATCH, "\"autre\""))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+            .andExpect(content().bytes(new byte[] { 1, 2, 3 }));
+    }
+
+    private static ProductImageRepository.ImageFileMeta meta(String storageKey, String thumbKey) {
+        return new ProductImageRepository.ImageFileMeta() {
+            public Long getProductId() { return 10L; }
+            public String getContentType() { return "image/jpeg"; }
+            public String getStorageKey() { return storageKey; }
+            public Long getSizeBytes() { return 3L; }
+            public String getThumbKey() { return thumbKey; }
+            public String getCardKey() { return null; }
+            public String getFullKey() { return null; }
+            public LocalDateTime getCreatedAt() { return LocalDateTime.of(2025, 1, 1, 12, 0); }
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package io.mazy.souqly_backend.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Curseur search_after : aller-retour, et refus des curseurs d'un autre tri, tronqués ou forgés
+ */
+class SearchAfterCursorTest {
+
+    private static final String PRICE_ASC = "price:asc,id:asc";
+
+    @Test
+    void roundTripKeepsTheSortValues() {
+        String cursor = SearchAfterCursor.encode(PRICE_ASC, List.of(12.5, "42"));
+
+        assertThat(SearchAfterCursor.decode(cursor, PRICE_ASC, 2)).containsExactly(12.5, "42");
+    }
+
+    @Test
+    void emptyCursorIsTheFirstPage() {
+        assertThat(SearchAfterCursor.decode(null, PRICE_ASC, 2)).isNull();
+        assertThat(SearchAfterCursor.decode(" ", PRICE_ASC, 2)).isNull();
+    }
+
+    @Test
+    void cursorOfAnotherSortIsRejected() {
+        String cursor = SearchAfterCursor.encode("_score:desc,id:asc", List.of(3.2, "42"));
+
+        assertThatThrownBy(() -> SearchAfterCursor.decode(cursor, PRICE_ASC, 2))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void cursorWithTheWrongArityIsRejected() {
+        String cursor = SearchAfterCursor.encode(PRICE_ASC, List.of(12.5));
+
+        assertThatThrownBy(() -> SearchAfterCursor.decode(cursor, PRICE_ASC, 2))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void forgedOrUnreadableCursorIsRejected() {
+        String nested = encodeRaw("{\"sort\":\"" + PRICE_ASC + "\",\"after\":[{\"a\":1},\"42\"]}");
+        String legacy = encodeRaw("[12.5,\"42\"]");
+
+        for (String cursor : List.of(nested, legacy, "%%%", encodeRaw("null"))) {
+            assertThatThrownBy(() -> SearchAfterCursor.decode(cursor, PRICE_ASC, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private static String encodeRaw(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
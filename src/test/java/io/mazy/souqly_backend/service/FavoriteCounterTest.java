@@ -0,0 +1,176 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.entity.Category;
+import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.entity.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Compteur de favoris en écriture différée : lecture du delta en attente, flush, nouvel essai après échec
+ * et réconciliation avec la table favorites
+ */
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(FavoriteCounter.class)
+@TestPropertySource(properties = {
+    "spring.liquibase.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+// Les commits de toggles et la réconciliation passent par de vraies transactions
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FavoriteCounterTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @MockitoBean
+    private SearchOutboxListener searchOutbox;
+
+    @Autowired
+    private FavoriteCounter favoriteCounter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        productId = transactionTemplate.execute(status -> {
+            User seller = new User();
+            seller.setEmail(suffix + "@souqly.io");
+            seller.setPassword("secret");
+            entityManager.persist(seller);
+            Category category = new Category();
+            category.setKey("cat-" + suffix);
+            category.setLabel("Catégorie");
+            entityManager.persist(category);
+            Product product = new Product();
+            product.setTitle("Vélo");
+            product.setDescription("Description");
+            product.setPrice(10.0);
+            product.setCondition("Bon état");
+            product.setCategory(category);
+            product.setSeller(seller);
+            product.setFavoriteCount(0);
+            entityManager.persist(product);
+            return product.getId();
+        });
+    }
+
+    @Test
+    void pendingTogglesAreReadBeforeFlushAndWrittenOnce() {
+        favoriteCounter.recordToggle(productId, 1);
+        favoriteCounter.recordToggle(productId, 1);
+
+        assertThat(favoriteCounter.count(productId)).isEqualTo(2);
+        assertThat(persistedCount()).isZero();
+
+        favoriteCounter.flush();
+
+        assertThat(persistedCount()).isEqualTo(2);
+        assertThat(favoriteCounter.count(productId)).isEqualTo(2);
+        verify(searchOutbox).enqueueCounterChanges(SearchOutboxListener.RankingCounter.FAVORITES, Map.of(productId, 2L));
+
+        favoriteCounter.flush();
+        assertThat(persistedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void toggleOfRolledBackTransactionIsDropped() {
+        transactionTemplate.executeWithoutResult(status -> {
+            favoriteCounter.recordToggle(productId, 1);
+            status.setRollbackOnly();
+        });
+
+        assertThat(favoriteCounter.count(productId)).isZero();
+    }
+
+    @Test
+    void failedFlushKeepsDeltasForTheNextOne() {
+        doThrow(new IllegalStateException("outbox indisponible")).doNothing()
+            .when(searchOutbox).enqueueCounterChanges(any(), any());
+        favoriteCounter.recordToggle(productId, 1);
+
+        favoriteCounter.flush();
+
+        assertThat(persistedCount()).isZero();
+        assertThat(favoriteCounter.count(productId)).isEqualTo(1);
+
+        favoriteCounter.flush();
+
+        assertThat(persistedCount()).isEqualTo(1);
+        assertThat(favoriteCounter.count(productId)).isEqualTo(1);
+    }
+
+    @Test
+    void reconcileResetsDriftedCounts() {
+        jdbcTemplate.update("UPDATE products SET favorite_count = 5 WHERE id = ?", productId);
+        addFavorite(1L);
+        addFavorite(2L);
+
+        favoriteCounter.reconcile();
+
+        assertThat(persistedCount()).isEqualTo(2);
+        assertThat(favoriteCounter.count(productId)).isEqualTo(2);
+    }
+
+    @Test
+    void toggleCommittedAfterTheReconcileFlushIsNotCountedTwice() {
+        // Favori validé, delta encore en attente : déjà présent dans le COUNT de favorites
+        doNothing().when(searchOutbox).enqueueCounterChanges(any(), any());
+        transactionTemplate.executeWithoutResult(status -> {
+            addFavorite(1L);
+            favoriteCounter.recordToggle(productId, 1);
+        });
+
+        favoriteCounter.correctDrift();
+        favoriteCounter.flush();
+
+        assertThat(persistedCount()).isEqualTo(1);
+        assertThat(favoriteCounter.count(productId)).isEqualTo(1);
+    }
+
+    private void addFavorite(Long userId) {
+        jdbcTemplate.update("INSERT INTO favorites (user_id, product_id, created_at) VALUES (?, ?, now())",
+            userId, productId);
+    }
+
+    private int persistedCount() {
+        return jdbcTemplate.queryForObject("SELECT favorite_count FROM products WHERE id = ?", Integer.class, productId);
+    }
+}
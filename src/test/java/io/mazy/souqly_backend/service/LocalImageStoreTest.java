@@ -0,0 +1,114 @@
+package io.mazy.souqly_backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Store de fichiers adressé par contenu : clé SHA-256, déduplication, envois concurrents et clés invalides
+ */
+class LocalImageStoreTest {
+
+    private static final byte[] CONTENT = "contenu d'une image".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path dir;
+
+    private LocalImageStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = new LocalImageStore(dir.toString());
+    }
+
+    @Test
+    void keyIsTheSha256OfTheContent() throws Exception {
+        ImageStore.StoredBlob blob = store.store(new ByteArrayInputStream(CONTENT));
+
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+        assertThat(blob.key()).isEqualTo(expected);
+        assertThat(blob.size()).isEqualTo(CONTENT.length);
+        try (InputStream in = store.load(blob.key()).getInputStream()) {
+            assertThat(in.readAllBytes()).isEqualTo(CONTENT);
+        }
+    }
+
+    @Test
+    void identicalContentSharesOneFileAndLeavesNoTemporaryFile() throws Exception {
+        String first = store.store(new ByteArrayInputStream(CONTENT)).key();
+        String second = store.store(new ByteArrayInputStream(CONTENT)).key();
+
+        assertThat(second).isEqualTo(first);
+        assertThat(storedFiles()).hasSize(1);
+        try (Stream<Path> tmp = Files.list(dir.resolve("tmp"))) {
+            assertThat(tmp).isEmpty();
+        }
+    }
+
+    @Test
+    void concurrentUploadsOfTheSameContentEndWithOneFile() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch go = new CountDownLatch(1);
+        try {
+            List<Future<String>> keys = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                keys.add(executor.submit(() -> {
+                    go.await(5, TimeUnit.SECONDS);
+                    return store.store(new ByteArrayInputStream(CONTENT)).key();
+                }));
+            }
+            go.countDown();
+            String key = keys.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<String> other : keys) {
+                assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo(key);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(storedFiles()).hasSize(1);
+    }
+
+    @Test
+    void deletedOrUnknownKeyLoadsNothing() throws Exception {
+        String key = store.store(new ByteArrayInputStream(CONTENT)).key();
+
+        store.delete(key);
+        store.delete(key);
+
+        assertThat(store.load(key)).isNull();
+        assertThat(storedFiles()).isEmpty();
+    }
+
+    @Test
+    void keyOutsideTheHexAlphabetIsRejected() {
+        assertThatThrownBy(() -> store.load("../../etc/passwd")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> store.delete("ABCD")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<Path> storedFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                .filter(path -> !path.getParent().equals(dir.resolve("tmp")))
+                .toList();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.entity.ProductImage;
+import io.mazy.souqly_backend.repository.ProductImageRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Images sur un vrai PostgreSQL et un store local : fichiers partagés par contenu, suppression du dernier
+ * référent seulement, réécriture d'un fichier disparu et verrous consultatifs par clé
+ */
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ ProductImageService.class, ImageBlobLocks.class, LocalImageStore.class })
+@TestPropertySource(properties = {
+    "spring.liquibase.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+// Chaque opération valide ses propres transactions, les verrous sont relâchés au commit
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductImageServiceTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @TempDir
+    static Path storageDir;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("souqly.images.storage-dir", () -> storageDir.toString());
+    }
+
+    @MockitoBean
+    private ImageVariantService imageVariantService;
+
+    @MockitoBean
+    private SearchOutboxListener searchOutbox;
+
+    @Autowired
+    private ProductImageService productImageService;
+
+    @Autowired
+    private ProductImageRepository productImageRepository;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ImageBlobLocks blobLocks;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    void uploadStoresTheFileAndSchedulesVariants() throws Exception {
+        byte[] content = uniqueContent();
+
+        Long imageId = productImageService.upload(file(content));
+
+        ProductImage image = productImageRepository.findById(imageId).orElseThrow();
+        assertThat(image.getSizeBytes()).isEqualTo(content.length);
+        assertThat(image.getVariantAttempts()).isZero();
+        assertThat(imageStore.load(image.getStorageKey())).isNotNull();
+        verify(imageVariantService).submit(imageId, image.getStorageKey());
+    }
+
+    @Test
+    void sharedFileIsDeletedWithItsLastImageOnly() throws Exception {
+        byte[] content = uniqueContent();
+        Long first = productImageService.upload(file(content));
+        Long second = productImageService.upload(file(content));
+        String key = productImageRepository.findById(first).orElseThrow().getStorageKey();
+        assertThat(productImageRepository.findById(second).orElseThrow().getStorageKey()).isEqualTo(key);
+
+        productImageService.delete(first);
+        assertThat(imageStore.load(key)).isNotNull();
+
+        productImageService.delete(second);
+        assertThat(imageStore.load(key)).isNull();
+    }
+
+    @Test
+    void uploadRewritesAFileDeletedUnderIt() throws Exception {
+        byte[] content = uniqueContent();
+        // Fichier présent au premier store, supprimé avant la prise du verrou (dernier référent supprimé entre-temps)
+        ImageStore disappearing = spy(imageStore);
+        doAnswer(invocation -> {
+            ImageStore.StoredBlob blob = (ImageStore.StoredBlob) invocation.callRealMethod();
+            imageStore.delete(blob.key());
+            return blob;
+        }).doCallRealMethod().when(disappearing).store(any());
+        ProductImageService service = new ProductImageService(productImageRepository, disappearing,
+            imageVariantService, blobLocks, searchOutbox, cacheManager, transactionTemplate);
+
+        Long imageId = service.upload(file(content));
+
+        String key = productImageRepository.findById(imageId).orElseThrow().getStorageKey();
+        assertThat(imageStore.load(key)).isNotNull();
+        verify(disappearing, times(2)).store(any());
+    }
+
+    @Test
+    void lockOnAKeyWaitsForTheHoldingTransaction() throws Exception {
+        String key = UUID.randomUUID().toString();
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> holder = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                blobLocks.lock(List.of(key));
+                held.countDown();
+                await(release);
+            }));
+            assertThat(held.await(5, TimeUnit.SECONDS)).isTrue();
+
+            Future<?> waiter = executor.submit(() ->
+                transactionTemplate.executeWithoutResult(status -> blobLocks.lock(List.of(key))));
+            assertThatThrownBy(() -> waiter.get(300, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+            release.countDown();
+            holder.get(5, TimeUnit.SECONDS);
+            waiter.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void lockOutsideATransactionIsRefused() {
+        assertThatThrownBy(() -> blobLocks.lock(List.of("clé")))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void deletingAnUnattachedImageDoesNotTouchTheOutbox() throws Exception {
+        Long imageId = productImageService.upload(file(uniqueContent()));
+
+        productImageService.delete(imageId);
+
+        assertThat(productImageRepository.findById(imageId)).isEmpty();
+        verify(searchOutbox, never()).enqueueAll(any());
+    }
+
+    private static MockMultipartFile file(byte[] content) {
+        return new MockMultipartFile("file", "photo.jpg", "image/jpeg", content);
+    }
+
+    // Contenu propre à chaque test : le store et la base sont partagés par la classe
+    private static byte[] uniqueContent() {
+        return ("image " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.dto.ProductImportResult;
+import io.mazy.souqly_backend.entity.Category;
+import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.entity.ProductImage;
+import io.mazy.souqly_backend.entity.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Import en masse : écriture par lots, lignes invalides rejetées avec leur numéro, flux illisible interrompu
+ * sans perdre les lots écrits et lot en échec rejeté en entier
+ */
+@DataJpaTest
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import(ProductImportService.class)
+@TestPropertySource(properties = {
+    "spring.liquibase.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "souqly.import.chunk-size=2"
+})
+// Chaque lot valide sa propre transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductImportServiceTest {
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Long sellerId;
+    private Long categoryId;
+
+    @BeforeEach
+    void setUp() {
+        // Base partagée par la classe : vendeur et catégorie propres à chaque test
+        String suffix = UUID.randomUUID().toString();
+        transactionTemplate.executeWithoutResult(status -> {
+            User seller = new User();
+            seller.setEmail("seller-" + suffix + "@souqly.io");
+            seller.setPassword("secret");
+            entityManager.persist(seller);
+            Category category = new Category();
+            category.setKey("cat-" + suffix);
+            category.setLabel("Catégorie");
+            entityManager.persist(category);
+            sellerId = seller.getId();
+            categoryId = category.getId();
+        });
+    }
+
+    @Test
+    void validLinesAreWrittenAcrossChunksWithTheirImages() throws Exception {
+        Long free = image(null);
+        Long taken = image(product());
+        String ndjson = line("Veste", 30.0, "[" + free + "]") + line("Robe", 20.0, null)
+            + line("Bottes", 50.0, "[" + taken + "]") + line("Sac", 15.0, null) + line("Jupe", 12.0, null);
+
+        ProductImportResult result = productImportService.importProducts(input(ndjson), sellerId);
+
+        assertThat(result.getReceived()).isEqualTo(5);
+        assertThat(result.getCreated()).isEqualTo(5);
+        assertThat(result.getErrors()).isEmpty();
+        assertThat(result.getAbortedReason()).isNull();
+        assertThat(imported()).isEqualTo(5);
+        Long veste = jdbcTemplate.queryForObject(
+            "SELECT id FROM products WHERE seller_id = ? AND title = 'Veste'", Long.class, sellerId);
+        assertThat(imageOwner(free)).isEqualTo(veste);
+        // Une image déjà rattachée à une autre annonce n'est pas déplacée
+        assertThat(imageOwner(taken)).isNotEqualTo(veste).isNotNull();
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM products WHERE seller_id = ? AND status <> 'ACTIVE'", Integer.class, sellerId))
+            .isZero();
+    }
+
+    @Test
+    void jsonArrayIsAcceptedLikeNdjson() throws Exception {
+        String array = "[" + line("Veste", 30.0, null).trim() + "," + line("Robe", 20.0, null).trim() + "]";
+
+        ProductImportResult result = productImportService.importProducts(input(array), sellerId);
+
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(imported()).isEqualTo(2);
+    }
+
+    @Test
+    void invalidLinesAreRejectedWithTheirLineNumber() throws Exception {
+        String ndjson = line("Veste", 30.0, null)
+            + "{\"description\":\"Sans titre\",\"price\":10,\"condition\":\"Neuf\",\"categoryId\":" + categoryId + "}\n"
+            + line("Gratuite", 0.0, null)
+            + "{\"title\":\"Ailleurs\",\"description\":\"Description\",\"price\":10,\"condition\":\"Neuf\","
+            + "\"categoryId\":" + Long.MAX_VALUE + "}\n"
+            + "null\n"
+            + line("Robe", 20.0, null);
+
+        ProductImportResult result = productImportService.importProducts(input(ndjson), sellerId);
+
+        assertThat(result.getReceived()).isEqualTo(6);
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(result.getErrors()).extracting(ProductImportResult.LineError::getLine).containsExactly(2, 3, 4, 5);
+        assertThat(result.getErrors()).extracting(ProductImportResult.LineError::getMessage).containsExactly(
+            "Titre obligatoire (120 caractères max)", "Prix invalide", "Catégorie non trouvée", "Ligne vide");
+        assertThat(imported()).isEqualTo(2);
+    }
+
+    @Test
+    void unreadableJsonStopsTheImportAndKeepsWrittenChunks() throws Exception {
+        String ndjson = line("Veste", 30.0, null) + line("Robe", 20.0, null) + line("Sac", 15.0, null)
+            + "{\"title\": \n" + line("Jupe", 12.0, null);
+
+        ProductImportResult result = productImportService.importProducts(input(ndjson), sellerId);
+
+        // Le lot complet et le lot partiel en attente sont écrits, rien n'est lu après l'erreur
+        assertThat(result.getCreated()).isEqualTo(3);
+        assertThat(result.getAbortedReason()).startsWith("JSON illisible après la ligne 3");
+        assertThat(imported()).isEqualTo(3);
+    }
+
+    @Test
+    void chunkThatFailsToWriteRejectsAllItsLines() throws Exception {
+        String ndjson = line("Veste", 30.0, null) + line("Robe", 20.0, null) + line("Sac", 15.0, null);
+
+        // Vendeur inconnu : la clé étrangère fait échouer chaque lot au flush
+        ProductImportResult result = productImportService.importProducts(input(ndjson), Long.MAX_VALUE);
+
+        assertThat(result.getReceived()).isEqualTo(3);
+        assertThat(result.getCreated()).isZero();
+        assertThat(result.getErrors()).extracting(ProductImportResult.LineError::getLine).containsExactly(1, 2, 3);
+        assertThat(result.getErrors()).allSatisfy(error ->
+            assertThat(error.getMessage()).startsWith("Échec d'écriture du lot"));
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM products WHERE seller_id = ?", Integer.class, Long.MAX_VALUE)).isZero();
+    }
+
+    private String line(String title, double price, String imageIds) {
+        return "{\"title\":\"" + title + "\",\"description\":\"Description\",\"price\":" + price
+            + ",\"condition\":\"Bon état\",\"categoryId\":" + categoryId
+            + (imageIds == null ? "" : ",\"imageIds\":" + imageIds) + "}\n";
+    }
+
+    private static ByteArrayInputStream input(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int imported() {
+        return jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM products WHERE seller_id = ? AND title <> 'Existant'", Integer.class, sellerId);
+    }
+
+    private Long imageOwner(Long imageId) {
+        return jdbcTemplate.queryForObject("SELECT product_id FROM product_images WHERE id = ?", Long.class, imageId);
+    }
+
+    private Product product() {
+        return transactionTemplate.execute(status -> {
+            Product product = new Product();
+            product.setTitle("Existant");
+            product.setDescription("Description");
+            product.setPrice(10.0);
+            product.setCondition("Bon état");
+            product.setCategory(entityManager.getReference(Category.class, categoryId));
+            product.setSeller(entityManager.getReference(User.class, sellerId));
+            entityManager.persist(product);
+            return product;
+        });
+    }
+
+    private Long image(Product product) {
+        return transactionTemplate.execute(status -> {
+            ProductImage image = new ProductImage();
+            image.setProduct(product == null ? null : entityManager.merge(product));
+            image.setStorageKey(UUID.randomUUID().toString().replace("-", ""));
+            entityManager.persist(image);
+            return image.getId();
+        });
+    }
+}
@@ -0,0 +1,181 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.dto.ProductListDTO;
+import io.mazy.souqly_backend.entity.Category;
+import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.entity.ProductImage;
+import io.mazy.souqly_backend.entity.User;
+import io.mazy.souqly_backend.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Banc d'essai du listing sur 100 000 produits : chemin historique (entités Product et graphe EAGER)
+ * contre la projection de {@link ProductListingService}. Mesure par page de 20 : requêtes SQL,
+ * entités et collections hydratées, octets alloués par le thread.
+ *
+ * Hors build : ./gradlew benchmark
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Import(ProductListingService.class)
+@TestPropertySource(properties = {
+    "spring.liquibase.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.properties.hibernate.generate_statistics=true",
+    "spring.jpa.show-sql=false"
+})
+class ProductListingBenchmarkTest {
+
+    private static final int PRODUCTS = 100_000;
+    private static final int SELLERS = 1_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int WARMUP_PAGES = 20;
+    private static final int MEASURED_PAGES = 50;
+
+    @MockitoBean
+    private FavoriteCounter favoriteCounter;
+
+    @Autowired
+    private ProductListingService productListingService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void listingPageCost() {
+        seed();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Measure before = measure(statistics, page -> {
+            Page<Product> products = productRepository.findActiveAndSoldProducts(PageRequest.of(page, PAGE_SIZE));
+            return products.map(product -> new ProductListDTO(product, product.getFavoriteCount())).getContent();
+        });
+        Measure after = measure(statistics,
+            page -> productListingService.getActiveAndSoldPage(PageRequest.of(page, PAGE_SIZE)).getContent());
+
+        System.out.printf("Listing, %d produits, pages de %d%n", PRODUCTS, PAGE_SIZE);
+        System.out.printf("  entités     : %s%n", before);
+        System.out.printf("  projection  : %s%n", after);
+
+        assertThat(after.entities()).isZero();
+        assertThat(after.statements()).isLessThanOrEqualTo(3);
+        assertThat(after.bytes()).isLessThan(before.bytes());
+    }
+
+    private Measure measure(Statistics statistics, IntFunction<List<ProductListDTO>> loadPage) {
+        for (int page = 0; page < WARMUP_PAGES; page++) {
+            loadPage.apply(page);
+            entityManager.clear();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        statistics.clear();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        for (int page = 0; page < MEASURED_PAGES; page++) {
+            assertThat(loadPage.apply(page)).hasSize(PAGE_SIZE);
+            // Pas de cache de premier niveau d'une page à l'autre, comme d'une requête HTTP à l'autre
+            entityManager.clear();
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        return new Measure(
+            (double) statistics.getPrepareStatementCount() / MEASURED_PAGES,
+            (double) statistics.getEntityLoadCount() / MEASURED_PAGES,
+            (double) statistics.getCollectionFetchCount() / MEASURED_PAGES,
+            allocated / MEASURED_PAGES);
+    }
+
+    // 10 catégories racines de 10 sous-catégories, 1 000 vendeurs, une image par produit
+    private void seed() {
+        List<Category> leaves = new ArrayList<>();
+        for (int r = 0; r < 10; r++) {
+            Category root = new Category();
+            root.setKey("root-" + r);
+            root.setLabel("Racine " + r);
+            for (int c = 0; c < 10; c++) {
+                Category leaf = new Category();
+                leaf.setKey("leaf-" + r + "-" + c);
+                leaf.setLabel("Sous-catégorie " + c);
+                leaf.setParent(root);
+                root.getChildren().add(leaf);
+                leaves.add(leaf);
+            }
+            entityManager.persist(root);
+        }
+        List<User> sellers = new ArrayList<>(SELLERS);
+        for (int s = 0; s < SELLERS; s++) {
+            User seller = new User();
+            seller.setEmail("seller-" + s + "@souqly.io");
+            seller.setPassword("secret");
+            entityManager.persist(seller);
+            sellers.add(seller);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        byte[] imageData = new byte[512];
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setTitle("Produit " + i);
+            product.setDescription("Description du produit " + i);
+            product.setPrice(5.0 + i % 500);
+            product.setCondition("Bon état");
+            product.setBrand("Marque " + i % 50);
+            product.setCreatedAt(now.minusMinutes(i));
+            product.setCategory(reference(Category.class, leaves.get(i % leaves.size()).getId()));
+            product.setSeller(reference(User.class, sellers.get(i % SELLERS).getId()));
+            ProductImage image = new ProductImage();
+            image.setProduct(product);
+            image.setFileName("image-" + i + ".jpg");
+            image.setContentType("image/jpeg");
+            image.setImageData(imageData);
+            product.getImages().add(image);
+            entityManager.persist(product);
+            if (i % 1_000 == 999) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private <T> T reference(Class<T> type, Long id) {
+        return entityManager.getEntityManager().getReference(type, id);
+    }
+
+    private record Measure(double statements, double entities, double collections, long bytes) {
+        @Override
+        public String toString() {
+            return String.format("%.1f requêtes, %.1f entités, %.1f collections, %d Ko alloués par page",
+                statements, entities, collections, bytes / 1024);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.dto.CursorPage;
+import io.mazy.souqly_backend.dto.PageCursor;
+import io.mazy.souqly_backend.dto.ProductListDTO;
+import io.mazy.souqly_backend.dto.ProductListingFilter;
+import io.mazy.souqly_backend.entity.Category;
+import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Listing en base : tranches du fil paginées par curseur (createdAt, id), filtres et tri du catalogue
+ */
+@DataJpaTest
+@Import(ProductListingService.class)
+@TestPropertySource(properties = {
+    "spring.liquibase.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+class ProductListingServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 1, 12, 0);
+
+    @MockitoBean
+    private FavoriteCounter favoriteCounter;
+
+    @Autowired
+    private ProductListingService productListingService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User seller;
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        seller = new User();
+        seller.setEmail("seller@souqly.io");
+        seller.setPassword("secret");
+        entityManager.persist(seller);
+        category = new Category();
+        category.setKey("mode");
+        category.setLabel("Mode");
+        entityManager.persist(category);
+    }
+
+    @Test
+    void slicesWalkTheFeedOnceInOrderAcrossIdenticalDates() {
+        // Trois produits par date : le départage par id ne doit ni sauter ni répéter de ligne
+        List<Long> expected = new ArrayList<>();
+        for (int minute = 0; minute < 4; minute++) {
+            List<Long> sameDate = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                sameDate.add(product("Produit " + i, NOW.minusMinutes(minute), Product.ProductStatus.ACTIVE));
+            }
+            expected.addAll(sameDate.reversed());
+        }
+        product("Retiré", NOW, Product.ProductStatus.INACTIVE);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Long> walked = new ArrayList<>();
+        String cursor = null;
+        int slices = 0;
+        do {
+            CursorPage<ProductListDTO> slice = productListingService.getActiveAndSoldSlice(cursor, 5);
+            slice.getContent().forEach(product -> walked.add(product.getId()));
+            assertThat(slice.isHasNext()).isEqualTo(slice.getNextCursor() != null);
+            cursor = slice.getNextCursor();
+            slices++;
+        } while (cursor != null);
+
+        assertThat(walked).containsExactlyElementsOf(expected);
+        assertThat(slices).isEqualTo(3);
+    }
+
+    @Test
+    void lastFullSliceHasNoNextCursor() {
+        for (int i = 0; i < 4; i++) {
+            product("Produit " + i, NOW.minusMinutes(i), Product.ProductStatus.SOLD);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        CursorPage<ProductListDTO> slice = productListingService.getActiveAndSoldSlice(null, 4);
+
+        assertThat(slice.getContent()).hasSize(4);
+        assertThat(slice.isHasNext()).isFalse();
+        assertThat(slice.getNextCursor()).isNull();
+    }
+
+    @Test
+    void cursorStartsStrictlyAfterItsPosition() {
+        Long newest = product("Récent", NOW, Product.ProductStatus.ACTIVE);
+        Long older = product("Ancien", NOW.minusDays(1), Product.ProductStatus.ACTIVE);
+        entityManager.flush();
+        entityManager.clear();
+
+        String cursor = new PageCursor(NOW, newest).encode();
+        CursorPage<ProductListDTO> slice = productListingService.getActiveAndSoldSlice(cursor, 10);
+
+        assertThat(slice.getContent()).extracting(ProductListDTO::getId).containsExactly(older);
+    }
+
+    @Test
+    void unreadableCursorIsRejected() {
+        assertThatThrownBy(() -> productListingService.getActiveAndSoldSlice("pas-un-curseur", 10))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void categoryFilterIncludesSubcategories() {
+        Category women = subcategory(category, "mode-femme");
+        Category shoes = subcategory(women, "mode-femme-chaussures");
+        Category home = new Category();
+        home.setKey("maison");
+        home.setLabel("Maison");
+        entityManager.persist(home);
+        Long inRoot = product("Veste", 30.0, "Zara", "M", "Bon état", category);
+        Long inChild = product("Robe", 20.0, "Zara", "S", "Bon état", women);
+        Long inGrandChild = product("Bottes", 50.0, "Aigle", "38", "Neuf", shoes);
+        product("Lampe", 15.0, "Ikea", null, "Bon état", home);
+        entityManager.flush();
+        entityManager.clear();
+
+        Page<ProductListDTO> page = filtered(filter(category.getId()));
+
+        assertThat(page.getContent()).extracting(ProductListDTO::getId)
+            .containsExactlyInAnyOrder(inRoot, inChild, inGrandChild);
+        assertThat(page.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    void priceConditionBrandAndSizeFiltersCombine() {
+        Long match = product("Robe", 25.0, "Zara", "M", "Bon état", category);
+        product("Trop chère", 80.0, "Zara", "M", "Bon état", category);
+        product("Autre état", 25.0, "Zara", "M", "Neuf", category);
+        product("Autre marque", 25.0, "Mango", "M", "Bon état", category);
+        product("Autre taille", 25.0, "Zara", "L", "Bon état", category);
+        Long retired = product("Retirée", 25.0, "Zara", "M", "Bon état", category);
+        entityManager.getEntityManager()
+            .createQuery("UPDATE Product p SET p.status = :status WHERE p.id = :id")
+            .setParameter("status", Product.ProductStatus.INACTIVE)
+            .setParameter("id", retired)
+            .executeUpdate();
+        entityManager.flush();
+        entityManager.clear();
+
+        ProductListingFilter filter = filter(null);
+        filter.setMinPrice(20.0);
+        filter.setMaxPrice(30.0);
+        filter.setCondition("Bon état");
+        // Marque comparée sans tenir compte de la casse
+        filter.setBrand(" zara ");
+        filter.setSize("M");
+
+        Page<ProductListDTO> page = filtered(filter);
+
+        assertThat(page.getContent()).extracting(ProductListDTO::getId).containsExactly(match);
+        assertThat(page.getTotalElements()).isEqualTo(1);
+    }
+
+    @Test
+    void priceSortIsAscendingByDefaultWithIdTieBreak() {
+        Long cheapFirst = product("A", 10.0, "Zara", "M", "Bon état", category);
+        Long cheapSecond = product("B", 10.0, "Zara", "M", "Bon état", category);
+        Long expensive = product("C", 40.0, "Zara", "M", "Bon état", category);
+        entityManager.flush();
+        entityManager.clear();
+
+        ProductListingFilter ascending = filter(null);
+        ascending.setSortBy("price");
+        ProductListingFilter descending = filter(null);
+        descending.setSortBy("price");
+        descending.setSortOrder("desc");
+
+        assertThat(filtered(ascending).getContent()).extracting(ProductListDTO::getId)
+            .containsExactly(cheapFirst, cheapSecond, expensive);
+        assertThat(filtered(descending).getContent()).extracting(ProductListDTO::getId)
+            .containsExactly(expensive, cheapSecond, cheapFirst);
+    }
+
+    @Test
+    void unknownSortFallsBackToNewestFirst() {
+        Long older = product("Ancien", NOW.minusDays(1), Product.ProductStatus.ACTIVE);
+        Long newer = product("Récent", NOW, Product.ProductStatus.ACTIVE);
+        entityManager.flush();
+        entityManager.clear();
+
+        ProductListingFilter filter = filter(null);
+        filter.setSortBy("title; DROP TABLE products");
+
+        assertThat(filtered(filter).getContent()).extracting(ProductListDTO::getId).containsExactly(newer, older);
+    }
+
+    private Page<ProductListDTO> filtered(ProductListingFilter filter) {
+        return productListingService.getFilteredPage(filter, PageRequest.of(0, 20));
+    }
+
+    private static ProductListingFilter filter(Long categoryId) {
+        ProductListingFilter filter = new ProductListingFilter();
+        filter.setCategoryId(categoryId);
+        return filter;
+    }
+
+    private Category subcategory(Category parent, String key) {
+        Category child = new Category();
+        child.setKey(key);
+        child.setLabel(key);
+        child.setParent(parent);
+        parent.getChildren().add(child);
+        entityManager.persist(child);
+        return child;
+    }
+
+    private Long product(String title, Double price, String brand, String size, String condition, Category category) {
+        Product product = new Product();
+        product.setTitle(title);
+        product.setDescription("Description");
+        product.setPrice(price);
+        product.setBrand(brand);
+        product.setSize(size);
+        product.setCondition(condition);
+        product.setCategory(category);
+        product.setSeller(seller);
+        entityManager.persist(product);
+        return product.getId();
+    }
+
+    // La date de création est posée par @PrePersist : réécrite ensuite pour contrôler l'ordre du fil
+    private Long product(String title, LocalDateTime createdAt, Product.ProductStatus status) {
+        Product product = new Product();
+        product.setTitle(title);
+        product.setDescription("Description");
+        product.setPrice(10.0);
+        product.setCondition("Bon état");
+        product.setStatus(status);
+        product.setCategory(category);
+        product.setSeller(seller);
+        entityManager.persist(product);
+        entityManager.flush();
+        entityManager.getEntityManager()
+            .createQuery("UPDATE Product p SET p.createdAt = :createdAt WHERE p.id = :id")
+            .setParameter("createdAt", createdAt)
+            .setParameter("id", product.getId())
+            .executeUpdate();
+        return product.getId();
+    }
+}
@@ -0,0 +1,69 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.service.RecommendationStore.Algorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Store de listes précalculées : segment delta, compaction et reprise de la marque de file au redémarrage
+ */
+class RecommendationStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void partialRefreshGoesToTheDeltaUntilCompaction() throws Exception {
+        RecommendationStore store = new RecommendationStore(dir.toString(), 0.5);
+        store.publish(Algorithm.HYBRID, writer(1, 2, 3, 4), true, 10);
+        long baseModified = Files.getLastModifiedTime(dir.resolve("hybrid.bin")).toMillis();
+
+        store.publish(Algorithm.HYBRID, writer(2), false, 11);
+
+        assertThat(dir.resolve("hybrid.delta.bin")).exists();
+        assertThat(Files.getLastModifiedTime(dir.resolve("hybrid.bin")).toMillis()).isEqualTo(baseModified);
+        assertThat(store.get(Algorithm.HYBRID, 2).productIds()).containsExactly(200L);
+        assertThat(store.get(Algorithm.HYBRID, 1).productIds()).containsExactly(100L);
+        assertThat(store.userCount(Algorithm.HYBRID)).isEqualTo(4);
+
+        // Trois utilisateurs en delta pour quatre en base : au-delà de la moitié, fusion
+        store.publish(Algorithm.HYBRID, writer(5, 6), false, 12);
+
+        assertThat(dir.resolve("hybrid.delta.bin")).doesNotExist();
+        assertThat(store.userCount(Algorithm.HYBRID)).isEqualTo(6);
+        assertThat(store.get(Algorithm.HYBRID, 2).productIds()).containsExactly(200L);
+        assertThat(store.get(Algorithm.HYBRID, 6).productIds()).containsExactly(600L);
+    }
+
+    @Test
+    void reloadKeepsDeltaAndQueueMark() throws Exception {
+        RecommendationStore store = new RecommendationStore(dir.toString(), 0.5);
+        for (Algorithm algorithm : Algorithm.values()) {
+            store.publish(algorithm, writer(1, 2, 3, 4), true, 10);
+        }
+        for (Algorithm algorithm : Algorithm.values()) {
+            store.publish(algorithm, writer(7), false, 42);
+        }
+
+        RecommendationStore reloaded = new RecommendationStore(dir.toString(), 0.5);
+
+        assertThat(reloaded.queueMark()).isEqualTo(42);
+        assertThat(reloaded.get(Algorithm.CONTENT, 7).productIds()).containsExactly(700L);
+        assertThat(reloaded.get(Algorithm.CONTENT, 3).productIds()).containsExactly(300L);
+        assertThat(reloaded.get(Algorithm.CONTENT, 8)).isNull();
+    }
+
+    // Une liste d'un produit par utilisateur : produit = 100 × id utilisateur
+    private static RecommendationStore.Writer writer(long... userIds) {
+        RecommendationStore.Writer writer = new RecommendationStore.Writer();
+        for (long userId : userIds) {
+            writer.add(userId, new long[] { userId * 100 }, new float[] { 1f }, 1);
+        }
+        return writer;
+    }
+}
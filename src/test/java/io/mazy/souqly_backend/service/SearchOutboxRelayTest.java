@@ -0,0 +1,280 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.config.SearchOutboxConfig;
+import io.mazy.souqly_backend.dto.ProductIndexRow;
+import io.mazy.souqly_backend.entity.Category;
+import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.entity.User;
+import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Relais de l'outbox sur un vrai PostgreSQL : réservation, indexation versionnée, solde des lignes,
+ * nouvel essai des documents refusés, lot rendu quand Elasticsearch est injoignable et paliers des compteurs
+ */
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ SearchOutboxRelay.class, SearchOutboxListener.class, SearchOutboxConfig.class, SimpleMeterRegistry.class })
+@TestPropertySource(properties = {
+    "spring.liquibase.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "souqly.search.outbox.retry-delay-ms=0",
+    "souqly.search.outbox.max-attempts=2"
+})
+// Tables Liquibase hors entités (le changelog complet suppose une base déjà créée par Hibernate)
+@Sql(statements = {
+    "CREATE TABLE IF NOT EXISTS search_outbox (id BIGSERIAL PRIMARY KEY, product_id BIGINT NOT NULL, " +
+        "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, attempts INT NOT NULL DEFAULT 0, " +
+        "available_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, last_error VARCHAR(1000))",
+    "ALTER TABLE products ALTER COLUMN search_version SET DEFAULT 0"
+})
+// Le relais valide chaque instruction séparément : pas de transaction de test englobante
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SearchOutboxRelayTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @MockitoBean
+    private ElasticsearchService elasticsearchService;
+
+    @MockitoBean
+    private SearchResultCache searchResultCache;
+
+    @MockitoBean
+    private CatalogSnapshot catalogSnapshot;
+
+    @Autowired
+    private SearchOutboxRelay relay;
+
+    @Autowired
+    private SearchOutboxListener searchOutbox;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private User seller;
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        when(elasticsearchService.toDocument(any(), any())).thenAnswer(invocation -> {
+            ProductDocument document = new ProductDocument();
+            document.setId(invocation.<ProductIndexRow>getArgument(0).getId().toString());
+            return document;
+        });
+        when(elasticsearchService.writeVersioned(any(), anyList(), anyBoolean())).thenReturn(Map.of());
+
+        String suffix = UUID.randomUUID().toString();
+        transactionTemplate.executeWithoutResult(status -> {
+            seller = new User();
+            seller.setEmail(suffix + "@souqly.io");
+            seller.setPassword("secret");
+            entityManager.persist(seller);
+            category = new Category();
+            category.setKey("cat-" + suffix);
+            category.setLabel("Catégorie");
+            entityManager.persist(category);
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM search_outbox");
+    }
+
+    @Test
+    void relaysCreationWithVersionZeroAndDeletesRows() {
+        Long productId = createProduct("Vélo");
+
+        relay.relayBatch(new HashSet<>());
+
+        List<ElasticsearchService.VersionedWrite> writes = capturedWrites(1).get(0);
+        assertThat(writes).singleElement().satisfies(write -> {
+            assertThat(write.id()).isEqualTo(productId.toString());
+            assertThat(write.version()).isZero();
+            assertThat(write.document()).isNotNull();
+        });
+        assertThat(outboxRows(productId)).isZero();
+        verify(searchResultCache).invalidate(any(), any());
+    }
+
+    @Test
+    void updatesCarryTheLatestSearchVersionAndCollapsePerProduct() {
+        Long productId = createProduct("Vélo");
+        rename(productId, "Vélo rouge");
+        rename(productId, "Vélo bleu");
+        Long version = jdbcTemplate.queryForObject(
+            "SELECT search_version FROM products WHERE id = ?", Long.class, productId);
+        Long lastRow = jdbcTemplate.queryForObject(
+            "SELECT MAX(id) FROM search_outbox WHERE product_id = ?", Long.class, productId);
+
+        Set<Long> relayed = new HashSet<>();
+        assertThat(relay.relayBatch(relayed)).isEqualTo(3);
+
+        assertThat(version).isEqualTo(lastRow);
+        assertThat(capturedWrites(1).get(0)).singleElement()
+            .satisfies(write -> assertThat(write.version()).isEqualTo(version));
+        assertThat(relayed).containsExactly(productId);
+        assertThat(outboxRows(productId)).isZero();
+    }
+
+    @Test
+    void deletionIsWrittenWithTheOutboxRowAsVersion() {
+        Long productId = createProduct("Vélo");
+        relay.relayBatch(new HashSet<>());
+        transactionTemplate.executeWithoutResult(status ->
+            entityManager.remove(entityManager.find(Product.class, productId)));
+        Long deletionRow = jdbcTemplate.queryForObject(
+            "SELECT MAX(id) FROM search_outbox WHERE product_id = ?", Long.class, productId);
+
+        relay.relayBatch(new HashSet<>());
+
+        assertThat(capturedWrites(2).get(1)).singleElement().satisfies(write -> {
+            assertThat(write.document()).isNull();
+            assertThat(write.version()).isEqualTo(deletionRow);
+        });
+        assertThat(outboxRows(productId)).isZero();
+    }
+
+    @Test
+    void rejectedDocumentIsRetriedWithoutBlockingOthers() {
+        Long rejected = createProduct("Refusé");
+        Long accepted = createProduct("Accepté");
+        when(elasticsearchService.writeVersioned(any(), anyList(), anyBoolean()))
+            .thenReturn(Map.of(rejected.toString(), "mapper_parsing_exception"))
+            .thenReturn(Map.of());
+
+        relay.relayBatch(new HashSet<>());
+
+        assertThat(outboxRows(accepted)).isZero();
+        assertThat(jdbcTemplate.queryForMap(
+            "SELECT attempts, last_error FROM search_outbox WHERE product_id = ?", rejected))
+            .containsEntry("attempts", 1)
+            .containsEntry("last_error", "mapper_parsing_exception");
+
+        relay.relayBatch(new HashSet<>());
+
+        assertThat(outboxRows(rejected)).isZero();
+    }
+
+    @Test
+    void rowsAreParkedAfterMaxAttempts() {
+        Long productId = createProduct("Refusé");
+        when(elasticsearchService.writeVersioned(any(), anyList(), anyBoolean()))
+            .thenReturn(Map.of(productId.toString(), "mapper_parsing_exception"));
+
+        relay.relayBatch(new HashSet<>());
+        relay.relayBatch(new HashSet<>());
+        int claimed = relay.relayBatch(new HashSet<>());
+
+        assertThat(claimed).isZero();
+        assertThat(outboxRows(productId)).isEqualTo(1);
+        verify(elasticsearchService, times(2)).writeVersioned(any(), anyList(), anyBoolean());
+    }
+
+    @Test
+    void failedBulkReleasesTheBatchWithoutCountingAnAttempt() {
+        Long productId = createProduct("Vélo");
+        when(elasticsearchService.writeVersioned(any(), anyList(), anyBoolean()))
+            .thenThrow(new IllegalStateException("cluster injoignable"));
+
+        assertThatThrownBy(() -> relay.relayBatch(new HashSet<>())).isInstanceOf(IllegalStateException.class);
+
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT attempts FROM search_outbox WHERE product_id = ?", Integer.class, productId)).isZero();
+        verify(searchResultCache, never()).invalidate(any(), any());
+    }
+
+    @Test
+    void counterFlushEnqueuesOnlyProductsThatChangeTier() {
+        Long newcomer = createProduct("Nouveau");
+        Long popular = createProduct("Populaire");
+        relay.relayBatch(new HashSet<>());
+        jdbcTemplate.update("UPDATE products SET view_count = 1 WHERE id = ?", newcomer);
+        jdbcTemplate.update("UPDATE products SET view_count = 1001 WHERE id = ?", popular);
+
+        // Première vue d'un produit : palier franchi ; millième et unième : rang inchangé
+        transactionTemplate.executeWithoutResult(status -> searchOutbox.enqueueCounterChanges(
+            SearchOutboxListener.RankingCounter.VIEWS, Map.of(newcomer, 1L, popular, 1L)));
+
+        assertThat(outboxRows(newcomer)).isEqualTo(1);
+        assertThat(outboxRows(popular)).isZero();
+    }
+
+    private Long createProduct(String title) {
+        return transactionTemplate.execute(status -> {
+            Product product = new Product();
+            product.setTitle(title);
+            product.setDescription("Description");
+            product.setPrice(10.0);
+            product.setCondition("Bon état");
+            product.setCategory(entityManager.merge(category));
+            product.setSeller(entityManager.merge(seller));
+            entityManager.persist(product);
+            return product.getId();
+        });
+    }
+
+    private void rename(Long productId, String title) {
+        transactionTemplate.executeWithoutResult(status ->
+            entityManager.find(Product.class, productId).setTitle(title));
+    }
+
+    private int outboxRows(Long productId) {
+        return jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM search_outbox WHERE product_id = ?", Integer.class, productId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<ElasticsearchService.VersionedWrite>> capturedWrites(int calls) {
+        ArgumentCaptor<List<ElasticsearchService.VersionedWrite>> captor = ArgumentCaptor.forClass(List.class);
+        verify(elasticsearchService, times(calls)).writeVersioned(any(), captor.capture(), eq(true));
+        return captor.getAllValues();
+    }
+}
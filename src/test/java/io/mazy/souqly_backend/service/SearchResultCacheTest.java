@@ -0,0 +1,180 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.dto.ProductSearchCriteria;
+import io.mazy.souqly_backend.entity.elasticsearch.ProductDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Cache d'ids de résultats : coalescence des recherches identiques et invalidations concurrentes
+ */
+class SearchResultCacheTest {
+
+    private static final Pageable FIRST_PAGE = PageRequest.of(0, 20);
+
+    private SearchResultCache cache;
+    private AtomicInteger searches;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SearchResultCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        searches = new AtomicInteger();
+    }
+
+    @Test
+    void identicalConcurrentSearchesRunOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Page<ProductDocument>> slowSearch = () -> {
+            started.countDown();
+            await(release);
+            return page(1L, 10L);
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<SearchResultCache.ResultIds> first = executor.submit(() -> get("vélo", slowSearch));
+            started.await(5, TimeUnit.SECONDS);
+            List<Future<SearchResultCache.ResultIds>> others = List.of(
+                executor.submit(() -> get("  Vélo ", slowSearch)),
+                executor.submit(() -> get("VÉLO", slowSearch)));
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS).ids()).containsExactly("1");
+            for (Future<SearchResultCache.ResultIds> other : others) {
+                assertThat(other.get(5, TimeUnit.SECONDS).ids()).containsExactly("1");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(searches).hasValue(1);
+    }
+
+    @Test
+    void invalidationByProductOrCategoryEvictsCachedPage() {
+        get("vélo", () -> page(1L, 10L));
+        get("vélo", () -> page(1L, 10L));
+        assertThat(searches).hasValue(1);
+
+        cache.invalidate(Set.of(1L), Set.of());
+        get("vélo", () -> page(1L, 10L));
+        assertThat(searches).hasValue(2);
+
+        cache.invalidate(Set.of(99L), Set.of(10L));
+        get("vélo", () -> page(1L, 10L));
+        assertThat(searches).hasValue(3);
+    }
+
+    @Test
+    void resultReadBeforeAConcurrentInvalidationIsNotCached() {
+        // L'écriture est relayée pendant la recherche, qui a lu l'état précédent du produit 1
+        SearchResultCache.ResultIds stale = get("vélo", () -> {
+            Page<ProductDocument> page = page(1L, 10L);
+            cache.invalidate(Set.of(1L), Set.of(10L));
+            return page;
+        });
+        assertThat(stale.ids()).containsExactly("1");
+
+        get("vélo", () -> page(1L, 10L));
+        assertThat(searches).hasValue(2);
+    }
+
+    @Test
+    void unrelatedInvalidationDuringSearchKeepsResultCached() {
+        get("vélo", () -> {
+            Page<ProductDocument> page = page(1L, 10L);
+            cache.invalidate(Set.of(2L), Set.of(20L));
+            return page;
+        });
+
+        get("vélo", () -> page(1L, 10L));
+        assertThat(searches).hasValue(1);
+    }
+
+    @Test
+    void concurrentWriteAndSearchNeverLeaveAStaleEntry() throws Exception {
+        // État indexé simulé : le total de la page porte la version du produit 1 lue par la recherche
+        // (au-delà de la taille de page, que PageImpl ne recalcule pas)
+        AtomicInteger indexed = new AtomicInteger(1000);
+        Supplier<Page<ProductDocument>> search = () -> page(1L, 10L, indexed.get());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 500; i++) {
+                String query = "vélo " + i;
+                CountDownLatch go = new CountDownLatch(1);
+                Future<?> reader = executor.submit(() -> {
+                    await(go);
+                    return get(query, search);
+                });
+                Future<?> writer = executor.submit(() -> {
+                    await(go);
+                    indexed.incrementAndGet();
+                    cache.invalidate(Set.of(1L), Set.of());
+                });
+                go.countDown();
+                reader.get(5, TimeUnit.SECONDS);
+                writer.get(5, TimeUnit.SECONDS);
+
+                assertThat(get(query, search).total()).isEqualTo(indexed.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedSearchIsNotCached() {
+        assertThatThrownBy(() -> get("vélo", () -> {
+            throw new IllegalStateException("cluster injoignable");
+        })).isInstanceOf(IllegalStateException.class);
+
+        get("vélo", () -> page(1L, 10L));
+        assertThat(searches).hasValue(2);
+    }
+
+    private SearchResultCache.ResultIds get(String query, Supplier<Page<ProductDocument>> search) {
+        ProductSearchCriteria criteria = new ProductSearchCriteria();
+        criteria.setQuery(query);
+        return cache.get(criteria, null, FIRST_PAGE, () -> {
+            searches.incrementAndGet();
+            return search.get();
+        });
+    }
+
+    private static Page<ProductDocument> page(Long productId, Long categoryId) {
+        return page(productId, categoryId, 1);
+    }
+
+    private static Page<ProductDocument> page(Long productId, Long categoryId, long total) {
+        ProductDocument document = new ProductDocument();
+        document.setId(productId.toString());
+        document.setCategoryId(categoryId);
+        return new PageImpl<>(List.of(document), FIRST_PAGE, total);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.dto.CursorPage;
+import io.mazy.souqly_backend.dto.ProductMyProductsDTO;
+import io.mazy.souqly_backend.entity.Category;
+import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.entity.ProductImage;
+import io.mazy.souqly_backend.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Écran "mes produits" : le nombre de requêtes SQL ne dépend pas du nombre d'annonces du vendeur
+ */
+@DataJpaTest
+@Import(SellerProductService.class)
+@TestPropertySource(properties = {
+    "spring.liquibase.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class SellerProductServiceTest {
+
+    @Autowired
+    private SellerProductService sellerProductService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Category category;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Category parent = new Category();
+        parent.setKey("mode");
+        parent.setLabel("Mode");
+        category = new Category();
+        category.setKey("mode-femme");
+        category.setLabel("Femme");
+        category.setParent(parent);
+        parent.getChildren().add(category);
+        entityManager.persist(parent);
+    }
+
+    @Test
+    void constantQueryCountRegardlessOfListingCount() {
+        User small = seller("small@souqly.io", 2);
+        User large = seller("large@souqly.io", 40);
+        entityManager.flush();
+        entityManager.clear();
+
+        long smallCount = countStatements(small);
+        long largeCount = countStatements(large);
+
+        // Lignes projetées, images, arbre des catégories, vendeur
+        assertThat(smallCount).isEqualTo(4);
+        assertThat(largeCount).isEqualTo(smallCount);
+    }
+
+    @Test
+    void assemblesImagesCategoryAndSellerFromBatchedQueries() {
+        User seller = seller("seller@souqly.io", 3);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ProductMyProductsDTO> products =
+            sellerProductService.getSellerProducts(seller.getId(), List.of(Product.ProductStatus.values()));
+
+        assertThat(products).hasSize(3);
+        assertThat(products).allSatisfy(product -> {
+            assertThat(product.getImages()).hasSize(2);
+            assertThat(product.getCategory()).extracting("key").isEqualTo("mode-femme");
+            assertThat(product.getSeller()).extracting("email").isEqualTo("seller@souqly.io");
+        });
+    }
+
+    @Test
+    void slicesFollowTheSameOrderAsTheFullListing() {
+        User seller = seller("slices@souqly.io", 7);
+        seller("other@souqly.io", 2);
+        entityManager.flush();
+        entityManager.clear();
+        List<Product.ProductStatus> statuses = List.of(Product.ProductStatus.values());
+
+        List<Long> expected = sellerProductService.getSellerProducts(seller.getId(), statuses).stream()
+            .map(ProductMyProductsDTO::getId)
+            .toList();
+        List<Long> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<ProductMyProductsDTO> slice =
+                sellerProductService.getSellerProductsSlice(seller.getId(), statuses, cursor, 3);
+            slice.getContent().forEach(product -> walked.add(product.getId()));
+            cursor = slice.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(expected).hasSize(7);
+        assertThat(walked).containsExactlyElementsOf(expected);
+    }
+
+    private long countStatements(User seller) {
+        entityManager.clear();
+        statistics.clear();
+        List<ProductMyProductsDTO> products =
+            sellerProductService.getSellerProducts(seller.getId(), List.of(Product.ProductStatus.values()));
+        assertThat(products).isNotEmpty();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User seller(String email, int productCount) {
+        User seller = new User();
+        seller.setEmail(email);
+        seller.setPassword("secret");
+        entityManager.persist(seller);
+        for (int i = 0; i < productCount; i++) {
+            Product product = new Product();
+            product.setTitle("Produit " + i);
+            product.setDescription("Description " + i);
+            product.setPrice(10.0 + i);
+            product.setCondition("Bon état");
+            product.setCategory(category);
+            product.setSeller(seller);
+            for (int j = 0; j < 2; j++) {
+                ProductImage image = new ProductImage();
+                image.setProduct(product);
+                image.setFileName("image-" + i + "-" + j + ".jpg");
+                image.setContentType("image/jpeg");
+                product.getImages().add(image);
+            }
+            entityManager.persist(product);
+        }
+        return seller;
+    }
+}
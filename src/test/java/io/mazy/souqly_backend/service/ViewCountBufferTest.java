@@ -0,0 +1,192 @@
+package io.mazy.souqly_backend.service;
+
+import io.mazy.souqly_backend.config.CacheConfig;
+import io.mazy.souqly_backend.entity.Category;
+import io.mazy.souqly_backend.entity.Product;
+import io.mazy.souqly_backend.entity.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tampon des vues produit : dédoublonnage, flush en lot, vues refusées par la base, nouvel essai après échec
+ * et map des deltas vidée par le flush
+ */
+@DataJpaTest
+@Testcontainers
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ViewCountBuffer.class)
+@TestPropertySource(properties = {
+    "spring.liquibase.enabled=false",
+    "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+// Le flush valide sa propre transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ViewCountBufferTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @MockitoBean
+    private SearchOutboxListener searchOutbox;
+
+    @MockitoBean
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ViewCountBuffer viewCountBuffer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final Cache detailCache = new ConcurrentMapCache(CacheConfig.PRODUCT_DETAIL);
+
+    private Long productId;
+    private Long firstViewer;
+    private Long secondViewer;
+
+    @BeforeEach
+    void setUp() {
+        when(cacheManager.getCache(CacheConfig.PRODUCT_DETAIL)).thenReturn(detailCache);
+        String suffix = UUID.randomUUID().toString();
+        transactionTemplate.executeWithoutResult(status -> {
+            User seller = user("seller-" + suffix);
+            firstViewer = user("first-" + suffix).getId();
+            secondViewer = user("second-" + suffix).getId();
+            Category category = new Category();
+            category.setKey("cat-" + suffix);
+            category.setLabel("Catégorie");
+            entityManager.persist(category);
+            Product product = new Product();
+            product.setTitle("Vélo");
+            product.setDescription("Description");
+            product.setPrice(10.0);
+            product.setCondition("Bon état");
+            product.setCategory(category);
+            product.setSeller(seller);
+            product.setViewCount(0);
+            entityManager.persist(product);
+            productId = product.getId();
+        });
+    }
+
+    @Test
+    void viewsAreDeduplicatedAndWrittenInOneFlush() {
+        viewCountBuffer.record(productId, firstViewer);
+        viewCountBuffer.record(productId, firstViewer);
+        viewCountBuffer.record(productId, secondViewer);
+
+        assertThat(persistedCount()).isZero();
+
+        viewCountBuffer.flush();
+
+        assertThat(persistedCount()).isEqualTo(2);
+        assertThat(viewRows()).isEqualTo(2);
+        verify(searchOutbox).enqueueCounterChanges(SearchOutboxListener.RankingCounter.VIEWS, Map.of(productId, 2L));
+
+        viewCountBuffer.flush();
+        assertThat(persistedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void flushEmptiesThePendingDeltas() {
+        viewCountBuffer.record(productId, firstViewer);
+        assertThat(viewCountBuffer.pendingProductCount()).isEqualTo(1);
+
+        viewCountBuffer.flush();
+
+        assertThat(viewCountBuffer.pendingProductCount()).isZero();
+    }
+
+    @Test
+    void viewAlreadyInTheTableIsRemovedFromTheDelta() {
+        jdbcTemplate.update("INSERT INTO product_views (product_id, user_id, viewed_at) VALUES (?, ?, now())",
+            productId, firstViewer);
+        viewCountBuffer.record(productId, firstViewer);
+        viewCountBuffer.record(productId, secondViewer);
+
+        viewCountBuffer.flush();
+
+        assertThat(persistedCount()).isEqualTo(1);
+        assertThat(viewRows()).isEqualTo(2);
+    }
+
+    @Test
+    void failedFlushKeepsViewsForTheNextOne() {
+        doThrow(new IllegalStateException("outbox indisponible")).doNothing()
+            .when(searchOutbox).enqueueCounterChanges(any(), any());
+        viewCountBuffer.record(productId, firstViewer);
+
+        viewCountBuffer.flush();
+
+        assertThat(persistedCount()).isZero();
+        assertThat(viewRows()).isZero();
+        assertThat(viewCountBuffer.pendingProductCount()).isEqualTo(1);
+
+        viewCountBuffer.flush();
+
+        assertThat(persistedCount()).isEqualTo(1);
+        assertThat(viewRows()).isEqualTo(1);
+        assertThat(viewCountBuffer.pendingProductCount()).isZero();
+    }
+
+    @Test
+    void flushEvictsTheCachedDetail() {
+        detailCache.put(productId, "détail lu avant le flush");
+        viewCountBuffer.record(productId, firstViewer);
+
+        viewCountBuffer.flush();
+
+        assertThat(detailCache.get(productId)).isNull();
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setEmail(name + "@souqly.io");
+        user.setPassword("secret");
+        entityManager.persist(user);
+        return user;
+    }
+
+    private int persistedCount() {
+        return jdbcTemplate.queryForObject("SELECT view_count FROM products WHERE id = ?", Integer.class, productId);
+    }
+
+    private int viewRows() {
+        return jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM product_views WHERE product_id = ?", Integer.class, productId);
+    }
+}